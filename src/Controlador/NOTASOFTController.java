@@ -11,12 +11,20 @@ import java.io.*;
 import java.util.*;
 import modelo.GestorDeListas;
 import modelo.ListaReproduccion;
+import modelo.AvanceReproduccion;
+import modelo.AnalizadorSonoridad;
+import modelo.BusquedaLimitada;
+import modelo.CacheMetadatos;
+import modelo.CacheVistasListas;
+import modelo.ExtractorPicos;
+import modelo.FilasIndexadas;
+import modelo.Nodo;
+import modelo.PlanificadorTareas;
+import modelo.RelojReproduccion;
 import modelo.Reproductor;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.util.Duration;
-import java.util.Random;
-import java.util.stream.Collectors;
 import javafx.animation.Animation;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
@@ -27,11 +35,21 @@ import javafx.scene.control.ProgressBar;
 import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.Image;
 import javafx.scene.media.AudioClip;
-import javafx.scene.media.MediaPlayer;
 import javafx.stage.DirectoryChooser;
 import javafx.stage.FileChooser;
 import modelo.Cancion;
+import modelo.BusquedaIncremental;
+import modelo.ColaReproduccion;
+import modelo.ConsultaMetadatos;
+import modelo.DiccionarioRutas;
+import modelo.EstadisticasReproduccion;
+import modelo.IndiceBiblioteca;
+import modelo.LectorMetadatos;
+import modelo.MotorJLayer;
+import modelo.MezcladorAleatorio;
+import modelo.PuntoDeControlSesion;
 import modelo.SesionGuardada;
+import vista.DialogoBusquedaBiblioteca;
 import vista.NOTASOFTView;
 
 public class NOTASOFTController extends Application {
@@ -43,10 +61,42 @@ public class NOTASOFTController extends Application {
     private Reproductor reproductor;                            // Controla la reproducción de audio
     private NOTASOFTView vista;                                 // Interfaz gráfica
     private static final String ARCHIVO_LISTAS = "listas.dat";  // Archivo para persistencia de listas
-    private Timeline actualizadorProgreso;                      // Actualiza la barra de progreso
     private static final String ARCHIVO_SESION = "sesion.dat";  // Archivo para persistencia de sesión
     private SesionGuardada sesionGuardada;                      // Datos de la sesión actual
+    private static final String ARCHIVO_PUNTO_CONTROL = "sesion.ckpt";     // Registro periódico de la sesión
+    private static final String ARCHIVO_METADATOS = "metadatos.dat";       // Caché de índices y datos calculados
+    private static final String ARCHIVO_ESTADISTICAS = "estadisticas.dat";  // Historial de escuchas (solo anexado)
+    private static final Duration INTERVALO_PUNTO_CONTROL = Duration.seconds(5);
+    private static final long ESPERA_GUARDADOS_MS = 5_000;       // Máximo que el cierre espera a los guardados encolados
+    private static final Duration INTERVALO_GUARDADO_CACHE = Duration.minutes(1);
+    private PuntoDeControlSesion puntoDeControl;                // Registro mapeado en memoria
+    private final ColaReproduccion cola = new ColaReproduccion(); // Canciones "a continuación"
+    private final long[] idsCola = new long[PuntoDeControlSesion.MAX_COLA]; // Ids de la cola para el punto de control
+    private EstadisticasReproduccion estadisticas;              // Historial y contadores de reproducción
+    private AvanceReproduccion avance;                          // Decide la siguiente pista (cola, aleatorio o lista)
+    private boolean arranqueTerminado = false;                  // Listas, caché y estadísticas ya leídas
+    private Timeline temporizadorPuntoControl;                  // Escribe el punto de control periódicamente
+    private Timeline temporizadorCache;                         // Guarda la caché de metadatos periódicamente
+    private static final Duration INTERVALO_BUSQUEDA_ARRASTRE = Duration.millis(250); // Búsquedas máximas al arrastrar
+    private static final int DIVISIONES_BARRA_PROGRESO = 1000;  // Pasos visibles de la barra de progreso
+    private BusquedaLimitada busquedaArrastre;                  // Agrupa las búsquedas de la barra de progreso
+    private ExtractorPicos extractorPicos;                      // Calcula la forma de onda en segundo plano
+    private AnalizadorSonoridad analizadorSonoridad;            // Mide la sonoridad de la biblioteca
+    private static final double[] SEGUNDOS_FUNDIDO = {0, 2, 5, 8, 12};      // Opciones del selector de fundido
     private ObservableList<Cancion> listaCompletaCanciones = FXCollections.observableArrayList(); // Lista completa de canciones
+    private final ObservableList<Cancion> resultadosBusqueda = FXCollections.observableArrayList(); // Filas que coinciden con la búsqueda
+    private FilasIndexadas vistaActual = new FilasIndexadas(listaCompletaCanciones); // Lista completa con su índice id -> fila
+    private final FilasIndexadas resultadosIndexados = new FilasIndexadas(resultadosBusqueda); // Resultados con su índice id -> fila
+    private BusquedaIncremental busquedaIncremental;            // Búsqueda en segundo plano mientras se escribe
+    private LectorMetadatos lectorMetadatos;                    // Duraciones y etiquetas leídas en segundo plano
+    private PlanificadorTareas planificador;                    // Carriles de trabajo en segundo plano (disco)
+    private PlanificadorTareas.Token tokenPortada = new PlanificadorTareas.Token(); // Lectura de la portada mostrada
+    private PlanificadorTareas.Token tokenPrecargaPortada = new PlanificadorTareas.Token(); // Lectura de la portada siguiente
+    private String rutaPortadaEnLectura;                        // Portada siguiente que se está leyendo
+    private String rutaPortadaPrecargada;                       // Portada ya leída de la siguiente pista
+    private Image portadaPrecargada;
+    private boolean ordenPendiente = false;                     // Sincronización del orden de la tabla ya programada
+    private final CacheVistasListas vistasListas = new CacheVistasListas(CacheVistasListas.PRESUPUESTO_POR_DEFECTO); // Filas de las listas recientes
 
     /* ***********************
      * MÉTODOS PRINCIPALES
@@ -61,36 +111,97 @@ public class NOTASOFTController extends Application {
         // Inicialización de componentes principales
         gestor = new GestorDeListas();
         reproductor = new Reproductor();
+        planificador = new PlanificadorTareas();
+        MotorJLayer.setPlanificador(planificador);
+        reproductor.setPlanificador(planificador);
+        extractorPicos = new ExtractorPicos(planificador);
+        analizadorSonoridad = new AnalizadorSonoridad(planificador);
+        estadisticas = new EstadisticasReproduccion(ARCHIVO_ESTADISTICAS);
+        busquedaIncremental = new BusquedaIncremental(() -> gestor.getIndice(), BusquedaIncremental.ESPERA_POR_DEFECTO);
+        lectorMetadatos = new LectorMetadatos(planificador);
         vista = new NOTASOFTView(primaryStage);
 
         // Configuración inicial
         configurarBindings();
-        configurarAtajosTeclado();
-        gestor.cargarListas(ARCHIVO_LISTAS);
         inicializarEventos();
-        if (!gestor.existeLista("Favoritos")) {
-          vista.getSelectorDeListas().getItems().add("Favoritos");
-          gestor.guardarListas(ARCHIVO_LISTAS);
-          gestor.cargarListas("Favoritos");
-          //vista.getSelectorDeListas().setValue(Favoritos);  
+        reproductor.setOyenteEscucha((ruta, inicio, escuchado, duracion) ->
+                estadisticas.registrar(DiccionarioRutas.huella(ruta), inicio, escuchado, duracion));
+
+        // Las listas, la caché de metadatos y las estadísticas se leen en un carril;
+        // la ventana queda deshabilitada hasta que terminan
+        primaryStage.getScene().getRoot().setDisable(true);
+        Runnable cargaInicial = () -> {
+            gestor.cargarListas(ARCHIVO_LISTAS);
+            CacheMetadatos.getInstancia().cargar(ARCHIVO_METADATOS);
+            estadisticas.cargar();
+            Platform.runLater(() -> terminarArranque(primaryStage));
+        };
+        if (!planificador.ejecutar(PlanificadorTareas.Carril.INTERACTIVO, new PlanificadorTareas.Token(), cargaInicial)) {
+            cargaInicial.run();
         }
-        cargarSesion(); // Cargar sesión previa si existe
 
         // Configurar acción al cerrar la ventana
         primaryStage.setOnCloseRequest(event -> {
-            gestor.guardarListas(ARCHIVO_LISTAS);
-            guardarSesion();
+            // Si se cierra durante la carga no hay nada que guardar (se pisarían las listas)
+            if (arranqueTerminado) {
+                gestor.guardarListas(ARCHIVO_LISTAS);
+                guardarSesion();
+                registrarPuntoDeControl();
+            }
+            if (puntoDeControl != null) {
+                puntoDeControl.cerrar();
+            }
             reproductor.detener();
+            // Los guardados ya encolados llegan al disco antes del último volcado y del cierre
+            if (!planificador.vaciar(PlanificadorTareas.Carril.INTERACTIVO, ESPERA_GUARDADOS_MS)) {
+                System.err.println("No terminaron a tiempo los guardados pendientes");
+            }
+            estadisticas.volcar();
+            extractorPicos.cerrar();
+            analizadorSonoridad.cerrar();
+            lectorMetadatos.cerrar();
+            if (arranqueTerminado) {
+                CacheMetadatos.getInstancia().guardar(ARCHIVO_METADATOS);
+            }
+            planificador.cerrar();
             Platform.exit();
             System.exit(0);
         });
         
+        // Con la ventana minimizada la interfaz deja de consultar la posición
+        primaryStage.iconifiedProperty().addListener((obs, antes, minimizada) ->
+                reproductor.getReloj().setSuspendido(minimizada));
+
         // Establecer tamaño mínimo de la ventana
         primaryStage.setMinWidth(850);   
         primaryStage.setMinHeight(750);
         primaryStage.show();
     }
 
+    /**
+     * Termina el arranque en el hilo de JavaFX una vez leídos los archivos:
+     * muestra las listas, restaura la sesión y habilita la reproducción
+     * @param primaryStage Escenario principal de la aplicación
+     */
+    private void terminarArranque(Stage primaryStage) {
+        mostrarListasIniciales();
+        if (!gestor.existeLista("Favoritos")) {
+          vista.getSelectorDeListas().getItems().add("Favoritos");
+          gestor.guardarListas(ARCHIVO_LISTAS);
+          gestor.cargarListas("Favoritos");
+          //vista.getSelectorDeListas().setValue(Favoritos);  
+        }
+        analizadorSonoridad.analizar(gestor.getRutasBiblioteca());
+        lectorMetadatos.indexarBiblioteca(gestor.getRutasBiblioteca(), gestor.getIndice());
+        abrirPuntoDeControl();
+        cargarSesion(); // Cargar sesión previa si existe
+        iniciarPuntosDeControl();
+        iniciarGuardadoCache();
+        configurarAtajosTeclado();
+        arranqueTerminado = true;
+        primaryStage.getScene().getRoot().setDisable(false);
+    }
+
     /* ***********************
      * CONFIGURACIÓN DE VISTA
      * ***********************/
@@ -104,26 +215,54 @@ public class NOTASOFTController extends Application {
         // Configurar barra de progreso interactiva
         configurarBarraProgresoInteractiva();
 
-        // Configurar actualización automática
-        actualizadorProgreso = new Timeline(
-                new KeyFrame(Duration.millis(100), e -> {
-                    if (reproductor.getMediaPlayer() != null
-                    && !vista.barraProgresoPresionado()) {
-                        vista.getBarraProgreso().setProgress(reproductor.getProgreso());
-                        vista.getTiempoTranscurridoLabel().setText(reproductor.formatearTiempo(reproductor.getMediaPlayer().getCurrentTime()));
-                        vista.getTiempoTotalLabel().setText(reproductor.formatearTiempo(reproductor.getMediaPlayer().getTotalDuration()));
-                    }
-                })
-        );
-        actualizadorProgreso.setCycleCount(Animation.INDEFINITE);
-        actualizadorProgreso.play();
+        // Configurar actualización automática: la barra y la onda avanzan por
+        // fracciones visibles de la pista y las etiquetas una vez por segundo
+        RelojReproduccion reloj = reproductor.getReloj();
+        reloj.suscribirFraccion(DIVISIONES_BARRA_PROGRESO, (posicionMs, duracionMs) -> {
+            if (reproductor.hayPista() && !vista.barraProgresoPresionado()) {
+                double progreso = (duracionMs > 0) ? (double) posicionMs / duracionMs : 0;
+                vista.getBarraProgreso().setProgress(progreso);
+                vista.setProgresoOnda(progreso);
+            }
+        });
+        reloj.suscribir(Duration.seconds(1), false, (posicionMs, duracionMs) -> {
+            if (reproductor.hayPista() && !vista.barraProgresoPresionado()) {
+                vista.getTiempoTranscurridoLabel().setText(RelojReproduccion.etiqueta(posicionMs));
+                vista.getTiempoTotalLabel().setText(RelojReproduccion.etiqueta(duracionMs));
+            }
+        });
 
-        // Configurar el handler para cuando termine la canción
-        reproductor.setOnEndOfMedia(() -> {
-            if (!reproductor.getModoRepeticion()) {
-                siguienteCancion();
+        // El avance decide qué suena al terminar la canción y cuál se precarga;
+        // la tabla solo indica qué pistas están a la vista
+        avance = new AvanceReproduccion(reproductor, cola);
+        avance.setFiltro(new AvanceReproduccion.Filtro() {
+            @Override
+            public boolean visible(long idPista) {
+                return filaEnTabla(idPista) >= 0;
+            }
+
+            @Override
+            public Cancion primera() {
+                ObservableList<Cancion> items = vista.getTablaCanciones().getItems();
+                return items.isEmpty() ? null : items.get(0);
             }
         });
+        avance.setOyente(new AvanceReproduccion.OyenteAvance() {
+            @Override
+            public void cancionIniciada(Cancion cancion, boolean visible) {
+                // Si está en la tabla se selecciona, de modo que la lista sigue desde ella
+                if (visible && seleccionarPorId(cancion.getIdPista())) {
+                    vista.getBtnFavorito().setSelected(gestor.esFavorita(cancion));
+                }
+                mostrarCancion(cancion);
+            }
+
+            @Override
+            public void siguientePrevista(String ruta) {
+                precargarPortada(ruta);
+            }
+        });
+        reproductor.setModoSinPausas(true);
     }
 
     /**
@@ -156,9 +295,8 @@ public class NOTASOFTController extends Application {
      * Maneja la acción de pausar/reanudar
      */
     private void manejarPausaReanudar() {
-        if (reproductor.getMediaPlayer() != null) {
-            MediaPlayer.Status status = reproductor.getMediaPlayer().getStatus();
-            if (status == MediaPlayer.Status.PLAYING) {
+        if (reproductor.hayPista()) {
+            if (reproductor.isReproduciendo()) {
                 reproductor.pausar();
                 resaltarBoton(vista.getBtnPausa());
             } else {
@@ -194,7 +332,10 @@ public class NOTASOFTController extends Application {
         vista.getBtnEliminarLista().setOnAction(e -> eliminarListaActual());
         vista.getBtnAgregarCancion().setOnAction(e -> agregarCancionDesdeEscritorio());
         vista.getBtnAgregarCarpeta().setOnAction(e -> agregarCancionesDesdeCarpeta());
-        vista.getBtnReproducir().setOnAction(e -> reproducirCancionSeleccionada());
+        vista.getBtnReproducir().setOnAction(e -> {
+            avance.desactivarAleatorio();
+            reproducirCancionSeleccionada();
+        });
         vista.getBtnPausa().setOnAction(e -> reproductor.pausar());
         vista.getBtnReanudar().setOnAction(e -> reproductor.reanudar());
         vista.getBtnEliminar().setOnAction(e -> eliminarCancion());
@@ -207,6 +348,11 @@ public class NOTASOFTController extends Application {
         vista.getBtnModoOscuro().setOnAction(e -> modoOscuro());
         vista.getBtnmostrarFavoritos().setOnAction(e -> mostrarFavoritos());
         vista.getBtnRenombrarListaSeleccionada().setOnAction(e -> renombrarListaSeleccionada());
+        vista.getMenuReproducirDespues().setOnAction(e -> encolarSeleccionada(true));
+        vista.getMenuAgregarACola().setOnAction(e -> encolarSeleccionada(false));
+        vista.getMenuBuscarEnBiblioteca().setOnAction(e -> abrirBusquedaBiblioteca());
+        vista.configurarAtajoBusquedaBiblioteca(this::abrirBusquedaBiblioteca);
+        vista.configurarColumnaFavorita(cancion -> gestor.esFavorita(cancion));
         
         // Reproducir al hacer clic en una canción
         vista.getTablaCanciones().setOnMouseClicked(e -> {
@@ -251,22 +397,17 @@ public class NOTASOFTController extends Application {
             }
         });
         
-        // Cargar listas iniciales en el selector
-        vista.getSelectorDeListas().getItems().addAll(gestor.getNombresDeListas());
-        if (!vista.getSelectorDeListas().getItems().isEmpty()) {
-            vista.getSelectorDeListas().setValue(vista.getSelectorDeListas().getItems().get(0));
-            cargarListaSeleccionada();
-        }
-
         // Configurar opciones de ordenamiento
         vista.getComboBoxOrdenar().setOnAction(e -> ordenador());
 
+        // Configurar duración del fundido cruzado
+        vista.getComboFundido().setOnAction(e -> configurarFundido());
+        vista.getComboNormalizacion().setOnAction(e -> configurarNormalizacion());
+
         // Configurar búsqueda en tiempo real
         vista.getCampoBusqueda().textProperty().addListener((obs, oldVal, newVal) -> {
-            buscarCancion();
+            buscarMientrasSeEscribe();
         });
-        
-        configurarListenerReordenamiento();
     }
 
     /* ***********************
@@ -300,6 +441,17 @@ public class NOTASOFTController extends Application {
         });
     }
 
+    /**
+     * Carga las listas iniciales en el selector y abre la primera
+     */
+    private void mostrarListasIniciales() {
+        vista.getSelectorDeListas().getItems().addAll(gestor.getNombresDeListas());
+        if (!vista.getSelectorDeListas().getItems().isEmpty()) {
+            vista.getSelectorDeListas().setValue(vista.getSelectorDeListas().getItems().get(0));
+            cargarListaSeleccionada();
+        }
+    }
+
     /**
      * Carga la lista seleccionada en la vista
      */
@@ -307,7 +459,6 @@ public class NOTASOFTController extends Application {
         String nombre = vista.getSelectorDeListas().getValue();
         if (nombre != null) {
             ListaReproduccion lista = gestor.getLista(nombre);
-            listaCompletaCanciones.clear();
 
             if (lista != null) {
                 // Configurar estado de botones según el tipo de lista
@@ -336,29 +487,57 @@ public class NOTASOFTController extends Application {
                     }
                 }
                 
-                // Cargar canciones en la lista completa
-                for (String nombreCancion : lista.getNombresCanciones()) {
-                    String ruta = lista.getRutaCancion(nombreCancion);
-                    String duracion = lista.obtenerDuracionLegible(ruta);
-                    listaCompletaCanciones.add(new Cancion(nombreCancion, duracion, ruta));
+                // Las listas recientes sin cambios reutilizan sus filas; si no, se construyen de una vez:
+                // cada fila es un asa sobre el nodo y la duración (junto con los metadatos del índice)
+                // se lee después en segundo plano
+                FilasIndexadas filas = vistasListas.obtener(lista);
+                if (filas == null) {
+                    List<Cancion> nuevas = new ArrayList<>();
+                    List<String> rutas = new ArrayList<>();
+                    for (Nodo nodo = lista.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+                        nuevas.add(new Cancion(nodo));
+                        rutas.add(nodo.getRutaCancion());
+                    }
+                    filas = nuevaVistaCanciones(nuevas);
+                    vistasListas.guardar(lista, filas);
+                    // Calcular en segundo plano la forma de onda y la sonoridad de las pistas que no las tengan
+                    extractorPicos.precalcular(rutas);
+                    analizadorSonoridad.analizar(rutas);
+                }
+                vistaActual = filas;
+                // Las duraciones se leen primero alrededor de la pista que suena (la fila que se mostrará)
+                int filaActual = reproductor.hayPista()
+                        ? filas.getFila(DiccionarioRutas.huella(reproductor.getRutaActual())) : 0;
+                lectorMetadatos.completar(filas.getFilas(), gestor.getIndice(), Math.max(0, filaActual));
+            } else {
+                vistaActual = nuevaVistaCanciones(new ArrayList<>());
+            }
+            listaCompletaCanciones = vistaActual.getFilas();
+
+            // El orden aleatorio se ajusta a las altas y bajas; otra lista lo desactiva
+            avance.setLista(lista);
+            if (avance.getMezclador() != null) {
+                if (avance.esListaMezclada(lista)) {
+                    avance.getMezclador().sincronizar(idsDeLista(nombre));
+                } else {
+                    avance.desactivarAleatorio();
                 }
             }
 
             // Mostrar la lista completa en la tabla
             vista.getTablaCanciones().setItems(listaCompletaCanciones);
-            vista.getTablaCanciones().getVisibleLeafColumn(0).setText("Cancion             Total: "+ gestor.nroDeMusicasEn(nombre));
+            vista.getTablaCanciones().getVisibleLeafColumn(0).setText("Cancion             Total: "+ listaCompletaCanciones.size());
             
             // Seleccionar y hacer scroll a la canción actual
-            String nombreActual = vista.getNombrePresentacion().getText();
-            Platform.runLater(() -> {
-                for (Cancion cancion : listaCompletaCanciones) {
-                    if (cancion.getNombre().equals(nombreActual)) {
-                        vista.getTablaCanciones().getSelectionModel().select(cancion);
-                        vista.getTablaCanciones().scrollTo(cancion);
-                        break;
-                    }
-                }
-            });
+            Cancion actual = reproductor.hayPista()
+                    ? vistaActual.getCancion(DiccionarioRutas.huella(reproductor.getRutaActual())) : null;
+            avance.setActual((actual != null) ? actual.getIdPista() : null);
+            if (actual != null) {
+                Platform.runLater(() -> {
+                    vista.getTablaCanciones().getSelectionModel().select(actual);
+                    vista.getTablaCanciones().scrollTo(actual);
+                });
+            }
         }
     }
 
@@ -381,6 +560,8 @@ public class NOTASOFTController extends Application {
                     vista.getTiempoTotalLabel().setText("00:00");
                 }
                 
+                ListaReproduccion eliminada = gestor.getLista(nombre);
+                if (eliminada != null) vistasListas.quitar(eliminada);
                 gestor.eliminarLista(nombre);
                 vista.getSelectorDeListas().getItems().remove(nombre);
                 vista.getTablaCanciones().getItems().clear();
@@ -398,38 +579,74 @@ public class NOTASOFTController extends Application {
     }
     
     /**
-     * Reordena la lista de reproducción según el nuevo orden en la tabla
+     * Programa la sincronización del orden de la tabla con la lista de
+     * reproducción. Los cambios de un mismo pulso (p. ej. los varios eventos
+     * de ordenar o de arrastrar una fila) se aplican juntos una sola vez.
      */
     public void sincronizarOrdenLista() {
+        if (ordenPendiente) return;
+        ordenPendiente = true;
+        Platform.runLater(this::aplicarOrdenTabla);
+    }
+
+    /**
+     * Lleva la lista de reproducción al orden actual de la tabla moviendo
+     * solo las canciones que cambiaron de sitio, y guarda únicamente esa lista
+     */
+    private void aplicarOrdenTabla() {
+        ordenPendiente = false;
         String nombreLista = vista.getSelectorDeListas().getValue();
         if (nombreLista == null) return;
 
         ListaReproduccion lista = gestor.getLista(nombreLista);
         if (lista == null) return;
 
-        // 1. Vaciar la lista actual
-        lista.vaciarLista();
+        ObservableList<Cancion> items = vista.getTablaCanciones().getItems();
+        List<Long> ids = new ArrayList<>(items.size());
+        for (Cancion cancion : items) {
+            ids.add(cancion.getIdPista());
+        }
 
-        // 2. Reconstruirla con el orden actual de la tabla
-        for (Cancion cancion : vista.getTablaCanciones().getItems()) {
-            lista.agregarCancion(cancion.getNombre(), cancion.getRuta());
+        int movidos = lista.aplicarOrden(ids);
+        if (movidos == 0) return;
+        if (movidos < 0) {
+            // Pistas repetidas: reconstruir la lista, solo si la tabla la muestra completa
+            if (items != listaCompletaCanciones) return;
+            lista.vaciarLista();
+            for (Cancion cancion : items) {
+                lista.agregarCancion(cancion.getNombre(), cancion.getRuta());
+            }
+        } else if (items != listaCompletaCanciones) {
+            // Se reordenaron resultados de búsqueda: la lista completa adopta el nuevo orden
+            Map<Long, Integer> posicion = new HashMap<>(listaCompletaCanciones.size() * 2);
+            int p = 0;
+            for (Nodo nodo = lista.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+                posicion.put(nodo.getIdPista(), p++);
+            }
+            FXCollections.sort(listaCompletaCanciones,
+                    Comparator.comparingInt(c -> posicion.getOrDefault(c.getIdPista(), Integer.MAX_VALUE)));
         }
-        gestor.guardarListas(ARCHIVO_LISTAS);
+        // Las filas mostradas ya reflejan el nuevo orden: la vista guardada sigue valiendo
+        vistasListas.guardar(lista, vistaActual);
+        gestor.guardarLista(ARCHIVO_LISTAS, nombreLista, planificador.ejecutor(PlanificadorTareas.Carril.INTERACTIVO));
     }
     
     /**
-     * Configura el listener para detectar cambios en el orden de la tabla
+     * Crea la vista indexada de una lista de canciones con el oyente que
+     * detecta cambios en el orden de la tabla
+     * @param filas Filas de la lista
+     * @return Filas listas para mostrar en la tabla
      */
-    private void configurarListenerReordenamiento() {
-        vista.getTablaCanciones().getItems().addListener((ListChangeListener<Cancion>) change -> {
+    private FilasIndexadas nuevaVistaCanciones(List<Cancion> filas) {
+        FilasIndexadas vistaFilas = new FilasIndexadas(filas);
+        vistaFilas.getFilas().addListener((ListChangeListener<Cancion>) change -> {
             while (change.next()) {
                 if (change.wasPermutated() || change.wasReplaced() || change.wasUpdated()) {
-                    Platform.runLater(() -> {
-                        sincronizarOrdenLista();
-                    });
+                    sincronizarOrdenLista();
                 }
             }
         });
+        return vistaFilas;
     }
 
     /* ***********************
@@ -456,7 +673,6 @@ public class NOTASOFTController extends Application {
             for (File archivo : archivos) {
                 String ruta = archivo.getAbsolutePath();
                 String nombreCancion = archivo.getName();
-                String duracion = lista.obtenerDuracionLegible(ruta);
                 
                 // Verificar si la canción ya existe en la lista
                 if (lista.getRutaPorNombre(nombreCancion) != null) {
@@ -465,9 +681,9 @@ public class NOTASOFTController extends Application {
                 }
                 
                 lista.agregarCancion(nombreCancion, ruta);
-                listaCompletaCanciones.add(new Cancion(nombreCancion, duracion, ruta));
-                cargarListaSeleccionada();
             }
+            // Las duraciones de las nuevas filas se leen en segundo plano al recargar la lista
+            cargarListaSeleccionada();
             buscarCancion(); // Actualizar la búsqueda
         } else {
             vista.mostrarAlerta("No se agregaron archivos de audio");
@@ -497,7 +713,6 @@ public class NOTASOFTController extends Application {
 
                     String ruta = archivo.getAbsolutePath();
                     String nombreCancion = archivo.getName();
-                    String duracion = lista.obtenerDuracionLegible(ruta);
                     
                     if (lista.getRutaPorNombre(nombreCancion) != null) {
                         vista.mostrarAlerta("La cancion ("+nombreCancion+") no se agrego por que ya existe en la lista ("+nombreLista+")");
@@ -505,10 +720,9 @@ public class NOTASOFTController extends Application {
                     }
                     
                     lista.agregarCancion(nombreCancion, ruta);
-                    listaCompletaCanciones.add(new Cancion(nombreCancion, duracion, ruta));
-                    cargarListaSeleccionada();
                 }
             }
+            cargarListaSeleccionada();
         } else {
             vista.mostrarAlerta("No se agregó alguna carpeta con archivos de audio");
         }
@@ -541,11 +755,13 @@ public class NOTASOFTController extends Application {
             vista.getBtnFavorito().setSelected(gestor.esFavorita(seleccionada));
             
             try {
-                reproductor.detener();
-                vista.getNombrePresentacion().setText(seleccionada.getNombre());
-                inicializarTimelineSiNecesario();
+                // Si es la pista precargada se conserva su reproductor para cambiar sin pausa
+                if (!reproductor.estaPrecargada(seleccionada.getRuta())) {
+                    reproductor.detener();
+                }
+                avance.setActual(seleccionada.getIdPista());
                 reproductor.reproducir(seleccionada.getRuta());
-                mostrarPortada(seleccionada);
+                mostrarCancion(seleccionada);
             } catch (Exception e) {
                 vista.mostrarAlerta("Error al reproducir: " + e.getMessage());
                 siguienteCancion();
@@ -566,19 +782,121 @@ public class NOTASOFTController extends Application {
             return;
         }
 
-        int randomIndex = new Random().nextInt(items.size());
-        vista.getTablaCanciones().getSelectionModel().select(randomIndex);
-        reproducirCancionSeleccionada();
+        // El modo aleatorio sigue activo para siguiente/anterior y el avance automático
+        String listaActual = vista.getSelectorDeListas().getValue();
+        if (!avance.esListaMezclada(gestor.getLista(listaActual))) {
+            MezcladorAleatorio mezclador = new MezcladorAleatorio(idsDeLista(listaActual));
+            Cancion actual = vista.getTablaCanciones().getSelectionModel().getSelectedItem();
+            if (actual != null && reproductor.hayPista()) {
+                mezclador.empezarPor(actual.getIdPista());
+            }
+            avance.activarAleatorio(mezclador);
+        }
+        reproducirPorId(avance.getMezclador().siguiente());
+    }
+
+    /**
+     * Ids de las pistas de una lista, en orden
+     * @param nombreLista Nombre de la lista
+     * @return Ids de pista (vacío si la lista no existe)
+     */
+    private List<Long> idsDeLista(String nombreLista) {
+        List<Long> ids = new ArrayList<>();
+        ListaReproduccion lista = gestor.getLista(nombreLista);
+        if (lista != null) {
+            for (Nodo nodo = lista.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+                ids.add(nodo.getIdPista());
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Reproduce una pista de la lista actual por su id, seleccionándola en la
+     * tabla si está visible
+     * @param idPista Id de la pista (null no hace nada)
+     */
+    private void reproducirPorId(Long idPista) {
+        if (idPista == null) return;
+        if (seleccionarPorId(idPista)) {
+            reproducirCancionSeleccionada();
+            return;
+        }
+        ListaReproduccion lista = gestor.getLista(vista.getSelectorDeListas().getValue());
+        Nodo nodo = (lista != null) ? lista.getNodoPorId(idPista) : null;
+        if (nodo != null) {
+            reproducirFueraDeTabla(new Cancion(nodo, ""));
+        }
+    }
+
+    /**
+     * Selecciona en la tabla la canción con el id dado
+     * @return true si estaba en la tabla
+     */
+    private boolean seleccionarPorId(long idPista) {
+        int fila = filaEnTabla(idPista);
+        if (fila < 0) return false;
+        vista.getTablaCanciones().getSelectionModel().select(fila);
+        return true;
+    }
+
+    /**
+     * Fila de una pista en la tabla, sin recorrerla si la tabla muestra la
+     * lista completa o los resultados de búsqueda
+     * @return Fila o -1 si no está en la tabla
+     */
+    private int filaEnTabla(long idPista) {
+        ObservableList<Cancion> items = vista.getTablaCanciones().getItems();
+        if (items == listaCompletaCanciones) return vistaActual.getFila(idPista);
+        if (items == resultadosBusqueda) return resultadosIndexados.getFila(idPista);
+        for (int i = 0; i < items.size(); i++) {
+            if (items.get(i).getIdPista() == idPista) return i;
+        }
+        return -1;
     }
 
     /**
-     * Pasa a la siguiente canción
+     * Reproduce una canción que no está en la tabla, sin mover la selección
+     */
+    private void reproducirFueraDeTabla(Cancion cancion) {
+        if (!reproductor.estaPrecargada(cancion.getRuta())) {
+            reproductor.detener();
+        }
+        reproductor.reproducir(cancion.getRuta());
+        mostrarCancion(cancion);
+    }
+
+    /**
+     * Muestra el nombre, la portada y la onda de la canción que empezó a sonar
+     */
+    private void mostrarCancion(Cancion cancion) {
+        vista.getNombrePresentacion().setText(cancion.getNombre());
+        mostrarPortada(cancion);
+        mostrarOnda(cancion.getRuta());
+    }
+
+    /**
+     * Pasa a la siguiente canción (cola, orden aleatorio o lista)
      */
     private void siguienteCancion() {
         if (reproductor.getModoRepeticion()) {
             reiniciarCancionActual();
+        } else if (!avance.avanzar() && vista.getSelectorDeListas().getValue() == null) {
+            vista.mostrarAlerta("No hay lista seleccionada");
+        }
+    }
+
+    /**
+     * Añade la canción seleccionada a la cola de reproducción
+     * @param aContinuacion true para que suene justo después de la actual
+     */
+    private void encolarSeleccionada(boolean aContinuacion) {
+        Cancion seleccionada = vista.getTablaCanciones().getSelectionModel().getSelectedItem();
+        if (seleccionada == null) return;
+        if (aContinuacion) {
+            cola.reproducirDespues(seleccionada);
         } else {
-            cambiarCancion(true);
+            cola.encolar(seleccionada);
         }
     }
 
@@ -588,6 +906,13 @@ public class NOTASOFTController extends Application {
     private void anteriorCancion() {
         if (reproductor.getModoRepeticion()) {
             reiniciarCancionActual();
+        } else if (avance.getMezclador() != null) {
+            Long idAnterior = avance.getMezclador().anterior();
+            if (idAnterior != null) {
+                reproducirPorId(idAnterior);
+            } else {
+                reiniciarCancionActual();
+            }
         } else {
             cambiarCancion(false);
         }
@@ -600,8 +925,7 @@ public class NOTASOFTController extends Application {
         Cancion cancionActual = vista.getTablaCanciones().getSelectionModel().getSelectedItem();
         if (cancionActual != null) {
             double volumen = reproductor.getVolumenActual();
-            boolean estabaReproduciendo = (reproductor.getMediaPlayer() != null
-                    && reproductor.getMediaPlayer().getStatus() == MediaPlayer.Status.PLAYING);
+            boolean estabaReproduciendo = reproductor.isReproduciendo();
 
             reproductor.reiniciarReproduccion();
 
@@ -632,17 +956,15 @@ public class NOTASOFTController extends Application {
         }
 
         if (seleccionada != null) {
-            String nombreNueva = siguiente
-                    ? lista.getSiguienteCancion(seleccionada.getNombre())
-                    : lista.getCancionAnterior(seleccionada.getNombre());
-
-            if (nombreNueva != null) {
-                for (int i = 0; i < vista.getTablaCanciones().getItems().size(); i++) {
-                    if (vista.getTablaCanciones().getItems().get(i).getNombre().equals(nombreNueva)) {
-                        vista.getTablaCanciones().getSelectionModel().select(i);
-                        reproducirCancionSeleccionada();
-                        break;
-                    }
+            Nodo actual = lista.getNodoPorId(seleccionada.getIdPista());
+            Nodo nueva = (actual == null) ? null
+                    : (siguiente ? actual.getSiguiente() : actual.getAnterior());
+
+            if (nueva != null) {
+                int fila = filaEnTabla(nueva.getIdPista());
+                if (fila >= 0) {
+                    vista.getTablaCanciones().getSelectionModel().select(fila);
+                    reproducirCancionSeleccionada();
                 }
             } else {
                 int index = siguiente ? 0 : vista.getTablaCanciones().getItems().size() - 1;
@@ -657,42 +979,10 @@ public class NOTASOFTController extends Application {
      */
     private void detenerReproduccion() {
         reproductor.detener();
+        vista.setPicosOnda(null);
         vista.getBarraProgreso().setProgress(0);
         vista.getTiempoTranscurridoLabel().setText("00:00");
         vista.getTiempoTotalLabel().setText("00:00");
-
-        if (actualizadorProgreso != null) {
-            actualizadorProgreso.stop();
-        }
-    }
-
-    /**
-     * Reinicia el Timeline si fue detenido
-     */
-    private void inicializarTimelineSiNecesario() {
-        if (actualizadorProgreso == null) {
-            actualizadorProgreso = new Timeline(
-                new KeyFrame(Duration.millis(100), e -> {
-                    if (reproductor.getMediaPlayer() != null && !vista.barraProgresoPresionado()) {
-                        vista.getBarraProgreso().setProgress(reproductor.getProgreso());
-                        vista.getTiempoTranscurridoLabel().setText(reproductor.formatearTiempo(reproductor.getMediaPlayer().getCurrentTime()));
-                        vista.getTiempoTotalLabel().setText(reproductor.formatearTiempo(reproductor.getMediaPlayer().getTotalDuration()));
-                    }
-                })
-            );
-            actualizadorProgreso.setCycleCount(Animation.INDEFINITE);
-        } else if (actualizadorProgreso.getStatus() == Animation.Status.STOPPED) {
-            actualizadorProgreso.getKeyFrames().clear();
-            actualizadorProgreso.getKeyFrames().add(new KeyFrame(Duration.millis(100), e -> {
-                if (reproductor.getMediaPlayer() != null && !vista.barraProgresoPresionado()) {
-                    vista.getBarraProgreso().setProgress(reproductor.getProgreso());
-                    vista.getTiempoTranscurridoLabel().setText(reproductor.formatearTiempo(reproductor.getMediaPlayer().getCurrentTime()));
-                    vista.getTiempoTotalLabel().setText(reproductor.formatearTiempo(reproductor.getMediaPlayer().getTotalDuration()));
-                }
-            }));
-            actualizadorProgreso.setCycleCount(Animation.INDEFINITE);
-        }
-        actualizadorProgreso.play();
     }
 
     /**
@@ -712,22 +1002,23 @@ public class NOTASOFTController extends Application {
 
             ListaReproduccion lista = gestor.getLista(nombreLista);
             ObservableList<Cancion> canciones = vista.getTablaCanciones().getItems();
-            int indiceActual = canciones.indexOf(seleccionada);
+            int indiceActual = filaEnTabla(seleccionada.getIdPista());
 
             boolean esLaCancionActual = false;
 
-            if (reproductor.getMediaPlayer() != null) {
-                String rutaReproductor = reproductor.getMediaPlayer().getMedia().getSource();
-                String rutaCancionSeleccionada = new File(seleccionada.getRuta()).toURI().toString();
-                esLaCancionActual = rutaReproductor.equals(rutaCancionSeleccionada);
+            if (reproductor.hayPista()) {
+                esLaCancionActual = seleccionada.getRuta().equals(reproductor.getRutaActual());
             }
 
-            if (lista.eliminarCancion(seleccionada.getNombre())) {
-                canciones.remove(seleccionada);
+            if (lista.eliminarCancionPorId(seleccionada.getIdPista())) {
+                if (indiceActual >= 0) canciones.remove(indiceActual);
                 vista.getNombrePresentacion().setText("");
-                listaCompletaCanciones.removeIf(c -> c.getNombre().equals(seleccionada.getNombre()));
+                if (canciones != listaCompletaCanciones) {
+                    int filaCompleta = vistaActual.getFila(seleccionada.getIdPista());
+                    if (filaCompleta >= 0) listaCompletaCanciones.remove(filaCompleta);
+                }
                 buscarCancion();
-                vista.getTablaCanciones().getVisibleLeafColumn(0).setText("Cancion             Total: "+ gestor.nroDeMusicasEn(nombreLista));
+                vista.getTablaCanciones().getVisibleLeafColumn(0).setText("Cancion             Total: "+ listaCompletaCanciones.size());
                 
                 if (esLaCancionActual) {
                     reproductor.detener();
@@ -763,16 +1054,6 @@ public class NOTASOFTController extends Application {
         boolean repetir = vista.getBtnRepetirUna().isSelected();
         reproductor.setModoRepeticion(repetir);
         actualizarEstiloBotonRepetir(repetir);
-
-        if (reproductor.getMediaPlayer() != null) {
-            reproductor.getMediaPlayer().setOnEndOfMedia(() -> {
-                Platform.runLater(() -> {
-                    if (!reproductor.getModoRepeticion()) {
-                        siguienteCancion();
-                    }
-                });
-            });
-        }
     }
 
     /**
@@ -820,20 +1101,119 @@ public class NOTASOFTController extends Application {
     }
 
     /**
-     * Busca canciones según el texto ingresado
+     * Aplica la duración de fundido elegida en el selector
+     */
+    private void configurarFundido() {
+        int indice = vista.getComboFundido().getSelectionModel().getSelectedIndex();
+        double segundos = (indice >= 0 && indice < SEGUNDOS_FUNDIDO.length) ? SEGUNDOS_FUNDIDO[indice] : 0;
+        reproductor.setDuracionFundido(Duration.seconds(segundos));
+    }
+
+    /**
+     * Aplica el modo de normalización de volumen elegido en el selector
+     */
+    private void configurarNormalizacion() {
+        int indice = vista.getComboNormalizacion().getSelectionModel().getSelectedIndex();
+        Reproductor.ModoNormalizacion[] modos = Reproductor.ModoNormalizacion.values();
+        reproductor.setModoNormalizacion(indice >= 0 && indice < modos.length
+                ? modos[indice] : Reproductor.ModoNormalizacion.DESACTIVADA);
+    }
+
+    /**
+     * Busca canciones según el texto ingresado. El índice de trigramas de la
+     * biblioteca da las pistas que coinciden; aquí solo se ubican en la lista
+     * actual y se ordenan por fila. Si no hay coincidencias exactas se
+     * muestran las aproximadas (errores de escritura). Los textos con campos
+     * (artista:queen dur>300 ext:flac fav:si) se resuelven sobre las columnas
+     * de metadatos. La búsqueda corre en segundo plano y el resultado llega
+     * de una vez a la tabla.
      */
     private void buscarCancion() {
-        String textoBusqueda = vista.getCampoBusqueda().getText().trim().toLowerCase();
+        String textoBusqueda = vista.getCampoBusqueda().getText();
 
-        if (textoBusqueda.isEmpty()) {
+        if (textoBusqueda.trim().isEmpty()) {
+            busquedaIncremental.cancelar();
             vista.getTablaCanciones().setItems(listaCompletaCanciones);
-        } else {
-            ObservableList<Cancion> resultados = listaCompletaCanciones.stream()
-                .filter(cancion -> cancion.getNombre().toLowerCase().contains(textoBusqueda))
-                .collect(Collectors.toCollection(FXCollections::observableArrayList));
+            return;
+        }
+        busquedaIncremental.buscarYa(textoBusqueda, ids -> mostrarFilas(textoBusqueda, ids));
+    }
+
+    /**
+     * Igual que buscarCancion, pero espera a que se deje de escribir y
+     * descarta las consultas que quedan reemplazadas
+     */
+    private void buscarMientrasSeEscribe() {
+        String textoBusqueda = vista.getCampoBusqueda().getText();
+
+        if (textoBusqueda.trim().isEmpty()) {
+            busquedaIncremental.cancelar();
+            vista.getTablaCanciones().setItems(listaCompletaCanciones);
+            return;
+        }
+        busquedaIncremental.solicitar(textoBusqueda, ids -> mostrarFilas(textoBusqueda, ids));
+    }
+
+    /**
+     * Muestra los resultados de una búsqueda por nombre. Si hubo coincidencias
+     * exactas pero ninguna está en la lista actual, se busca por parecido para
+     * que un error de tecleo encuentre las canciones de esta lista
+     * @param consulta Texto buscado
+     * @param ids      Ids de pista encontrados en la biblioteca
+     */
+    private void mostrarFilas(String consulta, List<Long> ids) {
+        if (mostrarFilas(ids) == 0 && !ids.isEmpty() && !ConsultaMetadatos.usaCampos(consulta)) {
+            busquedaIncremental.buscarAproximadoYa(consulta, this::mostrarFilas);
+        }
+    }
+
+    /**
+     * Muestra en la tabla las canciones de la lista actual con los ids dados,
+     * en el orden de la lista
+     * @param ids Ids de pista encontrados en la biblioteca
+     * @return Filas mostradas
+     */
+    private int mostrarFilas(List<Long> ids) {
+        int[] filas = new int[ids.size()];
+        int n = 0;
+        for (Long id : ids) {
+            int fila = vistaActual.getFila(id);
+            if (fila >= 0) filas[n++] = fila;
+        }
+        Arrays.sort(filas, 0, n);
 
-            vista.getTablaCanciones().setItems(resultados);
+        List<Cancion> resultados = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            resultados.add(listaCompletaCanciones.get(filas[i]));
         }
+        resultadosBusqueda.setAll(resultados);
+        vista.getTablaCanciones().setItems(resultadosBusqueda);
+        return n;
+    }
+
+    /**
+     * Busca en todas las listas a la vez y reproduce el resultado elegido
+     */
+    private void abrirBusquedaBiblioteca() {
+        DialogoBusquedaBiblioteca dialogo = new DialogoBusquedaBiblioteca(vista.getPrimaryStage(),
+                consulta -> gestor.buscarEnBiblioteca(consulta, DialogoBusquedaBiblioteca.MAX_RESULTADOS));
+        dialogo.showAndWait().ifPresent(this::reproducirResultado);
+    }
+
+    /**
+     * Reproduce un resultado de la búsqueda global. Si la lista actual no lo
+     * contiene, se abre la primera lista que lo tenga.
+     * @param resultado Resultado elegido
+     */
+    private void reproducirResultado(IndiceBiblioteca.Resultado resultado) {
+        List<String> listas = resultado.getListas();
+        if (listas.isEmpty()) return;
+        if (!listas.contains(vista.getSelectorDeListas().getValue())) {
+            vista.getSelectorDeListas().setValue(listas.get(0));
+        }
+        vista.getCampoBusqueda().setText("");
+        avance.desactivarAleatorio();
+        reproducirPorId(resultado.getIdPista());
     }
 
     /* ***********************
@@ -862,43 +1242,73 @@ public class NOTASOFTController extends Application {
      */
     private void configurarBarraProgresoInteractiva() {
         ProgressBar barra = vista.getBarraProgreso();
+        busquedaArrastre = new BusquedaLimitada(reproductor::setPosicion, INTERVALO_BUSQUEDA_ARRASTRE);
 
-        // Manejar clic en la barra de progreso
+        // Clic y arrastre: solo se actualiza la barra; las búsquedas se agrupan
         barra.setOnMousePressed(event -> {
-            if (reproductor.getMediaPlayer() != null) {
-                double progreso = event.getX() / barra.getWidth();
-                progreso = Math.max(0, Math.min(1, progreso));
-                Duration nuevaPosicion = reproductor.getMediaPlayer().getTotalDuration().multiply(progreso);
-                reproductor.getMediaPlayer().seek(nuevaPosicion);
-                vista.getBarraProgreso().setProgress(progreso);
-                vista.getTiempoTranscurridoLabel().setText(reproductor.formatearTiempo(nuevaPosicion));
+            Duration nuevaPosicion = posicionEnBarra(event.getX());
+            if (nuevaPosicion != null) {
+                busquedaArrastre.solicitar(nuevaPosicion);
             }
         });
 
-        //Manejar arrastre
         barra.setOnMouseDragged(event -> {
-          if (reproductor.getMediaPlayer() != null) {
-                double progreso = event.getX() / barra.getWidth();
-                progreso = Math.max(0, Math.min(1, progreso));
-                Duration nuevaPosicion = reproductor.getMediaPlayer().getTotalDuration().multiply(progreso);
-                reproductor.getMediaPlayer().seek(nuevaPosicion);
-                vista.getBarraProgreso().setProgress(progreso);
-                vista.getTiempoTranscurridoLabel().setText(reproductor.formatearTiempo(nuevaPosicion));
+            Duration nuevaPosicion = posicionEnBarra(event.getX());
+            if (nuevaPosicion != null) {
+                busquedaArrastre.solicitar(nuevaPosicion);
+            }
+        });
+
+        // Al soltar: búsqueda final exacta
+        barra.setOnMouseReleased(event -> {
+            Duration nuevaPosicion = posicionEnBarra(event.getX());
+            if (nuevaPosicion != null) {
+                busquedaArrastre.finalizar(nuevaPosicion);
             }
         });
     }
+
+    /**
+     * Actualiza la barra y la etiqueta de tiempo para una coordenada del ratón
+     * @param x Coordenada horizontal dentro de la barra
+     * @return Posición correspondiente, o null si no hay pista cargada
+     */
+    private Duration posicionEnBarra(double x) {
+        if (!reproductor.hayPista()) return null;
+        ProgressBar barra = vista.getBarraProgreso();
+        double progreso = Math.max(0, Math.min(1, x / barra.getWidth()));
+        Duration nuevaPosicion = reproductor.getDuracion().multiply(progreso);
+        barra.setProgress(progreso);
+        vista.setProgresoOnda(progreso);
+        vista.getTiempoTranscurridoLabel().setText(RelojReproduccion.etiqueta((long) nuevaPosicion.toMillis()));
+        return nuevaPosicion;
+    }
     
+    /**
+     * Dibuja la forma de onda de una pista; si aún no está calculada se pide
+     * al extractor y se dibuja cuando llegue (si la pista sigue sonando).
+     * @param ruta Ruta de la pista que empieza a sonar
+     */
+    private void mostrarOnda(String ruta) {
+        vista.setPicosOnda(null);
+        extractorPicos.solicitar(ruta, picos -> {
+            if (ruta.equals(reproductor.getRutaActual())) {
+                vista.setPicosOnda(picos);
+            }
+        });
+    }
+
     /**
      * Guarda la sesión actual (canción, posición, volumen, etc.)
      */
     private void guardarSesion() {
         Cancion cancionSeleccionada = vista.getTablaCanciones().getSelectionModel().getSelectedItem();
-        if (reproductor.getMediaPlayer() != null && cancionSeleccionada != null) {
+        if (reproductor.hayPista() && cancionSeleccionada != null) {
             String listaActual = vista.getSelectorDeListas().getValue();
-            Duration tiempo = reproductor.getMediaPlayer().getCurrentTime();
+            Duration tiempo = reproductor.getTiempoActual();
             double volumen = reproductor.getVolumenActual();
-            boolean reproduciendo = reproductor.getMediaPlayer().getStatus() == MediaPlayer.Status.PLAYING;
-            boolean pausado = reproductor.getMediaPlayer().getStatus() == MediaPlayer.Status.PAUSED;
+            boolean reproduciendo = reproductor.isReproduciendo();
+            boolean pausado = reproductor.isPausado();
 
             sesionGuardada = new SesionGuardada(
                 listaActual,
@@ -933,10 +1343,146 @@ public class NOTASOFTController extends Application {
         }
     }
     
+    /**
+     * Abre el archivo del punto de control de la sesión
+     */
+    private void abrirPuntoDeControl() {
+        try {
+            puntoDeControl = new PuntoDeControlSesion(ARCHIVO_PUNTO_CONTROL);
+        } catch (IOException e) {
+            System.out.println("No se pudo abrir el punto de control: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Programa la escritura periódica del punto de control
+     */
+    private void iniciarPuntosDeControl() {
+        if (puntoDeControl == null) return;
+        temporizadorPuntoControl = new Timeline(new KeyFrame(INTERVALO_PUNTO_CONTROL, e -> {
+            registrarPuntoDeControl();
+            estadisticas.volcar(planificador.ejecutor(PlanificadorTareas.Carril.INTERACTIVO));
+        }));
+        temporizadorPuntoControl.setCycleCount(Animation.INDEFINITE);
+        temporizadorPuntoControl.play();
+    }
+
+    /**
+     * Programa el guardado periódico de la caché de metadatos en el carril de
+     * guardados, para que un cierre inesperado no pierda lo calculado en fondo.
+     */
+    private void iniciarGuardadoCache() {
+        temporizadorCache = new Timeline(new KeyFrame(INTERVALO_GUARDADO_CACHE, e -> {
+            CacheMetadatos cache = CacheMetadatos.getInstancia();
+            if (cache.isModificada()) {
+                planificador.ejecutar(PlanificadorTareas.Carril.INTERACTIVO, new PlanificadorTareas.Token(),
+                        () -> cache.guardar(ARCHIVO_METADATOS));
+            }
+        }));
+        temporizadorCache.setCycleCount(Animation.INDEFINITE);
+        temporizadorCache.play();
+    }
+
+    /**
+     * Sobrescribe el punto de control con el estado actual (lista, pista, posición, volumen)
+     */
+    private void registrarPuntoDeControl() {
+        if (puntoDeControl == null) return;
+
+        byte estado = PuntoDeControlSesion.DETENIDO;
+        long idPista = 0;
+        long posicion = 0;
+
+        // La pista que suena, no la seleccionada: puede venir de la cola o de otra lista
+        if (reproductor.hayPista() && reproductor.getRutaActual() != null) {
+            idPista = DiccionarioRutas.huella(reproductor.getRutaActual());
+            posicion = reproductor.getPosicionMs();
+            if (reproductor.isReproduciendo()) {
+                estado = PuntoDeControlSesion.REPRODUCIENDO;
+            } else if (reproductor.isPausado()) {
+                estado = PuntoDeControlSesion.PAUSADO;
+            }
+        }
+        int tamCola = cola.copiarIds(idsCola);
+        puntoDeControl.escribir(vista.getSelectorDeListas().getValue(), idPista, posicion,
+                reproductor.getVolumenActual(), estado, idsCola, tamCola);
+    }
+
+    /**
+     * Restaura la sesión desde el punto de control. La pista se localiza por su id
+     * y se reanuda antes de sincronizar la tabla.
+     * @return true si había un punto de control válido
+     */
+    private boolean restaurarPuntoDeControl() {
+        if (puntoDeControl == null || !puntoDeControl.leer()) return false;
+
+        String nombreLista = puntoDeControl.getLista();
+        ListaReproduccion lista = gestor.getLista(nombreLista);
+        if (lista == null) {
+            // Un nombre largo se guarda recortado: se busca la lista que se recortaría igual
+            for (String nombre : gestor.getNombresDeListas()) {
+                if (puntoDeControl.esListaLeida(nombre)) {
+                    nombreLista = nombre;
+                    lista = gestor.getLista(nombre);
+                    break;
+                }
+            }
+        }
+        // La pista se busca en toda la biblioteca: no tiene por qué estar en la lista mostrada
+        Nodo nodo = (puntoDeControl.getIdPista() != 0) ? gestor.getNodoPorId(puntoDeControl.getIdPista()) : null;
+        if (lista == null && nodo == null) return false;
+
+        reproductor.setVolumen(puntoDeControl.getVolumen());
+        restaurarCola(puntoDeControl.getCola());
+        if (nodo != null) {
+            if (puntoDeControl.getEstado() != PuntoDeControlSesion.DETENIDO) {
+                reproductor.reproducir(nodo.getRutaCancion(),
+                        Duration.millis(puntoDeControl.getPosicionMs()),
+                        puntoDeControl.getEstado() == PuntoDeControlSesion.PAUSADO);
+            }
+            vista.getNombrePresentacion().setText(nodo.getNombreCancion());
+            mostrarOnda(nodo.getRutaCancion());
+        }
+
+        if (lista != null) {
+            vista.getSelectorDeListas().setValue(nombreLista);
+        }
+        if (nodo != null) {
+            Cancion sonando = new Cancion(nodo, "");
+            Platform.runLater(() -> {
+                int fila = filaEnTabla(sonando.getIdPista());
+                if (fila >= 0) {
+                    vista.getTablaCanciones().getSelectionModel().select(fila);
+                    vista.getTablaCanciones().scrollTo(fila);
+                }
+                vista.getBtnFavorito().setSelected(gestor.esFavorita(sonando));
+                mostrarPortada(sonando);
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Reconstruye la cola de reproducción a partir de los ids guardados;
+     * las pistas que ya no están en ninguna lista se omiten.
+     * @param ids Identificadores de pista en orden
+     */
+    private void restaurarCola(long[] ids) {
+        cola.vaciar();
+        for (long id : ids) {
+            Nodo nodo = gestor.getNodoPorId(id);
+            if (nodo != null) {
+                cola.encolar(new Cancion(nodo, ""));
+            }
+        }
+    }
+
     /**
      * Carga la sesión guardada si existe
      */
     private void cargarSesion() {
+        if (restaurarPuntoDeControl()) return;
+
         try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(ARCHIVO_SESION))) {
             sesionGuardada = (SesionGuardada) in.readObject();
             if (sesionGuardada != null && gestor.existeLista(sesionGuardada.getListaActual())) {
@@ -945,13 +1491,14 @@ public class NOTASOFTController extends Application {
                 cargarListaSeleccionada();
 
                 // Seleccionar la canción que estaba sonando
-                for (Cancion cancion : vista.getTablaCanciones().getItems()) {
-                    if (cancion.getNombre().equals(sesionGuardada.getCancionActual())) {
-                        vista.getTablaCanciones().getSelectionModel().select(cancion);
-                        vista.getTablaCanciones().scrollTo(cancion);
-                        mostrarPortada(cancion);
-                        break;
-                    }
+                String rutaSesion = gestor.getLista(sesionGuardada.getListaActual())
+                        .getRutaPorNombre(sesionGuardada.getCancionActual());
+                int fila = (rutaSesion != null) ? filaEnTabla(DiccionarioRutas.huella(rutaSesion)) : -1;
+                if (fila >= 0) {
+                    Cancion cancion = vista.getTablaCanciones().getItems().get(fila);
+                    vista.getTablaCanciones().getSelectionModel().select(fila);
+                    vista.getTablaCanciones().scrollTo(fila);
+                    mostrarPortada(cancion);
                 }
 
                 // Reproducir la canción y ajustar posición/volumen
@@ -962,21 +1509,13 @@ public class NOTASOFTController extends Application {
                     }else{
                         vista.getBtnFavorito().setSelected(false);
                     }
-                    reproductor.reproducir(cancion.getRuta());
+                    reproductor.setVolumen(sesionGuardada.getVolumen());
+                    avance.setActual(cancion.getIdPista());
+                    reproductor.reproducir(cancion.getRuta(),
+                            Duration.millis(sesionGuardada.getTiempoTranscurrido()),
+                            !sesionGuardada.isReproduciendo());
                     vista.getNombrePresentacion().setText(cancion.getNombre());
-                    
-                    if (reproductor.getMediaPlayer() != null) {
-                        reproductor.getMediaPlayer().setOnReady(() -> {
-                            reproductor.setPosicion(Duration.millis(sesionGuardada.getTiempoTranscurrido()));
-                            reproductor.setVolumen(sesionGuardada.getVolumen());
-
-                            if (sesionGuardada.isPausado()) {
-                                reproductor.pausar();
-                            } else if (sesionGuardada.isReproduciendo()) {
-                                reproductor.getMediaPlayer().play();
-                            }
-                        });
-                    }
+                    mostrarOnda(cancion.getRuta());
                 }
             }
         } catch (Exception e) {
@@ -1033,14 +1572,13 @@ public class NOTASOFTController extends Application {
                                 );
 
                                 if (nombreLista.equals(vista.getSelectorDeListas().getValue())) {
-                                    String duracion = gestor.getLista(nombreLista).obtenerDuracionLegible(archivo.getAbsolutePath());
-                                    vista.getTablaCanciones().getItems().add(
-                                        new Cancion(
+                                    Cancion nueva = new Cancion(
                                             (titulo != null ? titulo : archivo.getName()),
-                                            duracion,
+                                            "",
                                             archivo.getAbsolutePath()
-                                        )
                                     );
+                                    vista.getTablaCanciones().getItems().add(nueva);
+                                    leerDuracion(nueva);
                                 }
                             }
 
@@ -1080,6 +1618,7 @@ public class NOTASOFTController extends Application {
         } else {
             gestor.eliminarFav(seleccionada);
         }
+        vista.refrescarTabla();
     }
 
     /**
@@ -1095,6 +1634,7 @@ public class NOTASOFTController extends Application {
     public void reproducirAlTocar() {
         Cancion seleccionada = vista.getTablaCanciones().getSelectionModel().getSelectedItem();
         if (seleccionada != null) {
+            avance.desactivarAleatorio();
             reproducirCancionSeleccionada();
         }
     }
@@ -1103,13 +1643,56 @@ public class NOTASOFTController extends Application {
      * Muestra la portada del álbum si está disponible
      */
     public void mostrarPortada(Cancion cancion) {
-        String nombre = vista.getSelectorDeListas().getValue();
-        ListaReproduccion lista = gestor.getLista(nombre);
-        if(lista.obtenerPortada(cancion.getRuta()) == null) {
-            vista.getImagePortada().setImage(new Image("/resources/imagenes/disco-de-musica-con-nota-musical.png"));
-        } else {
-            vista.getImagePortada().setImage(lista.obtenerPortada(cancion.getRuta()));
+        tokenPortada.cancelar();
+        String ruta = cancion.getRuta();
+        if (ruta.equals(rutaPortadaPrecargada)) {
+            mostrarImagenPortada(portadaPrecargada);
+            return;
+        }
+        ListaReproduccion lista = gestor.getLista(vista.getSelectorDeListas().getValue());
+        if (lista == null) {
+            mostrarImagenPortada(null);
+            return;
         }
+        // La portada se lee del archivo en segundo plano; si entretanto cambia la pista, se descarta
+        tokenPortada = new PlanificadorTareas.Token();
+        planificador.calcular(PlanificadorTareas.Carril.INTERACTIVO, tokenPortada,
+                () -> lista.obtenerPortada(ruta), this::mostrarImagenPortada);
+    }
+
+    /**
+     * Lee de antemano la portada de la pista que se va a precargar, para
+     * mostrarla sin esperar al disco cuando empiece a sonar
+     * @param ruta Ruta de la siguiente pista (puede ser null)
+     */
+    private void precargarPortada(String ruta) {
+        if (ruta == null || ruta.equals(rutaPortadaPrecargada) || ruta.equals(rutaPortadaEnLectura)) return;
+        ListaReproduccion lista = gestor.getLista(vista.getSelectorDeListas().getValue());
+        if (lista == null) return;
+        tokenPrecargaPortada.cancelar();
+        tokenPrecargaPortada = new PlanificadorTareas.Token();
+        rutaPortadaEnLectura = ruta;
+        planificador.calcular(PlanificadorTareas.Carril.INTERACTIVO, tokenPrecargaPortada,
+                () -> lista.obtenerPortada(ruta), portada -> {
+                    rutaPortadaPrecargada = ruta;
+                    portadaPrecargada = portada;
+                    rutaPortadaEnLectura = null;
+                });
+    }
+
+    /**
+     * Lee en segundo plano la duración de una fila recién agregada
+     */
+    private void leerDuracion(Cancion cancion) {
+        String ruta = cancion.getRuta();
+        planificador.calcular(PlanificadorTareas.Carril.VISIBLE, new PlanificadorTareas.Token(),
+                () -> ListaReproduccion.leerMetadatos(ruta),
+                metadatos -> cancion.setDuracion(metadatos.getDuracionLegible()));
+    }
+
+    private void mostrarImagenPortada(Image portada) {
+        vista.getImagePortada().setImage((portada != null)
+                ? portada : new Image("/resources/imagenes/disco-de-musica-con-nota-musical.png"));
     }
 
     /**
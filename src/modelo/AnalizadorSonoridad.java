@@ -0,0 +1,114 @@
+package modelo;
+
+/*
+ * AnalizadorSonoridad.java - Analiza por lotes la sonoridad de la biblioteca.
+ * Reparte la lista de pistas entre los hilos del carril de fondo del
+ * planificador, guarda el resultado de cada pista en la caché de metadatos y
+ * al final combina las pistas de cada carpeta en la sonoridad del álbum.
+ */
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Escáner de sonoridad en paralelo. Solo analiza MP3 (JLayer) y omite las
+ * pistas que ya tienen resultado vigente en la caché.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class AnalizadorSonoridad {
+
+    private final PlanificadorTareas planificador;
+    private final PlanificadorTareas.Token token = new PlanificadorTareas.Token(); // Cancela todos los análisis al cerrar
+    private final CacheMetadatos cache = CacheMetadatos.getInstancia();
+    private final AtomicInteger analizadas = new AtomicInteger();
+
+    /**
+     * @param planificador Planificador cuyo carril de fondo hace el análisis
+     */
+    public AnalizadorSonoridad(PlanificadorTareas planificador) {
+        this.planificador = planificador;
+    }
+
+    /**
+     * Analiza en segundo plano las pistas sin resultado y actualiza los álbumes.
+     * Qué pistas ya tienen resultado se mira en el carril de fondo, no en el
+     * hilo que llama, porque cada consulta a la caché mira el archivo en disco.
+     *
+     * @param rutas Rutas de la biblioteca
+     */
+    public void analizar(Collection<String> rutas) {
+        List<String> compatibles = new ArrayList<>();
+        for (String ruta : rutas) {
+            if (ExtractorPicos.esCompatible(ruta)) {
+                compatibles.add(ruta);
+            }
+        }
+        List<String> todas = new ArrayList<>(rutas);
+        boolean aceptado = planificador.repartir(PlanificadorTareas.Carril.FONDO, token, compatibles,
+                this::analizarPista, () -> actualizarAlbumes(todas));
+        if (!aceptado) {
+            System.err.println("No se pudo encolar el análisis de sonoridad");
+        }
+    }
+
+    private void analizarPista(String ruta) {
+        if (cache.getSonoridad(ruta) != null) return;
+        try {
+            Sonoridad sonoridad = Sonoridad.analizar(ruta);
+            if (sonoridad != null) {
+                cache.setSonoridad(ruta, sonoridad);
+                analizadas.incrementAndGet();
+            }
+        } catch (Exception e) {
+            System.err.println("Error al analizar la sonoridad: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Combina las pistas analizadas de cada carpeta en la sonoridad del álbum.
+     */
+    private void actualizarAlbumes(List<String> rutas) {
+        Map<String, List<Sonoridad>> porCarpeta = new LinkedHashMap<>();
+        for (String ruta : rutas) {
+            Sonoridad s = cache.getSonoridad(ruta);
+            if (s != null) {
+                porCarpeta.computeIfAbsent(carpeta(ruta), c -> new ArrayList<>()).add(s);
+            }
+        }
+        for (Map.Entry<String, List<Sonoridad>> album : porCarpeta.entrySet()) {
+            Sonoridad combinada = Sonoridad.combinar(album.getValue());
+            if (combinada != null) {
+                cache.setSonoridad(album.getKey(), combinada);
+            }
+        }
+    }
+
+    /**
+     * Carpeta que agrupa una pista como álbum.
+     */
+    public static String carpeta(String ruta) {
+        String padre = new File(ruta).getParent();
+        return (padre != null) ? padre : ruta;
+    }
+
+    /**
+     * Pistas analizadas desde que se creó el analizador.
+     */
+    public int getAnalizadas() {
+        return analizadas.get();
+    }
+
+    /**
+     * Cancela los análisis pendientes.
+     */
+    public void cerrar() {
+        token.cancelar();
+    }
+}
@@ -0,0 +1,246 @@
+package modelo;
+
+/*
+ * AvanceReproduccion.java - Decide qué suena al terminar la pista actual.
+ * Orden de prioridad: cola "a continuación", orden aleatorio y, si no hay
+ * ninguno, la pista siguiente de la lista (volviendo a la primera al final).
+ * No depende de la tabla: la vista solo informa qué pistas están a la vista.
+ */
+
+/**
+ * Avance automático del reproductor. Se registra como fin de pista y como
+ * proveedor de la siguiente ruta (precarga), de modo que funciona igual con
+ * los motores reales y con {@link RelojVirtual}.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class AvanceReproduccion {
+
+    /**
+     * Pistas a las que se puede saltar (la tabla puede mostrar solo los
+     * resultados de una búsqueda).
+     */
+    public interface Filtro {
+        /**
+         * @param idPista Id de la pista
+         * @return true si la pista está a la vista
+         */
+        boolean visible(long idPista);
+
+        /**
+         * @return Canción a la que se vuelve al acabar la lista, o null si no hay
+         */
+        Cancion primera();
+    }
+
+    /**
+     * Recibe cada pista que el avance pone a sonar.
+     */
+    public interface OyenteAvance {
+        /**
+         * @param cancion Canción que empezó a sonar
+         * @param visible true si está a la vista (la lista sigue desde ella)
+         */
+        void cancionIniciada(Cancion cancion, boolean visible);
+
+        /**
+         * La pista que sonará después de la actual ya se conoce (para precargar
+         * lo que haga falta).
+         * @param ruta Ruta de la siguiente pista
+         */
+        default void siguientePrevista(String ruta) {
+        }
+    }
+
+    private final Reproductor reproductor;
+    private final ColaReproduccion cola;
+    private ListaReproduccion lista;                 // Lista que se recorre
+    private Filtro filtro;                           // null: toda la lista está a la vista
+    private OyenteAvance oyente;
+    private Long idActual;                           // Pista de la lista desde la que se sigue
+    private MezcladorAleatorio mezclador;            // null si el modo aleatorio está desactivado
+    private ListaReproduccion listaMezclada;         // Lista sobre la que se generó el orden
+
+    /**
+     * Crea el avance y lo conecta al reproductor (fin de pista y precarga).
+     *
+     * @param reproductor Reproductor que se controla
+     * @param cola        Cola "a continuación" compartida con la interfaz
+     */
+    public AvanceReproduccion(Reproductor reproductor, ColaReproduccion cola) {
+        this.reproductor = reproductor;
+        this.cola = cola;
+        reproductor.setOnEndOfMedia(() -> {
+            if (!reproductor.getModoRepeticion()) {
+                avanzar();
+            }
+        });
+        reproductor.setProveedorSiguiente(() -> {
+            String siguiente = rutaSiguiente();
+            if (siguiente != null && oyente != null) {
+                oyente.siguientePrevista(siguiente);
+            }
+            return siguiente;
+        });
+    }
+
+    /* ***********************
+     * ESTADO
+     * ***********************/
+
+    /**
+     * @param lista Lista que se recorre (null si no hay ninguna)
+     */
+    public void setLista(ListaReproduccion lista) {
+        this.lista = lista;
+    }
+
+    public ListaReproduccion getLista() {
+        return lista;
+    }
+
+    /**
+     * @param filtro Pistas a la vista, o null para toda la lista
+     */
+    public void setFiltro(Filtro filtro) {
+        this.filtro = filtro;
+    }
+
+    public void setOyente(OyenteAvance oyente) {
+        this.oyente = oyente;
+    }
+
+    /**
+     * Fija la pista desde la que sigue la lista (el usuario eligió una).
+     * @param idPista Id de la pista, o null para empezar por la primera
+     */
+    public void setActual(Long idPista) {
+        this.idActual = idPista;
+    }
+
+    public Long getActual() {
+        return idActual;
+    }
+
+    /**
+     * Activa el modo aleatorio sobre la lista actual.
+     * @param mezclador Orden aleatorio de la lista
+     */
+    public void activarAleatorio(MezcladorAleatorio mezclador) {
+        this.mezclador = mezclador;
+        this.listaMezclada = lista;
+    }
+
+    /**
+     * Sale del modo aleatorio (el usuario eligió una canción o cambió de lista).
+     */
+    public void desactivarAleatorio() {
+        mezclador = null;
+        listaMezclada = null;
+    }
+
+    /**
+     * @return Orden aleatorio activo, o null
+     */
+    public MezcladorAleatorio getMezclador() {
+        return mezclador;
+    }
+
+    /**
+     * @return true si el modo aleatorio está activo sobre la lista dada
+     */
+    public boolean esListaMezclada(ListaReproduccion otra) {
+        return mezclador != null && otra != null && otra == listaMezclada;
+    }
+
+    /* ***********************
+     * DECISIÓN
+     * ***********************/
+
+    /**
+     * Ruta de la pista que sonará al terminar la actual, sin cambiar nada.
+     * @return Ruta o null si no hay siguiente
+     */
+    public String rutaSiguiente() {
+        Cancion encolada = cola.verSiguiente();
+        if (encolada != null) return encolada.getRuta();
+        if (mezclador != null) {
+            Nodo nodo = nodoMezclado(mezclador.verSiguiente());
+            return (nodo != null) ? nodo.getRutaCancion() : null;
+        }
+        Nodo nueva = sucesor();
+        if (nueva != null) {
+            return visible(nueva.getIdPista()) ? nueva.getRutaCancion() : null;
+        }
+        Cancion primera = primera();
+        return (primera != null) ? primera.getRuta() : null;
+    }
+
+    /**
+     * Elige la siguiente pista consumiendo la cola o el orden aleatorio.
+     * @return Canción elegida o null si no hay siguiente
+     */
+    public Cancion siguiente() {
+        if (!cola.estaVacia()) {
+            return cola.extraer();
+        }
+        if (mezclador != null) {
+            Nodo nodo = nodoMezclado(mezclador.siguiente());
+            return (nodo != null) ? new Cancion(nodo, "") : null;
+        }
+        Nodo nueva = sucesor();
+        if (nueva != null) {
+            return visible(nueva.getIdPista()) ? new Cancion(nueva, "") : null;
+        }
+        return primera();
+    }
+
+    /**
+     * Pone a sonar la siguiente pista. Si es la precargada se conserva su
+     * motor para cambiar sin pausa (o para el fundido cruzado).
+     * @return true si empezó a sonar otra pista
+     */
+    public boolean avanzar() {
+        Cancion cancion = siguiente();
+        if (cancion == null) return false;
+
+        boolean visible = visible(cancion.getIdPista());
+        if (visible) {
+            idActual = cancion.getIdPista();
+        }
+        if (!reproductor.estaPrecargada(cancion.getRuta())) {
+            reproductor.detener();
+        }
+        reproductor.reproducir(cancion.getRuta());
+        if (oyente != null) {
+            oyente.cancionIniciada(cancion, visible);
+        }
+        return true;
+    }
+
+    /**
+     * Nodo que sigue al actual en la lista; null al final de la lista o si no
+     * hay pista actual.
+     */
+    private Nodo sucesor() {
+        if (lista == null || idActual == null) return null;
+        Nodo actual = lista.getNodoPorId(idActual);
+        return (actual != null) ? actual.getSiguiente() : null;
+    }
+
+    private Nodo nodoMezclado(Long idPista) {
+        return (idPista != null && listaMezclada != null) ? listaMezclada.getNodoPorId(idPista) : null;
+    }
+
+    private boolean visible(long idPista) {
+        if (filtro != null) return filtro.visible(idPista);
+        return lista != null && lista.getNodoPorId(idPista) != null;
+    }
+
+    private Cancion primera() {
+        if (filtro != null) return filtro.primera();
+        Nodo cabeza = (lista != null) ? lista.getCabeza() : null;
+        return (cabeza != null) ? new Cancion(cabeza, "") : null;
+    }
+}
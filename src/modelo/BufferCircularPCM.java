@@ -0,0 +1,94 @@
+package modelo;
+
+/*
+ * BufferCircularPCM.java - Buffer circular sin bloqueos para muestras PCM.
+ * Pensado para exactamente un productor (hilo decodificador) y un
+ * consumidor (hilo de salida de audio).
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Buffer circular de un solo productor y un solo consumidor (SPSC).
+ * Las posiciones de escritura y lectura crecen indefinidamente y se
+ * publican con lazySet, de modo que ningún lado necesita bloqueos.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class BufferCircularPCM {
+
+    private final short[] muestras;          // Almacenamiento circular
+    private final int mascara;               // capacidad - 1 (capacidad potencia de dos)
+    private final AtomicLong escritas = new AtomicLong();   // Posición del productor
+    private final AtomicLong leidas   = new AtomicLong();   // Posición del consumidor
+
+    /**
+     * Crea el buffer con al menos la capacidad indicada (se redondea a potencia de dos).
+     *
+     * @param capacidadMinima Número mínimo de muestras que debe poder contener
+     */
+    public BufferCircularPCM(int capacidadMinima) {
+        if (capacidadMinima < 2) {
+            throw new IllegalArgumentException("Capacidad inválida: " + capacidadMinima);
+        }
+        int capacidad = Integer.highestOneBit(capacidadMinima - 1) << 1;
+        muestras = new short[capacidad];
+        mascara = capacidad - 1;
+    }
+
+    public int getCapacidad() {
+        return muestras.length;
+    }
+
+    /**
+     * Muestras listas para leer.
+     */
+    public int disponibles() {
+        return (int) (escritas.get() - leidas.get());
+    }
+
+    /**
+     * Espacio libre para escribir.
+     */
+    public int libres() {
+        return muestras.length - disponibles();
+    }
+
+    /**
+     * Copia hasta {@code longitud} muestras al buffer (solo el productor).
+     *
+     * @return Cantidad de muestras realmente escritas (0 si está lleno)
+     */
+    public int escribir(short[] origen, int desde, int longitud) {
+        long posicion = escritas.get();
+        int n = Math.min(longitud, muestras.length - (int) (posicion - leidas.get()));
+        for (int i = 0; i < n; i++) {
+            muestras[(int) (posicion + i) & mascara] = origen[desde + i];
+        }
+        escritas.lazySet(posicion + n);
+        return n;
+    }
+
+    /**
+     * Copia hasta {@code longitud} muestras desde el buffer (solo el consumidor).
+     *
+     * @return Cantidad de muestras realmente leídas (0 si está vacío)
+     */
+    public int leer(short[] destino, int desde, int longitud) {
+        long posicion = leidas.get();
+        int n = Math.min(longitud, (int) (escritas.get() - posicion));
+        for (int i = 0; i < n; i++) {
+            destino[desde + i] = muestras[(int) (posicion + i) & mascara];
+        }
+        leidas.lazySet(posicion + n);
+        return n;
+    }
+
+    /**
+     * Descarta todo el contenido. Solo debe llamarse con ambos hilos detenidos.
+     */
+    public void vaciar() {
+        leidas.set(escritas.get());
+    }
+}
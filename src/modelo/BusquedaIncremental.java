@@ -0,0 +1,218 @@
+package modelo;
+
+/*
+ * BusquedaIncremental.java - Búsqueda mientras se escribe, fuera del hilo de JavaFX.
+ * Espera a que se deje de teclear, busca en un hilo de fondo y descarta los
+ * resultados de consultas que ya fueron reemplazadas. Si la consulta amplía la
+ * anterior (se siguió escribiendo), filtra el resultado anterior en lugar de
+ * volver a consultar el índice completo.
+ */
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.application.Platform;
+import javafx.util.Duration;
+
+/**
+ * Búsqueda con espera (debounce), cancelación y refinamiento incremental.
+ *
+ * Cada consulta pedida reemplaza a la pendiente y solo se lanza cuando pasa
+ * {@code espera} sin cambios. Lanzar una consulta invalida la que esté en
+ * curso: su resultado nunca llega. El resultado se entrega una sola vez, en
+ * el hilo de JavaFX. Los métodos públicos deben usarse desde ese hilo.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class BusquedaIncremental {
+
+    public static final Duration ESPERA_POR_DEFECTO = Duration.millis(150);
+
+    private final Supplier<IndiceBiblioteca> indice; // El gestor lo reconstruye al cargar las listas
+    private Duration espera;                      // Tiempo sin teclear antes de buscar
+    private final Timeline temporizador = new Timeline();
+    private final ExecutorService hilo;
+    private final AtomicLong generacion = new AtomicLong(); // Solo la última consulta entrega resultados
+
+    private String pendiente;                     // Consulta esperando a que se deje de teclear
+    private Consumer<List<Long>> destinoPendiente;
+
+    private IndiceBiblioteca.Coincidencias ultima; // Último resultado exacto (solo lo usa el hilo de búsqueda)
+
+    // Métricas
+    private final AtomicLong solicitadas = new AtomicLong();
+    private final AtomicLong ejecutadas = new AtomicLong();
+    private final AtomicLong refinadas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+
+    /**
+     * @param indice Da el índice actual de la biblioteca
+     * @param espera Tiempo sin teclear antes de lanzar la búsqueda
+     */
+    public BusquedaIncremental(Supplier<IndiceBiblioteca> indice, Duration espera) {
+        this.indice = indice;
+        setEspera(espera);
+        temporizador.setCycleCount(1);
+        hilo = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Busqueda");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Pide una búsqueda mientras se escribe; se lanza cuando pasa la espera sin cambios.
+     *
+     * @param consulta    Texto del campo de búsqueda
+     * @param alTerminar  Recibe los ids encontrados (en el hilo de JavaFX)
+     */
+    public void solicitar(String consulta, Consumer<List<Long>> alTerminar) {
+        solicitadas.incrementAndGet();
+        generacion.incrementAndGet();         // Lo que esté en curso ya no vale
+        pendiente = consulta;
+        destinoPendiente = alTerminar;
+        temporizador.getKeyFrames().setAll(new KeyFrame(espera, e -> lanzarPendiente()));
+        temporizador.playFromStart();
+    }
+
+    /**
+     * Busca sin esperar (p. ej. tras agregar o eliminar canciones).
+     */
+    public void buscarYa(String consulta, Consumer<List<Long>> alTerminar) {
+        solicitadas.incrementAndGet();
+        temporizador.stop();
+        pendiente = null;
+        lanzar(consulta, alTerminar);
+    }
+
+    /**
+     * Busca sin esperar y solo por parecido. Sirve cuando las coincidencias
+     * exactas caen todas fuera de lo que se muestra (p. ej. en otras listas):
+     * el error de tecleo también debe encontrar las canciones de la lista.
+     */
+    public void buscarAproximadoYa(String consulta, Consumer<List<Long>> alTerminar) {
+        solicitadas.incrementAndGet();
+        temporizador.stop();
+        pendiente = null;
+        lanzar(consulta, true, alTerminar);
+    }
+
+    /**
+     * Descarta lo pendiente y lo que esté en curso (p. ej. al vaciar el campo).
+     */
+    public void cancelar() {
+        temporizador.stop();
+        pendiente = null;
+        generacion.incrementAndGet();
+    }
+
+    private void lanzarPendiente() {
+        if (pendiente == null) return;
+        String consulta = pendiente;
+        pendiente = null;
+        lanzar(consulta, false, destinoPendiente);
+    }
+
+    private void lanzar(String consulta, Consumer<List<Long>> alTerminar) {
+        lanzar(consulta, false, alTerminar);
+    }
+
+    private void lanzar(String consulta, boolean aproximada, Consumer<List<Long>> alTerminar) {
+        long mia = generacion.incrementAndGet();
+        hilo.execute(() -> {
+            if (mia != generacion.get()) {    // Reemplazada antes de empezar
+                descartadas.incrementAndGet();
+                return;
+            }
+            ejecutadas.incrementAndGet();
+            List<Long> ids = aproximada
+                    ? this.indice.get().buscarAproximado(consulta, Integer.MAX_VALUE)
+                    : buscar(consulta, mia);
+            if (ids == null) {
+                descartadas.incrementAndGet();
+                return;
+            }
+            Platform.runLater(() -> {
+                if (mia == generacion.get()) {
+                    alTerminar.accept(ids);
+                } else {
+                    descartadas.incrementAndGet();
+                }
+            });
+        });
+    }
+
+    /**
+     * Resuelve la consulta en el hilo de búsqueda.
+     *
+     * @return Ids encontrados o null si la consulta fue reemplazada
+     */
+    private List<Long> buscar(String consulta, long mia) {
+        IndiceBiblioteca indice = this.indice.get();
+        if (ConsultaMetadatos.usaCampos(consulta)) {
+            try {
+                return indice.buscarPorCampos(consulta);
+            } catch (IllegalArgumentException e) {
+                // Consulta incompleta mientras se escribe: se busca como nombre
+            }
+        }
+
+        ultima = indice.buscarRefinando(consulta, ultima);
+        if (ultima.isRefinada()) refinadas.incrementAndGet();
+
+        List<Long> exactos = ultima.getIds();
+        if (!exactos.isEmpty()) return exactos;
+        if (mia != generacion.get()) return null;
+        return indice.buscarAproximado(consulta, Integer.MAX_VALUE);
+    }
+
+    /* ***********************
+     * CONFIGURACIÓN Y MÉTRICAS
+     * ***********************/
+
+    public void setEspera(Duration espera) {
+        this.espera = (espera != null) ? espera : ESPERA_POR_DEFECTO;
+    }
+
+    public Duration getEspera() {
+        return espera;
+    }
+
+    public long getSolicitadas() {
+        return solicitadas.get();
+    }
+
+    /**
+     * @return Búsquedas que llegaron a ejecutarse en el hilo de fondo
+     */
+    public long getEjecutadas() {
+        return ejecutadas.get();
+    }
+
+    /**
+     * @return Búsquedas resueltas filtrando el resultado anterior
+     */
+    public long getRefinadas() {
+        return refinadas.get();
+    }
+
+    /**
+     * @return Búsquedas cuyo resultado se descartó por haber sido reemplazadas
+     */
+    public long getDescartadas() {
+        return descartadas.get();
+    }
+
+    public void reiniciarMetricas() {
+        solicitadas.set(0);
+        ejecutadas.set(0);
+        refinadas.set(0);
+        descartadas.set(0);
+    }
+}
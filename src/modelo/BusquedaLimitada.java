@@ -0,0 +1,115 @@
+package modelo;
+
+/*
+ * BusquedaLimitada.java - Agrupa las búsquedas pedidas al arrastrar la barra
+ * de progreso para que el reproductor reciba pocas y la última sea exacta.
+ */
+
+import java.util.function.Consumer;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+
+/**
+ * Limitador de búsquedas para el modo de arrastre (scrub).
+ *
+ * Mientras se arrastra, cada posición pedida reemplaza a la pendiente y
+ * solo se emite una búsqueda como máximo cada {@code intervalo}. Al soltar,
+ * se descarta lo pendiente y se emite una búsqueda final a la posición exacta.
+ * Debe usarse desde el hilo de JavaFX.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class BusquedaLimitada {
+
+    public static final Duration INTERVALO_POR_DEFECTO = Duration.millis(250);
+
+    private final Consumer<Duration> buscador;   // Ejecuta la búsqueda real
+    private Duration intervalo;                  // Separación mínima entre búsquedas
+    private final Timeline temporizador = new Timeline();
+
+    private Duration pendiente;                  // Última posición pedida aún sin emitir
+    private long ultimaEmision = Long.MIN_VALUE; // Instante de la última búsqueda (nanoTime)
+
+    // Métricas
+    private long solicitadas = 0;
+    private long emitidas = 0;
+
+    /**
+     * @param buscador  Acción que realiza la búsqueda en el reproductor
+     * @param intervalo Separación mínima entre búsquedas durante el arrastre
+     */
+    public BusquedaLimitada(Consumer<Duration> buscador, Duration intervalo) {
+        this.buscador = buscador;
+        setIntervalo(intervalo);
+        temporizador.setCycleCount(1);
+    }
+
+    /**
+     * Pide una búsqueda durante el arrastre; se emite ahora o se agrupa con las siguientes.
+     *
+     * @param posicion Posición deseada
+     */
+    public void solicitar(Duration posicion) {
+        solicitadas++;
+        pendiente = posicion;
+
+        long transcurrido = System.nanoTime() - ultimaEmision;
+        long intervaloNs = (long) (intervalo.toMillis() * 1_000_000L);
+        if (ultimaEmision == Long.MIN_VALUE || transcurrido >= intervaloNs) {
+            emitirPendiente();
+        } else if (temporizador.getStatus() != Timeline.Status.RUNNING) {
+            Duration restante = Duration.millis((intervaloNs - transcurrido) / 1_000_000.0);
+            temporizador.getKeyFrames().setAll(new KeyFrame(restante, e -> emitirPendiente()));
+            temporizador.playFromStart();
+        }
+    }
+
+    /**
+     * Termina el arrastre con una búsqueda exacta a la posición final.
+     *
+     * @param posicion Posición en la que se soltó la barra
+     */
+    public void finalizar(Duration posicion) {
+        solicitadas++;
+        temporizador.stop();
+        pendiente = posicion;
+        emitirPendiente();
+        ultimaEmision = Long.MIN_VALUE;
+    }
+
+    private void emitirPendiente() {
+        if (pendiente == null) return;
+        Duration posicion = pendiente;
+        pendiente = null;
+        ultimaEmision = System.nanoTime();
+        emitidas++;
+        buscador.accept(posicion);
+    }
+
+    /* ***********************
+     * CONFIGURACIÓN Y MÉTRICAS
+     * ***********************/
+
+    public void setIntervalo(Duration intervalo) {
+        this.intervalo = (intervalo != null) ? intervalo : INTERVALO_POR_DEFECTO;
+    }
+
+    public Duration getIntervalo() {
+        return intervalo;
+    }
+
+    public long getSolicitadas() {
+        return solicitadas;
+    }
+
+    public long getEmitidas() {
+        return emitidas;
+    }
+
+    public void reiniciarMetricas() {
+        solicitadas = 0;
+        emitidas = 0;
+    }
+}
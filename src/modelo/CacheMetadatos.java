@@ -0,0 +1,258 @@
+package modelo;
+
+/*
+ * CacheMetadatos.java - Caché persistente de datos calculados por pista.
+ * Guarda lo que es costoso de obtener (índices de búsqueda, forma de onda,
+ * sonoridad, etiquetas) asociado a la huella de la ruta, y lo invalida si el archivo
+ * cambió en disco. Se guarda en un archivo temporal que luego reemplaza al
+ * anterior, de modo que un cierre a mitad de escritura no lo corrompe.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caché de metadatos calculados, compartida por toda la aplicación.
+ * Las entradas se indexan por {@link DiccionarioRutas#huella(String)} y
+ * guardan el tamaño y la fecha de modificación del archivo para detectar
+ * que quedaron obsoletas. Es segura para usarse desde hilos de fondo.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public final class CacheMetadatos {
+
+    private static final CacheMetadatos INSTANCIA = new CacheMetadatos();
+    private static final String SUFIJO_TEMPORAL = ".tmp";          // Archivo a medio escribir
+    private static final Object BLOQUEO_ARCHIVO = new Object();       // Un guardado a la vez, en orden
+
+    private Map<Long, Entrada> entradas = new HashMap<>();
+    private boolean modificada = false;     // Hay cambios sin guardar
+
+    private CacheMetadatos() {
+    }
+
+    public static CacheMetadatos getInstancia() {
+        return INSTANCIA;
+    }
+
+    /* ***********************
+     * ENTRADA
+     * ***********************/
+
+    /**
+     * Datos calculados de un archivo concreto.
+     */
+    private static final class Entrada implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long longitud;            // Tamaño del archivo al calcular
+        private final long modificado;          // Fecha de modificación al calcular
+        private IndiceBusquedaMP3 indiceBusqueda;
+        private PicosOnda picos;
+        private Sonoridad sonoridad;
+        private ListaReproduccion.Metadatos etiquetas;
+
+        private Entrada(Firma firma) {
+            this.longitud = firma.longitud;
+            this.modificado = firma.modificado;
+        }
+
+        private boolean vigente(Firma firma) {
+            return firma.longitud == longitud && firma.modificado == modificado;
+        }
+    }
+
+    /**
+     * Huella, tamaño y fecha de un archivo. Se toma antes de entrar al
+     * bloqueo: consultar el disco no detiene a los demás hilos que usan la caché.
+     */
+    private static final class Firma {
+        private final long clave;
+        private final long longitud;
+        private final long modificado;
+
+        private Firma(String ruta) {
+            File archivo = new File(ruta);
+            this.clave = DiccionarioRutas.huella(ruta);
+            this.longitud = archivo.length();
+            this.modificado = archivo.lastModified();
+        }
+    }
+
+    /**
+     * Entrada vigente de un archivo; descarta la guardada si cambió.
+     * Se llama con el bloqueo tomado.
+     */
+    private Entrada entrada(Firma firma, boolean crear) {
+        Entrada entrada = entradas.get(firma.clave);
+        if (entrada != null && !entrada.vigente(firma)) {
+            entradas.remove(firma.clave);
+            modificada = true;
+            entrada = null;
+        }
+        if (entrada == null && crear) {
+            entrada = new Entrada(firma);
+            entradas.put(firma.clave, entrada);
+        }
+        return entrada;
+    }
+
+    /* ***********************
+     * DATOS POR PISTA
+     * ***********************/
+
+    public IndiceBusquedaMP3 getIndiceBusqueda(String ruta) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            Entrada entrada = entrada(firma, false);
+            return (entrada != null) ? entrada.indiceBusqueda : null;
+        }
+    }
+
+    public void setIndiceBusqueda(String ruta, IndiceBusquedaMP3 indice) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            entrada(firma, true).indiceBusqueda = indice;
+            modificada = true;
+        }
+    }
+
+    public PicosOnda getPicos(String ruta) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            Entrada entrada = entrada(firma, false);
+            return (entrada != null) ? entrada.picos : null;
+        }
+    }
+
+    public void setPicos(String ruta, PicosOnda picos) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            entrada(firma, true).picos = picos;
+            modificada = true;
+        }
+    }
+
+    /**
+     * Sonoridad de una pista, o de un álbum si la ruta es su carpeta.
+     */
+    public Sonoridad getSonoridad(String ruta) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            Entrada entrada = entrada(firma, false);
+            return (entrada != null) ? entrada.sonoridad : null;
+        }
+    }
+
+    public void setSonoridad(String ruta, Sonoridad sonoridad) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            entrada(firma, true).sonoridad = sonoridad;
+            modificada = true;
+        }
+    }
+
+    /**
+     * Etiquetas y duración leídas del archivo, o null si aún no se leyeron.
+     */
+    public ListaReproduccion.Metadatos getEtiquetas(String ruta) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            Entrada entrada = entrada(firma, false);
+            return (entrada != null) ? entrada.etiquetas : null;
+        }
+    }
+
+    public void setEtiquetas(String ruta, ListaReproduccion.Metadatos etiquetas) {
+        Firma firma = new Firma(ruta);
+        synchronized (this) {
+            entrada(firma, true).etiquetas = etiquetas;
+            modificada = true;
+        }
+    }
+
+    /* ***********************
+     * PERSISTENCIA
+     * ***********************/
+
+    /**
+     * Carga la caché desde un archivo (si no existe, empieza vacía).
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void cargar(String archivo) {
+        if (!new File(archivo).exists()) return;
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(archivo))) {
+            entradas = (Map<Long, Entrada>) in.readObject();
+            modificada = false;
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Error al cargar la caché de metadatos: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Guarda la caché si cambió desde la última carga o guardado. Se
+     * serializa en memoria con la caché bloqueada y se escribe sin bloquearla,
+     * en un temporal que reemplaza al archivo de una vez. Puede llamarse
+     * periódicamente desde un hilo de fondo.
+     */
+    public void guardar(String archivo) {
+        synchronized (BLOQUEO_ARCHIVO) {
+            ByteArrayOutputStream datos = new ByteArrayOutputStream();
+            synchronized (this) {
+                if (!modificada) return;
+                try (ObjectOutputStream out = new ObjectOutputStream(datos)) {
+                    out.writeObject(entradas);
+                } catch (IOException e) {
+                    System.out.println("Error al guardar la caché de metadatos: " + e.getMessage());
+                    return;
+                }
+                modificada = false;
+            }
+            Path destino = Paths.get(archivo);
+            Path temporal = Paths.get(archivo + SUFIJO_TEMPORAL);
+            try {
+                try (OutputStream out = new FileOutputStream(temporal.toFile())) {
+                    datos.writeTo(out);
+                }
+                try {
+                    Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (IOException e) {
+                System.out.println("Error al guardar la caché de metadatos: " + e.getMessage());
+                synchronized (this) {
+                    modificada = true;              // Se reintenta en el próximo guardado
+                }
+            }
+        }
+    }
+
+    /**
+     * @return true si hay cambios sin guardar
+     */
+    public synchronized boolean isModificada() {
+        return modificada;
+    }
+
+    public synchronized int getCantidadEntradas() {
+        return entradas.size();
+    }
+}
@@ -0,0 +1,154 @@
+package modelo;
+
+/*
+ * CacheVistasListas.java - Filas ya construidas de las últimas listas abiertas.
+ * Volver a una lista reciente reutiliza sus filas (con las duraciones ya
+ * leídas y el índice id -> fila) en lugar de reconstruirlas. Cada vista guarda el
+ * contador de modificaciones de su lista y deja de valer en cuanto la lista
+ * cambia.
+ */
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caché LRU de vistas de listas, limitada por el total de filas guardadas.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class CacheVistasListas {
+
+    public static final int PRESUPUESTO_POR_DEFECTO = 50_000; // Filas entre todas las vistas
+
+    /**
+     * Vista guardada y estado de la lista cuando se construyó.
+     */
+    private static final class Entrada {
+        private final FilasIndexadas filas;
+        private final long modificaciones;
+        private final int tamano;
+
+        private Entrada(FilasIndexadas filas, long modificaciones) {
+            this.filas = filas;
+            this.modificaciones = modificaciones;
+            this.tamano = filas.getTamano();
+        }
+    }
+
+    // Orden de acceso: la primera es la menos usada recientemente
+    private final LinkedHashMap<ListaReproduccion, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+    private int presupuestoFilas;
+    private int filasGuardadas;
+
+    // Métricas
+    private long aciertos = 0;
+    private long fallos = 0;
+    private long expulsadas = 0;
+
+    /**
+     * @param presupuestoFilas Filas máximas entre todas las vistas guardadas
+     */
+    public CacheVistasListas(int presupuestoFilas) {
+        setPresupuestoFilas(presupuestoFilas);
+    }
+
+    /**
+     * Vista guardada de la lista, si sigue siendo válida.
+     *
+     * @param lista Lista de reproducción
+     * @return Filas de la lista o null si hay que construirlas
+     */
+    public FilasIndexadas obtener(ListaReproduccion lista) {
+        Entrada entrada = entradas.get(lista);
+        if (entrada != null && entrada.modificaciones != lista.getModificaciones()) {
+            quitar(lista);
+            entrada = null;
+        }
+        if (entrada == null) {
+            fallos++;
+            return null;
+        }
+        aciertos++;
+        return entrada.filas;
+    }
+
+    /**
+     * Guarda la vista recién construida de una lista. Las menos usadas salen
+     * hasta que las filas caben en el presupuesto; una vista que por sí sola
+     * lo supera no se guarda.
+     *
+     * @param lista Lista de reproducción
+     * @param filas Filas construidas a partir de la lista
+     */
+    public void guardar(ListaReproduccion lista, FilasIndexadas filas) {
+        quitar(lista);
+        if (filas.getTamano() > presupuestoFilas) return;
+        Entrada entrada = new Entrada(filas, lista.getModificaciones());
+        entradas.put(lista, entrada);
+        filasGuardadas += entrada.tamano;
+        recortar();
+    }
+
+    /**
+     * Descarta la vista de una lista (p. ej. al eliminarla).
+     */
+    public void quitar(ListaReproduccion lista) {
+        Entrada entrada = entradas.remove(lista);
+        if (entrada != null) filasGuardadas -= entrada.tamano;
+    }
+
+    public void vaciar() {
+        entradas.clear();
+        filasGuardadas = 0;
+    }
+
+    private void recortar() {
+        Iterator<Map.Entry<ListaReproduccion, Entrada>> it = entradas.entrySet().iterator();
+        while (filasGuardadas > presupuestoFilas && it.hasNext()) {
+            filasGuardadas -= it.next().getValue().tamano;
+            it.remove();
+            expulsadas++;
+        }
+    }
+
+    /* ***********************
+     * CONFIGURACIÓN Y MÉTRICAS
+     * ***********************/
+
+    public void setPresupuestoFilas(int presupuestoFilas) {
+        this.presupuestoFilas = Math.max(0, presupuestoFilas);
+        recortar();
+    }
+
+    public int getPresupuestoFilas() {
+        return presupuestoFilas;
+    }
+
+    public int getFilasGuardadas() {
+        return filasGuardadas;
+    }
+
+    public int getVistas() {
+        return entradas.size();
+    }
+
+    public long getAciertos() {
+        return aciertos;
+    }
+
+    public long getFallos() {
+        return fallos;
+    }
+
+    public long getExpulsadas() {
+        return expulsadas;
+    }
+
+    public void reiniciarMetricas() {
+        aciertos = 0;
+        fallos = 0;
+        expulsadas = 0;
+    }
+}
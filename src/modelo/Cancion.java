@@ -8,20 +8,26 @@ import javafx.beans.property.StringProperty;
  * Utiliza propiedades JavaFX para facilitar el enlace con la interfaz gráfica.
  * 
  * Características:
- * Propiedades observables: nombre y duración
+ * Propiedades observables: nombre y duración (creadas solo al dibujar la fila)
  * Ruta del archivo de audio
  * Uso en TableView, listas de reproducción, favoritos, etc.
  * 
  */
 public class Cancion {
 
-    // Propiedades observables para JavaFX
-    private final StringProperty nombre;
-    private final StringProperty duracion;
+    // Textos de las celdas. Las propiedades observables solo se crean para las
+    // filas que la tabla llega a dibujar (cada fila es un asa ligera sobre el nodo)
+    private final String nombreTexto;
+    private String duracionTexto;
+    private StringProperty nombre;
+    private StringProperty duracion;
 
-    // Ruta absoluta del archivo de audio
+    // Ruta absoluta del archivo de audio (null si la canción proviene de un nodo)
     private final String ruta;
 
+    // Nodo de la lista del que proviene la canción (la ruta se obtiene bajo demanda)
+    private final Nodo nodo;
+
     /**
      * Constructor de Cancion.
      *
@@ -30,9 +36,34 @@ public class Cancion {
      * @param ruta     Ruta absoluta del archivo de audio
      */
     public Cancion(String nombre, String duracion, String ruta) {
-        this.nombre = new SimpleStringProperty(nombre);
-        this.duracion = new SimpleStringProperty(duracion);
+        this.nombreTexto = nombre;
+        this.duracionTexto = duracion;
         this.ruta = ruta;
+        this.nodo = null;
+    }
+
+    /**
+     * Constructor a partir de un nodo de la lista. No guarda la ruta completa:
+     * se reconstruye desde el diccionario de rutas cuando se necesita.
+     *
+     * @param nodo     Nodo de la lista de reproducción
+     * @param duracion Duración de la canción en formato mm:ss
+     */
+    public Cancion(Nodo nodo, String duracion) {
+        this.nombreTexto = nodo.getNombreCancion();
+        this.duracionTexto = duracion;
+        this.ruta = null;
+        this.nodo = nodo;
+    }
+
+    /**
+     * Constructor a partir de un nodo cuya duración aún no se leyó
+     * (se completa después con setDuracion).
+     *
+     * @param nodo Nodo de la lista de reproducción
+     */
+    public Cancion(Nodo nodo) {
+        this(nodo, "");
     }
 
     /* ***********************
@@ -45,33 +76,48 @@ public class Cancion {
      * @return Nombre de la canción
      */
     public String getNombre() {
-        return nombre.get();
+        return nombreTexto;
     }
 
     /**
      * Devuelve la propiedad del nombre (para bindings en JavaFX).
+     * Se crea la primera vez que se pide.
      *
      * @return Propiedad nombre
      */
     public StringProperty nombreProperty() {
+        if (nombre == null) nombre = new SimpleStringProperty(nombreTexto);
         return nombre;
     }
 
     /**
      * Obtiene la duración de la canción.
      *
-     * @return Duración en formato mm:ss
+     * @return Duración en formato mm:ss (vacía si aún no se leyó)
      */
     public String getDuracion() {
-        return duracion.get();
+        return duracionTexto;
+    }
+
+    /**
+     * Actualiza la duración; si la fila ya se dibujó, la celda se refresca.
+     * Debe llamarse desde el hilo de JavaFX.
+     *
+     * @param duracion Duración en formato mm:ss
+     */
+    public void setDuracion(String duracion) {
+        duracionTexto = duracion;
+        if (this.duracion != null) this.duracion.set(duracion);
     }
 
     /**
      * Devuelve la propiedad de duración (para bindings en JavaFX).
+     * Se crea la primera vez que se pide.
      *
      * @return Propiedad duración
      */
     public StringProperty duracionProperty() {
+        if (duracion == null) duracion = new SimpleStringProperty(duracionTexto);
         return duracion;
     }
 
@@ -81,6 +127,15 @@ public class Cancion {
      * @return Ruta del archivo de audio
      */
     public String getRuta() {
-        return ruta;
+        return (nodo != null) ? nodo.getRutaCancion() : ruta;
+    }
+
+    /**
+     * Obtiene el identificador estable de la pista (huella de la ruta).
+     *
+     * @return Identificador de la pista
+     */
+    public long getIdPista() {
+        return (nodo != null) ? nodo.getIdPista() : DiccionarioRutas.huella(ruta);
     }
 }
@@ -0,0 +1,177 @@
+package modelo;
+
+/*
+ * ColaReproduccion.java - Cola "a continuación" independiente del orden de la lista.
+ * Lista doblemente enlazada con centinela: encolar, reproducir a continuación,
+ * extraer y quitar por referencia son O(1) y no tocan la lista de reproducción.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cola de reproducción. Cada inserción devuelve un {@link Elemento} que sirve
+ * de referencia para quitarlo después sin recorrer la cola.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class ColaReproduccion {
+
+    /**
+     * Referencia a una canción dentro de la cola.
+     */
+    public static final class Elemento {
+        private final Cancion cancion;
+        private Elemento anterior;
+        private Elemento siguiente;
+        private ColaReproduccion cola;      // null una vez que sale de la cola
+
+        private Elemento(Cancion cancion) {
+            this.cancion = cancion;
+        }
+
+        public Cancion getCancion() {
+            return cancion;
+        }
+
+        /**
+         * Indica si el elemento sigue en alguna cola.
+         */
+        public boolean estaEnCola() {
+            return cola != null;
+        }
+    }
+
+    private final Elemento centinela = new Elemento(null);
+    private int tamano;
+
+    public ColaReproduccion() {
+        centinela.anterior = centinela;
+        centinela.siguiente = centinela;
+    }
+
+    /* ***********************
+     * INSERCIÓN Y EXTRACCIÓN
+     * ***********************/
+
+    /**
+     * Añade una canción al final de la cola.
+     *
+     * @param cancion Canción a encolar
+     * @return Referencia para quitarla después
+     */
+    public Elemento encolar(Cancion cancion) {
+        return insertarAntesDe(centinela, cancion);
+    }
+
+    /**
+     * Añade una canción al principio: sonará en cuanto termine la actual.
+     *
+     * @param cancion Canción a reproducir a continuación
+     * @return Referencia para quitarla después
+     */
+    public Elemento reproducirDespues(Cancion cancion) {
+        return insertarAntesDe(centinela.siguiente, cancion);
+    }
+
+    private Elemento insertarAntesDe(Elemento posterior, Cancion cancion) {
+        Elemento nuevo = new Elemento(cancion);
+        nuevo.cola = this;
+        nuevo.siguiente = posterior;
+        nuevo.anterior = posterior.anterior;
+        posterior.anterior.siguiente = nuevo;
+        posterior.anterior = nuevo;
+        tamano++;
+        return nuevo;
+    }
+
+    /**
+     * Saca la primera canción de la cola.
+     *
+     * @return Canción extraída o null si la cola está vacía
+     */
+    public Cancion extraer() {
+        if (tamano == 0) return null;
+        Elemento primero = centinela.siguiente;
+        desenlazar(primero);
+        return primero.cancion;
+    }
+
+    /**
+     * Primera canción sin sacarla de la cola.
+     *
+     * @return Canción o null si la cola está vacía
+     */
+    public Cancion verSiguiente() {
+        return (tamano == 0) ? null : centinela.siguiente.cancion;
+    }
+
+    /**
+     * Quita un elemento de la cola.
+     *
+     * @param elemento Referencia devuelta al insertarlo
+     * @return true si estaba en esta cola
+     */
+    public boolean quitar(Elemento elemento) {
+        if (elemento == null || elemento.cola != this) return false;
+        desenlazar(elemento);
+        return true;
+    }
+
+    private void desenlazar(Elemento elemento) {
+        elemento.anterior.siguiente = elemento.siguiente;
+        elemento.siguiente.anterior = elemento.anterior;
+        elemento.anterior = null;
+        elemento.siguiente = null;
+        elemento.cola = null;
+        tamano--;
+    }
+
+    /**
+     * Vacía la cola.
+     */
+    public void vaciar() {
+        while (tamano > 0) {
+            desenlazar(centinela.siguiente);
+        }
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    public boolean estaVacia() {
+        return tamano == 0;
+    }
+
+    /**
+     * Copia los identificadores de pista en orden, sin reservar memoria
+     * (para el punto de control de la sesión).
+     *
+     * @param destino Arreglo de destino
+     * @return Cantidad de identificadores copiados
+     */
+    public int copiarIds(long[] destino) {
+        int n = 0;
+        for (Elemento e = centinela.siguiente; e != centinela && n < destino.length; e = e.siguiente) {
+            destino[n++] = e.cancion.getIdPista();
+        }
+        return n;
+    }
+
+    /**
+     * Canciones de la cola en orden de reproducción.
+     */
+    public List<Cancion> getCanciones() {
+        List<Cancion> canciones = new ArrayList<>(tamano);
+        for (Elemento e = centinela.siguiente; e != centinela; e = e.siguiente) {
+            canciones.add(e.cancion);
+        }
+        return canciones;
+    }
+}
@@ -0,0 +1,329 @@
+package modelo;
+
+/*
+ * ColumnasMetadatos.java - Metadatos de la biblioteca almacenados por columnas.
+ * Cada pista ocupa una fila y cada dato una columna de tipo primitivo: artista
+ * y género como códigos internados, duración en segundos, formato como código
+ * de un byte y favoritas como conjunto de bits. Los filtros recorren arreglos
+ * contiguos en lugar de objetos, y artista y género tienen además un índice
+ * código -> filas para los filtros selectivos.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Almacén columnar de metadatos por pista. Las filas se identifican por el id
+ * de pista; una pista que sale de la biblioteca deja su fila marcada como
+ * muerta y la recupera si vuelve.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class ColumnasMetadatos {
+
+    public static final int DESCONOCIDO = -1;              // Código o duración sin leer
+
+    // Formatos reconocidos (el código es la posición; 0 = otro)
+    private static final String[] FORMATOS = {"", "mp3", "wav", "m4a", "wma", "flac", "ogg", "aac"};
+
+    /**
+     * Valores internados de una columna de texto, con las filas de cada código.
+     */
+    private static final class Diccionario {
+        private final List<String> valores = new ArrayList<>();      // Código -> valor normalizado
+        private final Map<String, Integer> codigos = new HashMap<>();
+        private int[][] filas = new int[16][];
+        private int[] cuentas = new int[16];
+
+        private int internar(String valor) {
+            Integer codigo = codigos.get(valor);
+            if (codigo != null) return codigo;
+            int c = valores.size();
+            valores.add(valor);
+            codigos.put(valor, c);
+            if (c == filas.length) {
+                filas = Arrays.copyOf(filas, c * 2);
+                cuentas = Arrays.copyOf(cuentas, c * 2);
+            }
+            filas[c] = new int[4];
+            return c;
+        }
+
+        private void anotar(int codigo, int fila) {
+            int n = cuentas[codigo];
+            if (n == filas[codigo].length) {
+                filas[codigo] = Arrays.copyOf(filas[codigo], n * 2);
+            }
+            filas[codigo][n] = fila;
+            cuentas[codigo] = n + 1;
+        }
+    }
+
+    // Columnas
+    private long[] ids = new long[256];
+    private int[] artistas = new int[256];
+    private int[] generos = new int[256];
+    private int[] duraciones = new int[256];
+    private byte[] formatos = new byte[256];
+    private final BitSet favoritas = new BitSet();
+    private final BitSet vivas = new BitSet();
+    private int filas;
+
+    private final Map<Long, Integer> filaPorId = new HashMap<>();
+    private final Diccionario diccionarioArtistas = new Diccionario();
+    private final Diccionario diccionarioGeneros = new Diccionario();
+
+    /* ***********************
+     * FILAS
+     * ***********************/
+
+    /**
+     * Da de alta una pista (o recupera su fila si ya estuvo).
+     *
+     * @param idPista Id de la pista
+     * @param ruta    Ruta del archivo (para el formato)
+     * @return Fila de la pista
+     */
+    public int agregar(long idPista, String ruta) {
+        Integer existente = filaPorId.get(idPista);
+        if (existente != null) {
+            vivas.set(existente);
+            return existente;
+        }
+        if (filas == ids.length) {
+            int n = filas * 2;
+            ids = Arrays.copyOf(ids, n);
+            artistas = Arrays.copyOf(artistas, n);
+            generos = Arrays.copyOf(generos, n);
+            duraciones = Arrays.copyOf(duraciones, n);
+            formatos = Arrays.copyOf(formatos, n);
+        }
+        int fila = filas++;
+        ids[fila] = idPista;
+        artistas[fila] = DESCONOCIDO;
+        generos[fila] = DESCONOCIDO;
+        duraciones[fila] = DESCONOCIDO;
+        formatos[fila] = codigoFormato(ruta);
+        vivas.set(fila);
+        filaPorId.put(idPista, fila);
+        return fila;
+    }
+
+    public void quitar(long idPista) {
+        Integer fila = filaPorId.get(idPista);
+        if (fila != null) vivas.clear(fila);
+    }
+
+    /**
+     * Guarda los metadatos leídos del archivo.
+     *
+     * @param idPista  Id de la pista
+     * @param artista  Artista o null
+     * @param genero   Género o null
+     * @param segundos Duración o DESCONOCIDO
+     */
+    public void setMetadatos(long idPista, String artista, String genero, int segundos) {
+        Integer f = filaPorId.get(idPista);
+        if (f == null) return;
+        int fila = f;
+        int codigoArtista = internar(diccionarioArtistas, artista);
+        if (codigoArtista != artistas[fila]) {
+            artistas[fila] = codigoArtista;
+            if (codigoArtista != DESCONOCIDO) diccionarioArtistas.anotar(codigoArtista, fila);
+        }
+        int codigoGenero = internar(diccionarioGeneros, genero);
+        if (codigoGenero != generos[fila]) {
+            generos[fila] = codigoGenero;
+            if (codigoGenero != DESCONOCIDO) diccionarioGeneros.anotar(codigoGenero, fila);
+        }
+        duraciones[fila] = segundos;
+    }
+
+    public void setFavorita(long idPista, boolean favorita) {
+        Integer fila = filaPorId.get(idPista);
+        if (fila != null) favoritas.set(fila, favorita);
+    }
+
+    private static int internar(Diccionario diccionario, String valor) {
+        String normalizado = IndiceTrigramas.normalizar(valor);
+        return normalizado.isEmpty() ? DESCONOCIDO : diccionario.internar(normalizado);
+    }
+
+    private static byte codigoFormato(String ruta) {
+        int punto = (ruta != null) ? ruta.lastIndexOf('.') : -1;
+        if (punto < 0) return 0;
+        return codigoFormatoDe(ruta.substring(punto + 1));
+    }
+
+    private static byte codigoFormatoDe(String extension) {
+        String ext = extension.toLowerCase(Locale.ROOT);
+        if (ext.startsWith(".")) ext = ext.substring(1);
+        for (int i = 1; i < FORMATOS.length; i++) {
+            if (FORMATOS[i].equals(ext)) return (byte) i;
+        }
+        return 0;
+    }
+
+    /* ***********************
+     * FILTROS POR ÍNDICE
+     * ***********************/
+
+    /**
+     * Filas cuyo artista contiene el texto. Se recorre el diccionario de
+     * artistas distintos, no las pistas.
+     */
+    public BitSet filasConArtista(String fragmento) {
+        return filasDe(diccionarioArtistas, artistas, fragmento);
+    }
+
+    /**
+     * Filas cuyo género contiene el texto.
+     */
+    public BitSet filasConGenero(String fragmento) {
+        return filasDe(diccionarioGeneros, generos, fragmento);
+    }
+
+    private BitSet filasDe(Diccionario diccionario, int[] columna, String fragmento) {
+        String buscado = IndiceTrigramas.normalizar(fragmento);
+        BitSet resultado = new BitSet(filas);
+        for (int codigo = 0; codigo < diccionario.valores.size(); codigo++) {
+            if (!diccionario.valores.get(codigo).contains(buscado)) continue;
+            int[] lista = diccionario.filas[codigo];
+            for (int i = 0, n = diccionario.cuentas[codigo]; i < n; i++) {
+                int fila = lista[i];
+                if (columna[fila] == codigo) resultado.set(fila);     // Las filas recodificadas quedan obsoletas
+            }
+        }
+        resultado.and(vivas);
+        return resultado;
+    }
+
+    /**
+     * Filas a partir de ids de pista (p. ej. resultados del índice de nombres).
+     */
+    public BitSet filasDeIds(List<Long> idsPista) {
+        BitSet resultado = new BitSet(filas);
+        for (Long id : idsPista) {
+            Integer fila = filaPorId.get(id);
+            if (fila != null) resultado.set(fila);
+        }
+        resultado.and(vivas);
+        return resultado;
+    }
+
+    /* ***********************
+     * FILTROS POR RECORRIDO
+     * ***********************/
+
+    /**
+     * Deja en los candidatos solo las filas con duración en [minimo, maximo]
+     * (o fuera de él si se niega). Las duraciones desconocidas nunca pasan:
+     * son las de archivos ilegibles o las que el recorrido de arranque de
+     * {@link LectorMetadatos#indexarBiblioteca} aún no alcanzó.
+     */
+    public void filtrarDuracion(BitSet candidatos, int minimo, int maximo, boolean negar) {
+        long[] palabras = candidatos.toLongArray();
+        for (int w = 0; w < palabras.length; w++) {
+            if (palabras[w] == 0L) continue;
+            int base = w << 6;
+            int hasta = Math.min(64, filas - base);
+            long mascara = 0L;
+            for (int b = 0; b < hasta; b++) {
+                int d = duraciones[base + b];
+                boolean dentro = d >= minimo && d <= maximo;
+                if (d != DESCONOCIDO && dentro != negar) mascara |= 1L << b;
+            }
+            palabras[w] &= mascara;
+        }
+        reemplazar(candidatos, palabras);
+    }
+
+    /**
+     * Deja en los candidatos solo las filas del formato dado (o de otro si se niega).
+     */
+    public void filtrarFormato(BitSet candidatos, String extension, boolean negar) {
+        byte codigo = codigoFormatoDe(extension);
+        long[] palabras = candidatos.toLongArray();
+        for (int w = 0; w < palabras.length; w++) {
+            if (palabras[w] == 0L) continue;
+            int base = w << 6;
+            int hasta = Math.min(64, filas - base);
+            long mascara = 0L;
+            for (int b = 0; b < hasta; b++) {
+                if ((formatos[base + b] == codigo) != negar) mascara |= 1L << b;
+            }
+            palabras[w] &= mascara;
+        }
+        reemplazar(candidatos, palabras);
+    }
+
+    /**
+     * Los recorridos van por bloques de 64 filas: cada bloque produce una
+     * palabra de bits que se combina con la de los candidatos, y los bloques
+     * sin candidatos se saltan enteros.
+     */
+    private static void reemplazar(BitSet candidatos, long[] palabras) {
+        candidatos.clear();
+        candidatos.or(BitSet.valueOf(palabras));
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    /**
+     * @return Copia de las filas vivas (punto de partida de un filtro)
+     */
+    public BitSet getVivas() {
+        return (BitSet) vivas.clone();
+    }
+
+    /**
+     * @return Copia de las filas favoritas vivas
+     */
+    public BitSet getFavoritas() {
+        BitSet resultado = (BitSet) favoritas.clone();
+        resultado.and(vivas);
+        return resultado;
+    }
+
+    public long getId(int fila) {
+        return ids[fila];
+    }
+
+    /**
+     * @return Fila de la pista o -1 si no está
+     */
+    public int getFila(long idPista) {
+        Integer fila = filaPorId.get(idPista);
+        return (fila != null) ? fila : -1;
+    }
+
+    public int getDuracion(int fila) {
+        return duraciones[fila];
+    }
+
+    /**
+     * @return Artista normalizado de la fila o null si se desconoce
+     */
+    public String getArtista(int fila) {
+        return (artistas[fila] == DESCONOCIDO) ? null : diccionarioArtistas.valores.get(artistas[fila]);
+    }
+
+    public int getFilas() {
+        return filas;
+    }
+
+    /**
+     * @return Artistas distintos internados
+     */
+    public int getArtistasDistintos() {
+        return diccionarioArtistas.valores.size();
+    }
+}
@@ -0,0 +1,296 @@
+package modelo;
+
+/*
+ * ConsultaMetadatos.java - Lenguaje de consulta por campos para la búsqueda.
+ * Convierte textos como  artista:queen dur>300 ext:flac fav:si  en una lista de
+ * predicados sobre las columnas de metadatos. Los predicados con índice
+ * (nombre, artista, género, favoritas) se evalúan primero, del más selectivo
+ * al menos; los demás (duración, formato) recorren sus columnas solo sobre los
+ * candidatos que quedan.
+ */
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Consulta compilada.
+ *
+ * Sintaxis (términos separados por espacios, todos deben cumplirse):
+ * - palabra               nombre contiene la palabra
+ * - artista:texto         también artist:, genero:/genre:, nombre:/name:
+ * - dur>300, dur<=4:30    duración en segundos o m:ss (también =, >=, <, :)
+ * - ext:flac              formato del archivo (también formato:/format:)
+ * - fav:si                favoritas (si/no, yes/no, true/false)
+ * - -termino              niega el término
+ * - campo:"dos palabras"  valores con espacios entre comillas
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public final class ConsultaMetadatos {
+
+    private enum Campo { NOMBRE, ARTISTA, GENERO, DURACION, FORMATO, FAVORITA }
+
+    /**
+     * Término de la consulta. Los indexados calculan su conjunto de filas una
+     * vez (su tamaño sirve para ordenar); los de recorrido filtran candidatos.
+     */
+    private abstract static class Predicado {
+        protected final boolean negado;
+        private BitSet filas;
+
+        Predicado(boolean negado) {
+            this.negado = negado;
+        }
+
+        /** Conjunto de filas que cumplen el término (null si no tiene índice). */
+        BitSet calcular(IndiceBiblioteca indice) {
+            return null;
+        }
+
+        /** Filtra recorriendo columnas (solo términos sin índice). */
+        void recorrer(ColumnasMetadatos columnas, BitSet candidatos) {
+        }
+
+        /** Filas que deja pasar; cuanto menor, antes se evalúa. */
+        final int estimar(IndiceBiblioteca indice) {
+            if (negado) return Integer.MAX_VALUE - 1;
+            if (filas == null) filas = calcular(indice);
+            return (filas != null) ? filas.cardinality() : Integer.MAX_VALUE;
+        }
+
+        final void aplicar(IndiceBiblioteca indice, BitSet candidatos) {
+            if (filas == null) filas = calcular(indice);
+            if (filas == null) {
+                recorrer(indice.getColumnas(), candidatos);
+            } else if (negado) {
+                candidatos.andNot(filas);
+            } else {
+                candidatos.and(filas);
+            }
+        }
+    }
+
+    private final List<Predicado> predicados;
+
+    private ConsultaMetadatos(List<Predicado> predicados) {
+        this.predicados = predicados;
+    }
+
+    /* ***********************
+     * ANÁLISIS
+     * ***********************/
+
+    /**
+     * Indica si el texto usa algún campo (si no, basta la búsqueda por nombre).
+     */
+    public static boolean usaCampos(String texto) {
+        for (String token : separar(texto)) {
+            String t = token.startsWith("-") ? token.substring(1) : token;
+            int op = posicionOperador(t);
+            if (op > 0 && campo(t.substring(0, op)) != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Compila una consulta.
+     *
+     * @param texto Texto de la consulta
+     * @return Consulta lista para ejecutar
+     * @throws IllegalArgumentException si un campo o un valor no es válido
+     */
+    public static ConsultaMetadatos compilar(String texto) {
+        List<Predicado> predicados = new ArrayList<>();
+        for (String token : separar(texto)) {
+            boolean negado = token.startsWith("-") && token.length() > 1;
+            String t = negado ? token.substring(1) : token;
+            int op = posicionOperador(t);
+            Campo campo = (op > 0) ? campo(t.substring(0, op)) : null;
+            if (campo == null) {
+                predicados.add(nombre(quitarComillas(t), negado));
+                continue;
+            }
+            String operador = t.substring(op, (op + 1 < t.length() && t.charAt(op + 1) == '=') ? op + 2 : op + 1);
+            String valor = quitarComillas(t.substring(op + operador.length()));
+            if (valor.isEmpty()) {
+                throw new IllegalArgumentException("Falta el valor de '" + t.substring(0, op) + "'");
+            }
+            predicados.add(predicado(campo, operador, valor, negado));
+        }
+        return new ConsultaMetadatos(predicados);
+    }
+
+    /**
+     * Divide por espacios respetando los valores entre comillas.
+     */
+    private static List<String> separar(String texto) {
+        List<String> tokens = new ArrayList<>();
+        StringBuilder actual = new StringBuilder();
+        boolean comillas = false;
+        for (char c : texto.trim().toCharArray()) {
+            if (c == '"') {
+                comillas = !comillas;
+                actual.append(c);
+            } else if (Character.isWhitespace(c) && !comillas) {
+                if (actual.length() > 0) tokens.add(actual.toString());
+                actual.setLength(0);
+            } else {
+                actual.append(c);
+            }
+        }
+        if (actual.length() > 0) tokens.add(actual.toString());
+        return tokens;
+    }
+
+    private static String quitarComillas(String valor) {
+        return valor.replace("\"", "").trim();
+    }
+
+    private static int posicionOperador(String token) {
+        for (int i = 0; i < token.length(); i++) {
+            char c = token.charAt(i);
+            if (c == ':' || c == '=' || c == '<' || c == '>') return i;
+            if (c == '"') return -1;
+        }
+        return -1;
+    }
+
+    private static Campo campo(String nombre) {
+        switch (nombre.toLowerCase(Locale.ROOT)) {
+            case "nombre": case "name": case "titulo": case "title":
+                return Campo.NOMBRE;
+            case "artista": case "artist":
+                return Campo.ARTISTA;
+            case "genero": case "género": case "genre":
+                return Campo.GENERO;
+            case "dur": case "duracion": case "duración": case "duration":
+                return Campo.DURACION;
+            case "ext": case "formato": case "format":
+                return Campo.FORMATO;
+            case "fav": case "favorita": case "favorite":
+                return Campo.FAVORITA;
+            default:
+                return null;
+        }
+    }
+
+    private static Predicado predicado(Campo campo, String operador, String valor, boolean negado) {
+        boolean igualdad = operador.equals(":") || operador.equals("=");
+        if (campo != Campo.DURACION && !igualdad) {
+            throw new IllegalArgumentException("El campo " + campo.name().toLowerCase(Locale.ROOT)
+                    + " no admite '" + operador + "'");
+        }
+        switch (campo) {
+            case NOMBRE:
+                return nombre(valor, negado);
+            case ARTISTA:
+                return new Predicado(negado) {
+                    @Override BitSet calcular(IndiceBiblioteca indice) {
+                        return indice.getColumnas().filasConArtista(valor);
+                    }
+                };
+            case GENERO:
+                return new Predicado(negado) {
+                    @Override BitSet calcular(IndiceBiblioteca indice) {
+                        return indice.getColumnas().filasConGenero(valor);
+                    }
+                };
+            case FAVORITA:
+                boolean si = esAfirmativo(valor);
+                return new Predicado(negado == si) {
+                    @Override BitSet calcular(IndiceBiblioteca indice) {
+                        return indice.getColumnas().getFavoritas();
+                    }
+                };
+            case FORMATO:
+                return new Predicado(negado) {
+                    @Override void recorrer(ColumnasMetadatos columnas, BitSet candidatos) {
+                        columnas.filtrarFormato(candidatos, valor, negado);
+                    }
+                };
+            default:
+                int segundos = segundos(valor);
+                int minimo = Integer.MIN_VALUE;
+                int maximo = Integer.MAX_VALUE;
+                switch (operador) {
+                    case ">":  minimo = segundos + 1; break;
+                    case ">=": minimo = segundos; break;
+                    case "<":  maximo = segundos - 1; break;
+                    case "<=": maximo = segundos; break;
+                    default:   minimo = segundos; maximo = segundos; break;
+                }
+                final int desde = minimo;
+                final int hasta = maximo;
+                return new Predicado(negado) {
+                    @Override void recorrer(ColumnasMetadatos columnas, BitSet candidatos) {
+                        columnas.filtrarDuracion(candidatos, desde, hasta, negado);
+                    }
+                };
+        }
+    }
+
+    private static Predicado nombre(String valor, boolean negado) {
+        return new Predicado(negado) {
+            @Override BitSet calcular(IndiceBiblioteca indice) {
+                return indice.getColumnas().filasDeIds(indice.buscar(valor));
+            }
+        };
+    }
+
+    private static boolean esAfirmativo(String valor) {
+        switch (IndiceTrigramas.normalizar(valor)) {
+            case "si": case "s": case "yes": case "y": case "true": case "1":
+                return true;
+            case "no": case "n": case "false": case "0":
+                return false;
+            default:
+                throw new IllegalArgumentException("Valor de favorita no válido: " + valor);
+        }
+    }
+
+    /**
+     * Segundos de "300" o "5:00".
+     */
+    private static int segundos(String valor) {
+        try {
+            int dosPuntos = valor.indexOf(':');
+            if (dosPuntos < 0) return Integer.parseInt(valor);
+            return Integer.parseInt(valor.substring(0, dosPuntos)) * 60
+                    + Integer.parseInt(valor.substring(dosPuntos + 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Duración no válida: " + valor);
+        }
+    }
+
+    /* ***********************
+     * EJECUCIÓN
+     * ***********************/
+
+    /**
+     * Ejecuta la consulta sobre la biblioteca.
+     *
+     * @param indice Índice de la biblioteca (nombres y columnas)
+     * @return Ids de las pistas que cumplen todos los términos
+     */
+    public List<Long> ejecutar(IndiceBiblioteca indice) {
+        List<Predicado> orden = new ArrayList<>(predicados);
+        orden.sort(Comparator.comparingInt(p -> p.estimar(indice)));
+
+        ColumnasMetadatos columnas = indice.getColumnas();
+        BitSet candidatos = columnas.getVivas();
+        for (Predicado predicado : orden) {
+            if (candidatos.isEmpty()) break;
+            predicado.aplicar(indice, candidatos);
+        }
+
+        List<Long> ids = new ArrayList<>(candidatos.cardinality());
+        for (int fila = candidatos.nextSetBit(0); fila >= 0; fila = candidatos.nextSetBit(fila + 1)) {
+            ids.add(columnas.getId(fila));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,228 @@
+package modelo;
+
+/*
+ * DiccionarioRutas.java - Diccionario compartido de rutas de archivos de audio.
+ * Almacena los directorios en un trie (un nodo por segmento) para que las
+ * canciones de una misma carpeta compartan el prefijo en memoria, y ofrece
+ * la codificación "front-coded" por bloques usada al persistir las listas.
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trie de directorios compartido por todas las listas de reproducción.
+ * Cada canción guarda solo una referencia a su {@link Directorio} y el nombre
+ * del archivo; la ruta completa se reconstruye bajo demanda.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public final class DiccionarioRutas {
+
+    // Cantidad de rutas por bloque en disco (cada bloque reinicia con la ruta completa)
+    public static final int TAMANO_BLOQUE = 16;
+
+    private static final DiccionarioRutas INSTANCIA = new DiccionarioRutas();
+
+    private final Directorio raiz = new Directorio("", null);   // Raíz del trie (prefijo vacío)
+    private int totalDirectorios = 0;                            // Directorios internados
+
+    private DiccionarioRutas() {
+    }
+
+    /**
+     * Devuelve el diccionario compartido por toda la aplicación.
+     *
+     * @return Instancia única del diccionario
+     */
+    public static DiccionarioRutas getInstancia() {
+        return INSTANCIA;
+    }
+
+    /* ***********************
+     * NODO DEL TRIE
+     * ***********************/
+
+    /**
+     * Nodo del trie: un segmento de directorio incluyendo su separador final
+     * ("C:\", "Musica/", ...), de modo que la concatenación de los segmentos
+     * desde la raíz reproduce exactamente la ruta original.
+     */
+    public static final class Directorio {
+
+        private final String segmento;          // Segmento con separador final
+        private final Directorio padre;         // Directorio contenedor (null en la raíz)
+        private Map<String, Directorio> hijos;  // Subdirectorios (se crea bajo demanda)
+        private final int longitud;             // Longitud total del prefijo
+
+        private Directorio(String segmento, Directorio padre) {
+            this.segmento = segmento;
+            this.padre = padre;
+            this.longitud = (padre != null ? padre.longitud : 0) + segmento.length();
+        }
+
+        public Directorio getPadre() {
+            return padre;
+        }
+
+        /**
+         * Longitud en caracteres de la ruta de este directorio.
+         */
+        public int getLongitud() {
+            return longitud;
+        }
+
+        /**
+         * Escribe el prefijo completo de este directorio en el buffer.
+         */
+        void escribirEn(StringBuilder sb) {
+            if (padre != null) {
+                padre.escribirEn(sb);
+            }
+            sb.append(segmento);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(longitud);
+            escribirEn(sb);
+            return sb.toString();
+        }
+    }
+
+    /* ***********************
+     * INTERNADO Y MATERIALIZACIÓN
+     * ***********************/
+
+    /**
+     * Interna el directorio de una ruta absoluta y devuelve su nodo del trie.
+     *
+     * @param ruta Ruta completa del archivo
+     * @return Directorio compartido que contiene el archivo
+     */
+    public synchronized Directorio internarDirectorio(String ruta) {
+        Directorio actual = raiz;
+        int inicio = 0;
+        int fin = indiceNombreArchivo(ruta);
+        for (int i = 0; i < fin; i++) {
+            char c = ruta.charAt(i);
+            if (c == '/' || c == '\\') {
+                actual = hijo(actual, ruta.substring(inicio, i + 1));
+                inicio = i + 1;
+            }
+        }
+        return actual;
+    }
+
+    private Directorio hijo(Directorio padre, String segmento) {
+        if (padre.hijos == null) {
+            padre.hijos = new HashMap<>(4);
+        }
+        Directorio hijo = padre.hijos.get(segmento);
+        if (hijo == null) {
+            hijo = new Directorio(segmento, padre);
+            padre.hijos.put(segmento, hijo);
+            totalDirectorios++;
+        }
+        return hijo;
+    }
+
+    /**
+     * Reconstruye la ruta completa a partir del directorio y el nombre del archivo.
+     *
+     * @param directorio Directorio internado
+     * @param archivo    Nombre del archivo (hoja)
+     * @return Ruta absoluta
+     */
+    public static String materializar(Directorio directorio, String archivo) {
+        StringBuilder sb = new StringBuilder(directorio.getLongitud() + archivo.length());
+        directorio.escribirEn(sb);
+        return sb.append(archivo).toString();
+    }
+
+    /**
+     * Posición donde empieza el nombre del archivo dentro de la ruta.
+     */
+    public static int indiceNombreArchivo(String ruta) {
+        return Math.max(ruta.lastIndexOf('/'), ruta.lastIndexOf('\\')) + 1;
+    }
+
+    /**
+     * Identificador estable de una pista: huella FNV-1a de 64 bits de su ruta.
+     * No depende del orden de carga, por lo que sirve entre ejecuciones.
+     *
+     * @param ruta Ruta completa del archivo
+     * @return Identificador de la pista
+     */
+    public static long huella(String ruta) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < ruta.length(); i++) {
+            h ^= ruta.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        return h;
+    }
+
+    /**
+     * Número de directorios distintos internados.
+     */
+    public synchronized int contarDirectorios() {
+        return totalDirectorios;
+    }
+
+    /* ***********************
+     * CODIFICACIÓN EN DISCO
+     * ***********************/
+
+    /**
+     * Escribe las rutas en bloques front-coded: la primera ruta de cada bloque
+     * va completa y las demás solo guardan la longitud del prefijo compartido
+     * con la anterior y el sufijo restante.
+     *
+     * @param out   Flujo de salida
+     * @param rutas Rutas a escribir, en orden
+     */
+    public static void escribirRutas(ObjectOutputStream out, List<String> rutas) throws IOException {
+        out.writeInt(rutas.size());
+        String anterior = "";
+        for (int i = 0; i < rutas.size(); i++) {
+            String ruta = rutas.get(i);
+            int comun = (i % TAMANO_BLOQUE == 0) ? 0 : prefijoComun(anterior, ruta);
+            out.writeShort(comun);
+            out.writeUTF(ruta.substring(comun));
+            anterior = ruta;
+        }
+    }
+
+    /**
+     * Lee las rutas escritas con {@link #escribirRutas}.
+     *
+     * @param in Flujo de entrada
+     * @return Rutas completas en el orden original
+     */
+    public static String[] leerRutas(ObjectInputStream in) throws IOException {
+        String[] rutas = new String[in.readInt()];
+        String anterior = "";
+        for (int i = 0; i < rutas.length; i++) {
+            int comun = in.readUnsignedShort();
+            String sufijo = in.readUTF();
+            rutas[i] = (comun == 0) ? sufijo : anterior.substring(0, comun).concat(sufijo);
+            anterior = rutas[i];
+        }
+        return rutas;
+    }
+
+    private static int prefijoComun(String a, String b) {
+        int max = Math.min(Math.min(a.length(), b.length()), 0xFFFF);
+        int i = 0;
+        while (i < max && a.charAt(i) == b.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,185 @@
+package modelo;
+
+/*
+ * DiccionarioTerminos.java - Vocabulario de la biblioteca con búsqueda por distancia de edición.
+ * Los términos se guardan en un trie. La búsqueda recorre el trie calculando la
+ * fila de Damerau-Levenshtein de cada prefijo a partir de la del padre (lo que
+ * haría un autómata de Levenshtein sobre el diccionario): en cuanto todas las
+ * celdas de una fila superan k se descarta la rama entera, así que solo se
+ * visitan los prefijos que aún pueden acabar en una coincidencia.
+ */
+
+import java.util.Arrays;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Trie de términos con contador de usos. Las altas y bajas son O(longitud del
+ * término) y no degradan la búsqueda: un término sin usos se ignora y sus
+ * nodos vacíos se podan.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class DiccionarioTerminos {
+
+    /**
+     * Nodo del trie: hijos ordenados por carácter.
+     */
+    private static final class NodoTrie {
+        private char[] letras = new char[0];
+        private NodoTrie[] hijos = new NodoTrie[0];
+        private int usos;             // Veces que el término que termina aquí está en uso
+        private int terminos;         // Términos en uso en el subárbol (para podar)
+
+        private NodoTrie hijo(char c) {
+            int i = Arrays.binarySearch(letras, c);
+            return (i >= 0) ? hijos[i] : null;
+        }
+
+        private NodoTrie crearHijo(char c) {
+            int i = Arrays.binarySearch(letras, c);
+            if (i >= 0) return hijos[i];
+            i = -i - 1;
+            char[] nuevasLetras = new char[letras.length + 1];
+            NodoTrie[] nuevosHijos = new NodoTrie[hijos.length + 1];
+            System.arraycopy(letras, 0, nuevasLetras, 0, i);
+            System.arraycopy(hijos, 0, nuevosHijos, 0, i);
+            System.arraycopy(letras, i, nuevasLetras, i + 1, letras.length - i);
+            System.arraycopy(hijos, i, nuevosHijos, i + 1, hijos.length - i);
+            nuevasLetras[i] = c;
+            nuevosHijos[i] = new NodoTrie();
+            letras = nuevasLetras;
+            hijos = nuevosHijos;
+            return nuevosHijos[i];
+        }
+
+        private void quitarHijo(char c) {
+            int i = Arrays.binarySearch(letras, c);
+            if (i < 0) return;
+            char[] nuevasLetras = new char[letras.length - 1];
+            NodoTrie[] nuevosHijos = new NodoTrie[hijos.length - 1];
+            System.arraycopy(letras, 0, nuevasLetras, 0, i);
+            System.arraycopy(hijos, 0, nuevosHijos, 0, i);
+            System.arraycopy(letras, i + 1, nuevasLetras, i, letras.length - i - 1);
+            System.arraycopy(hijos, i + 1, nuevosHijos, i, hijos.length - i - 1);
+            letras = nuevasLetras;
+            hijos = nuevosHijos;
+        }
+    }
+
+    private final NodoTrie raiz = new NodoTrie();
+
+    /* ***********************
+     * ALTAS Y BAJAS
+     * ***********************/
+
+    /**
+     * Suma un uso al término (lo añade si no estaba).
+     */
+    public void agregar(String termino) {
+        NodoTrie nodo = raiz;
+        NodoTrie[] camino = new NodoTrie[termino.length() + 1];
+        camino[0] = nodo;
+        for (int i = 0; i < termino.length(); i++) {
+            nodo = nodo.crearHijo(termino.charAt(i));
+            camino[i + 1] = nodo;
+        }
+        if (nodo.usos++ == 0) {
+            for (NodoTrie n : camino) n.terminos++;
+        }
+    }
+
+    /**
+     * Resta un uso al término; al llegar a cero desaparece y se podan los
+     * nodos que quedan vacíos.
+     */
+    public void quitar(String termino) {
+        NodoTrie[] camino = new NodoTrie[termino.length() + 1];
+        NodoTrie nodo = raiz;
+        camino[0] = nodo;
+        for (int i = 0; i < termino.length(); i++) {
+            nodo = nodo.hijo(termino.charAt(i));
+            if (nodo == null) return;
+            camino[i + 1] = nodo;
+        }
+        if (nodo.usos == 0 || --nodo.usos > 0) return;
+        for (NodoTrie n : camino) n.terminos--;
+        for (int i = termino.length(); i > 0; i--) {
+            if (camino[i].terminos == 0) {
+                camino[i - 1].quitarHijo(termino.charAt(i - 1));
+            }
+        }
+    }
+
+    /**
+     * @return Términos distintos en uso
+     */
+    public int getTamano() {
+        return raiz.terminos;
+    }
+
+    /**
+     * @return Usos del término (0 si no está)
+     */
+    public int getUsos(String termino) {
+        NodoTrie nodo = raiz;
+        for (int i = 0; i < termino.length() && nodo != null; i++) {
+            nodo = nodo.hijo(termino.charAt(i));
+        }
+        return (nodo != null) ? nodo.usos : 0;
+    }
+
+    /* ***********************
+     * BÚSQUEDA APROXIMADA
+     * ***********************/
+
+    /**
+     * Recorre los términos a distancia de Damerau-Levenshtein (alineamiento
+     * óptimo) como mucho k de la consulta.
+     *
+     * @param consulta Término buscado
+     * @param k        Distancia máxima
+     * @param salida   Recibe cada término y su distancia
+     */
+    public void buscar(String consulta, int k, ObjIntConsumer<String> salida) {
+        int m = consulta.length();
+        // Una fila por profundidad: un término de más de m + k letras no puede coincidir
+        int[][] filas = new int[m + k + 1][m + 1];
+        for (int j = 0; j <= m; j++) filas[0][j] = j;
+        char[] prefijo = new char[m + k];
+        for (int i = 0; i < raiz.letras.length; i++) {
+            recorrer(raiz.hijos[i], raiz.letras[i], 1, consulta, k, filas, prefijo, salida);
+        }
+    }
+
+    private void recorrer(NodoTrie nodo, char c, int profundidad, String consulta, int k,
+                          int[][] filas, char[] prefijo, ObjIntConsumer<String> salida) {
+        if (profundidad >= filas.length) return;     // Más largo que la consulta + k: imposible
+        int m = consulta.length();
+        int[] anterior = filas[profundidad - 1];
+        int[] fila = filas[profundidad];
+        prefijo[profundidad - 1] = c;
+
+        fila[0] = profundidad;
+        int minimo = fila[0];
+        for (int j = 1; j <= m; j++) {
+            char cq = consulta.charAt(j - 1);
+            int v = Math.min(Math.min(anterior[j] + 1, fila[j - 1] + 1), anterior[j - 1] + (cq == c ? 0 : 1));
+            if (profundidad > 1 && j > 1 && cq == prefijo[profundidad - 2] && consulta.charAt(j - 2) == c) {
+                v = Math.min(v, filas[profundidad - 2][j - 2] + 1);
+            }
+            fila[j] = v;
+            if (v < minimo) minimo = v;
+        }
+
+        if (nodo.usos > 0 && fila[m] <= k) {
+            salida.accept(new String(prefijo, 0, profundidad), fila[m]);
+        }
+        // Si toda la fila supera k ninguna extensión del prefijo puede bajar de k
+        // (tampoco por transposición: d[i+2][j+2] = d[i][j] + 1 >= d[i+1][j+1])
+        if (minimo > k) return;
+        for (int i = 0; i < nodo.letras.length; i++) {
+            recorrer(nodo.hijos[i], nodo.letras[i], profundidad + 1, consulta, k, filas, prefijo, salida);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package modelo;
+
+/*
+ * EstadisticasReproduccion.java - Contadores de reproducción por pista.
+ * Cada escucha se anota en el historial circular y actualiza los contadores
+ * y dos índices ordenados (más reproducidas y más recientes), de modo que las
+ * consultas no recorren el historial. El archivo de estadísticas es de solo
+ * anexado y se vuelve a leer al iniciar para reconstruir los contadores.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Estadísticas de reproducción: reproducciones, saltos y última escucha por pista.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class EstadisticasReproduccion {
+
+    public static final long UMBRAL_SALTO_MS = 30_000;   // Menos de esto (o de media pista) es un salto
+
+    private static final Object BLOQUEO_ARCHIVO = new Object();  // Un lote a la vez: las entradas son de tamaño fijo
+
+    /**
+     * Contadores de una pista.
+     */
+    public static final class Contador {
+        private final long idPista;
+        private int reproducciones;
+        private int saltos;
+        private long ultimaVez;          // Inicio de la última escucha (ms desde la época)
+        private long secuencia;          // Orden de la última escucha (desempata instantes iguales)
+
+        private Contador(long idPista) {
+            this.idPista = idPista;
+        }
+
+        public long getIdPista() { return idPista; }
+        public int getReproducciones() { return reproducciones; }
+        public int getSaltos() { return saltos; }
+        public long getUltimaVez() { return ultimaVez; }
+    }
+
+    private final String archivo;
+    private final HistorialReproduccion historial;
+    private final Map<Long, Contador> contadores = new HashMap<>();
+    private long secuencia;
+
+    // Más reproducidas primero (a igualdad, id menor primero)
+    private final TreeSet<Contador> porReproducciones = new TreeSet<>((a, b) -> {
+        int c = Integer.compare(b.reproducciones, a.reproducciones);
+        return (c != 0) ? c : Long.compare(a.idPista, b.idPista);
+    });
+    // Secuencia de la última escucha -> pista
+    private final TreeMap<Long, Contador> porRecientes = new TreeMap<>();
+
+    /**
+     * @param archivo Archivo de estadísticas (solo anexado)
+     */
+    public EstadisticasReproduccion(String archivo) {
+        this(archivo, new HistorialReproduccion());
+    }
+
+    public EstadisticasReproduccion(String archivo, HistorialReproduccion historial) {
+        this.archivo = archivo;
+        this.historial = historial;
+    }
+
+    /* ***********************
+     * REGISTRO
+     * ***********************/
+
+    /**
+     * Anota una escucha terminada.
+     *
+     * @param idPista     Id de la pista
+     * @param inicioMs    Instante de inicio
+     * @param escuchadoMs Milisegundos escuchados
+     * @param duracionMs  Duración de la pista (-1 si se desconoce)
+     */
+    public void registrar(long idPista, long inicioMs, long escuchadoMs, long duracionMs) {
+        long umbral = (duracionMs > 0) ? Math.min(UMBRAL_SALTO_MS, duracionMs / 2) : UMBRAL_SALTO_MS;
+        byte marca = (escuchadoMs < umbral) ? HistorialReproduccion.MARCA_SALTADA : 0;
+        historial.registrar(idPista, inicioMs, escuchadoMs, marca);
+        contar(idPista, inicioMs, marca);
+    }
+
+    private void contar(long idPista, long inicioMs, byte marca) {
+        Contador contador = contadores.get(idPista);
+        if (contador == null) {
+            contador = new Contador(idPista);
+            contadores.put(idPista, contador);
+        } else {
+            porReproducciones.remove(contador);
+            porRecientes.remove(contador.secuencia);
+        }
+        if (marca == HistorialReproduccion.MARCA_SALTADA) {
+            contador.saltos++;
+        } else {
+            contador.reproducciones++;
+        }
+        contador.ultimaVez = inicioMs;
+        contador.secuencia = ++secuencia;
+        porReproducciones.add(contador);
+        porRecientes.put(contador.secuencia, contador);
+    }
+
+    /* ***********************
+     * PERSISTENCIA
+     * ***********************/
+
+    /**
+     * Añade al archivo las escuchas pendientes del historial (una escritura por lote).
+     */
+    public void volcar() {
+        volcar(Runnable::run);
+    }
+
+    /**
+     * Toma las escuchas pendientes en memoria y deja la escritura del lote al
+     * ejecutor dado (p. ej. un hilo de fondo), sin esperar al disco. El lote
+     * solo cuenta como volcado cuando llega al archivo; si el ejecutor lo
+     * rechaza, queda para el siguiente volcado.
+     *
+     * @param escritor Ejecutor que anexa el lote al archivo
+     */
+    public void volcar(Executor escritor) {
+        ByteArrayOutputStream lote = new ByteArrayOutputStream();
+        long hasta;
+        try (DataOutputStream out = new DataOutputStream(lote)) {
+            hasta = historial.reservarPendientes(out);
+        } catch (IOException e) {
+            System.out.println("Error al guardar las estadísticas: " + e.getMessage());
+            return;
+        }
+        if (hasta < 0) return;
+        long desde = hasta - lote.size() / HistorialReproduccion.TAMANO_ENTRADA;
+        try {
+            escritor.execute(() -> anexar(lote, desde, hasta));
+        } catch (RejectedExecutionException e) {
+            historial.liberarReserva(desde, hasta);
+            System.out.println("Guardado de estadísticas aplazado: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Anexa un lote al archivo. Los lotes se escriben de a uno para que las
+     * entradas de dos escritores no se intercalen. Si la escritura falla a
+     * medias, el archivo vuelve a su longitud anterior antes de devolver el
+     * lote a pendientes: el reintento no puede quedar detrás de bytes sueltos.
+     */
+    private void anexar(ByteArrayOutputStream lote, long desde, long hasta) {
+        synchronized (BLOQUEO_ARCHIVO) {
+            long longitudPrevia = new File(archivo).length();
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(archivo, true))) {
+                lote.writeTo(out);
+            } catch (IOException e) {
+                System.out.println("Error al guardar las estadísticas: " + e.getMessage());
+                if (truncar(longitudPrevia)) {
+                    historial.liberarReserva(desde, hasta);
+                } else {
+                    historial.descartarReserva(desde, hasta);
+                }
+                return;
+            }
+            historial.confirmarVolcado(hasta);
+        }
+    }
+
+    /**
+     * Recorta el archivo a la longitud dada.
+     *
+     * @return false si no se pudo
+     */
+    private boolean truncar(long longitud) {
+        try (RandomAccessFile raf = new RandomAccessFile(archivo, "rw")) {
+            if (raf.length() > longitud) raf.setLength(longitud);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Error al recortar las estadísticas: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Reconstruye los contadores leyendo el archivo completo. Una entrada
+     * truncada al final (cierre inesperado) se quita del archivo, para que
+     * las que se anexen después sigan alineadas.
+     */
+    public void cargar() {
+        File f = new File(archivo);
+        if (!f.exists()) return;
+        synchronized (BLOQUEO_ARCHIVO) {
+            long sobrante = f.length() % HistorialReproduccion.TAMANO_ENTRADA;
+            if (sobrante != 0) {
+                System.out.println("Se descarta una entrada de estadísticas incompleta");
+                truncar(f.length() - sobrante);
+            }
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+            while (true) {
+                long id = in.readLong();
+                long inicio = in.readLong();
+                in.readLong();                   // Milisegundos escuchados (solo historial)
+                byte marca = in.readByte();
+                contar(id, inicio, marca);
+            }
+        } catch (EOFException e) {
+            // Fin del archivo
+        } catch (IOException e) {
+            System.out.println("Error al cargar las estadísticas: " + e.getMessage());
+        }
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    /**
+     * @param limite Cantidad máxima
+     * @return Ids de las pistas más reproducidas, de mayor a menor
+     */
+    public List<Long> masReproducidas(int limite) {
+        List<Long> ids = new ArrayList<>(Math.min(limite, contadores.size()));
+        for (Contador c : porReproducciones) {
+            if (ids.size() >= limite || c.reproducciones == 0) break;
+            ids.add(c.idPista);
+        }
+        return ids;
+    }
+
+    /**
+     * @param limite Cantidad máxima
+     * @return Ids de las pistas escuchadas más recientemente, sin repetir
+     */
+    public List<Long> recientes(int limite) {
+        List<Long> ids = new ArrayList<>(Math.min(limite, contadores.size()));
+        for (Contador c : porRecientes.descendingMap().values()) {
+            if (ids.size() >= limite) break;
+            ids.add(c.idPista);
+        }
+        return ids;
+    }
+
+    /**
+     * @param biblioteca Ids de las pistas a considerar
+     * @return Las que nunca se escucharon (ni siquiera saltadas)
+     */
+    public List<Long> nuncaReproducidas(Collection<Long> biblioteca) {
+        List<Long> ids = new ArrayList<>();
+        for (Long id : biblioteca) {
+            if (!contadores.containsKey(id)) ids.add(id);
+        }
+        return ids;
+    }
+
+    /**
+     * @return Contadores de una pista o null si nunca se escuchó
+     */
+    public Contador getContador(long idPista) {
+        return contadores.get(idPista);
+    }
+
+    public int getReproducciones(long idPista) {
+        Contador c = contadores.get(idPista);
+        return (c != null) ? c.reproducciones : 0;
+    }
+
+    public HistorialReproduccion getHistorial() {
+        return historial;
+    }
+}
@@ -0,0 +1,136 @@
+package modelo;
+
+/*
+ * ExtractorPicos.java - Calcula en segundo plano la forma de onda de las pistas.
+ * La pista que suena se calcula en el carril de filas visibles del
+ * planificador y el precálculo de la lista abierta se reparte entre los hilos
+ * del carril de fondo. Cada resultado se guarda en la caché de metadatos, de
+ * modo que cada pista se decodifica una sola vez.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import javafx.application.Platform;
+
+/**
+ * Extractor de picos en paralelo con caché persistente.
+ * Solo procesa MP3 (se decodifican con JLayer).
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class ExtractorPicos {
+
+    private final PlanificadorTareas planificador;
+    private final Map<String, CompletableFuture<PicosOnda>> enCurso = new ConcurrentHashMap<>();
+    private final CacheMetadatos cache = CacheMetadatos.getInstancia();
+    private PlanificadorTareas.Token tokenPrecalculo = new PlanificadorTareas.Token(); // Precálculo de la última lista abierta
+
+    /**
+     * @param planificador Planificador cuyos carriles hacen la extracción
+     */
+    public ExtractorPicos(PlanificadorTareas planificador) {
+        this.planificador = planificador;
+    }
+
+    /**
+     * Indica si la pista tiene un formato que el extractor sabe decodificar.
+     */
+    public static boolean esCompatible(String ruta) {
+        return ruta != null && ruta.toLowerCase().endsWith(".mp3");
+    }
+
+    /**
+     * Entrega los picos de una pista en el hilo de JavaFX. La consulta a la
+     * caché (que mira el archivo en disco) también se hace en el carril, de
+     * modo que pedir la onda de la pista que empieza no bloquea la interfaz.
+     *
+     * @param ruta        Ruta de la pista
+     * @param alTerminar  Recibe los picos (no se invoca si no se pueden obtener)
+     */
+    public void solicitar(String ruta, Consumer<PicosOnda> alTerminar) {
+        if (!esCompatible(ruta)) return;
+        CompletableFuture<PicosOnda> nueva = new CompletableFuture<>();
+        CompletableFuture<PicosOnda> tarea = enCurso.putIfAbsent(ruta, nueva);
+        if (tarea == null) {
+            tarea = nueva;
+            if (!planificador.ejecutar(PlanificadorTareas.Carril.VISIBLE, new PlanificadorTareas.Token(),
+                    () -> extraer(ruta, nueva))) {
+                enCurso.remove(ruta, nueva);
+                return;
+            }
+        }
+        tarea.thenAccept(resultado -> {
+            if (resultado != null) {
+                Platform.runLater(() -> alTerminar.accept(resultado));
+            }
+        });
+    }
+
+    /**
+     * Calcula en segundo plano todas las pistas que aún no tienen picos. Un
+     * nuevo precálculo cancela lo que quede del anterior (p. ej. al cambiar
+     * de lista). Debe llamarse desde el hilo de JavaFX; la consulta a la
+     * caché (que mira el archivo en disco) se hace en el carril de fondo.
+     *
+     * @param rutas Rutas de las pistas (p. ej. las de la lista abierta)
+     */
+    public void precalcular(Collection<String> rutas) {
+        List<String> compatibles = new ArrayList<>();
+        for (String ruta : rutas) {
+            if (esCompatible(ruta)) {
+                compatibles.add(ruta);
+            }
+        }
+        tokenPrecalculo.cancelar();
+        tokenPrecalculo = new PlanificadorTareas.Token();
+        if (compatibles.isEmpty()) return;
+        planificador.repartir(PlanificadorTareas.Carril.FONDO, tokenPrecalculo, compatibles, ruta -> {
+            if (cache.getPicos(ruta) != null) return;
+            CompletableFuture<PicosOnda> nueva = new CompletableFuture<>();
+            if (enCurso.putIfAbsent(ruta, nueva) == null) {
+                extraer(ruta, nueva);
+            }
+        }, null);
+    }
+
+    /**
+     * Extrae los picos de una ruta en el hilo actual y completa su tarea.
+     */
+    private void extraer(String ruta, CompletableFuture<PicosOnda> tarea) {
+        PicosOnda picos = cache.getPicos(ruta);
+        try {
+            if (picos == null) {
+                picos = PicosOnda.extraer(ruta, PicosOnda.CUBETAS_POR_DEFECTO);
+                if (picos != null) {
+                    cache.setPicos(ruta, picos);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Error al extraer la forma de onda: " + e.getMessage());
+            picos = null;
+        } finally {
+            enCurso.remove(ruta, tarea);
+            tarea.complete(picos);
+        }
+    }
+
+    /**
+     * Cantidad de pistas en proceso.
+     */
+    public int getPendientes() {
+        return enCurso.size();
+    }
+
+    /**
+     * Cancela el precálculo pendiente.
+     */
+    public void cerrar() {
+        tokenPrecalculo.cancelar();
+    }
+}
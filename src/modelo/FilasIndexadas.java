@@ -0,0 +1,125 @@
+package modelo;
+
+/*
+ * FilasIndexadas.java - Filas de la tabla de canciones con un índice id -> fila.
+ * Permite seleccionar o ubicar una pista en la tabla sin recorrerla. El índice
+ * se mantiene con los cambios de la lista: las permutaciones (reordenar) y
+ * las altas al final se aplican en el acto; cualquier otro cambio lo marca
+ * para reconstruirlo en la siguiente consulta.
+ */
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Lista observable de canciones con búsqueda de fila por id de pista.
+ * Debe usarse desde el hilo de JavaFX.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class FilasIndexadas {
+
+    private final ObservableList<Cancion> filas;
+    private final Map<Long, Integer> filaPorId = new HashMap<>();
+    private boolean vigente = false;      // false = reconstruir antes de consultar
+
+    // Métricas
+    private long reconstrucciones = 0;
+
+    /**
+     * Crea una vista nueva con las filas dadas.
+     *
+     * @param filas Canciones en el orden de la tabla
+     */
+    public FilasIndexadas(List<Cancion> filas) {
+        this(FXCollections.observableArrayList(filas));
+    }
+
+    /**
+     * Indexa una lista observable existente (p. ej. la de resultados de búsqueda).
+     *
+     * @param filas Lista a indexar
+     */
+    public FilasIndexadas(ObservableList<Cancion> filas) {
+        this.filas = filas;
+        filas.addListener((ListChangeListener<Cancion>) this::actualizar);
+    }
+
+    private void actualizar(ListChangeListener.Change<? extends Cancion> cambio) {
+        while (cambio.next() && vigente) {
+            if (cambio.wasPermutated()) {
+                for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                    filaPorId.put(filas.get(i).getIdPista(), i);
+                }
+            } else if (cambio.wasAdded() && !cambio.wasRemoved() && cambio.getTo() == filas.size()) {
+                for (int i = cambio.getFrom(); i < cambio.getTo(); i++) {
+                    filaPorId.putIfAbsent(filas.get(i).getIdPista(), i);
+                }
+            } else if (!cambio.wasUpdated()) {
+                vigente = false;            // Bajas o altas intermedias desplazan las filas siguientes
+            }
+        }
+    }
+
+    private void reconstruir() {
+        filaPorId.clear();
+        for (int i = 0; i < filas.size(); i++) {
+            filaPorId.putIfAbsent(filas.get(i).getIdPista(), i);
+        }
+        vigente = true;
+        reconstrucciones++;
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    /**
+     * @param idPista Id de la pista
+     * @return Fila de la pista o -1 si no está
+     */
+    public int getFila(long idPista) {
+        if (!vigente) reconstruir();
+        Integer fila = filaPorId.get(idPista);
+        return (fila != null) ? fila : -1;
+    }
+
+    /**
+     * Fila de una canción concreta (si la pista aparece dos veces, la de ese objeto).
+     *
+     * @return Fila o -1 si no está
+     */
+    public int getFila(Cancion cancion) {
+        int fila = getFila(cancion.getIdPista());
+        if (fila >= 0 && filas.get(fila) == cancion) return fila;
+        return (fila >= 0) ? filas.indexOf(cancion) : -1;
+    }
+
+    /**
+     * @return Canción con ese id o null si no está
+     */
+    public Cancion getCancion(long idPista) {
+        int fila = getFila(idPista);
+        return (fila >= 0) ? filas.get(fila) : null;
+    }
+
+    public ObservableList<Cancion> getFilas() {
+        return filas;
+    }
+
+    public int getTamano() {
+        return filas.size();
+    }
+
+    /**
+     * @return Veces que el índice se reconstruyó por completo
+     */
+    public long getReconstrucciones() {
+        return reconstrucciones;
+    }
+}
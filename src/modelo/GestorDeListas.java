@@ -2,6 +2,8 @@ package modelo;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * GestorDeListas se encarga de manejar las operaciones de las listas de
@@ -18,14 +20,23 @@ public class GestorDeListas implements Serializable {
 
     private static final long serialVersionUID = 1L;
 
+    private static final String SUFIJO_CAMBIOS = ".cambios";           // Registro de listas guardadas una a una
+    private static final long LIMITE_CAMBIOS = 4L * 1024 * 1024;       // Tamaño del registro que fuerza un guardado completo
+    private static final Object BLOQUEO_ARCHIVOS = new Object();      // Ordena los guardados completos y los del registro
+    private transient volatile long guardadosCompletos;                 // Cambia con cada copia completa de las listas
+    private transient long completoEscrito = -1;                        // Copia completa en disco (con BLOQUEO_ARCHIVOS)
+    private transient volatile long tamanoCambios = Long.MAX_VALUE;     // Bytes del registro; sin archivo conocido, el máximo
+
     private Map<String, ListaReproduccion> listas;  // Mapa que almacena listas de reproducción
     private ListaReproduccion listaFav = new ListaReproduccion(); // Lista especial de favoritos
+    private transient IndiceBiblioteca indice = new IndiceBiblioteca(); // Búsqueda en toda la biblioteca
 
     /**
      * Constructor - Inicializa el mapa de listas.
      */
     public GestorDeListas() {
         listas = new HashMap<>();
+        indice.registrarFavoritos(listaFav);
     }
 
     /* ***********************
@@ -37,7 +48,9 @@ public class GestorDeListas implements Serializable {
      */
     public void crearLista(String nombre) {
         if (!listas.containsKey(nombre)) {
-            listas.put(nombre, new ListaReproduccion());
+            ListaReproduccion lista = new ListaReproduccion();
+            listas.put(nombre, lista);
+            indice.registrarLista(lista);
         } else {
             System.out.println("La lista '" + nombre + "' ya existe.");
         }
@@ -48,7 +61,8 @@ public class GestorDeListas implements Serializable {
      */
     public void eliminarLista(String nombre) {
         if (listas.containsKey(nombre)) {
-            listas.remove(nombre);
+            ListaReproduccion lista = listas.remove(nombre);
+            if (lista != listaFav) indice.olvidarLista(lista);
         } else {
             System.out.println("La lista '" + nombre + "' no existe.");
         }
@@ -129,6 +143,74 @@ public class GestorDeListas implements Serializable {
         return listas;
     }
 
+    /**
+     * Devuelve las rutas de todas las canciones de la biblioteca, sin repetir.
+     */
+    public Set<String> getRutasBiblioteca() {
+        Set<String> rutas = new LinkedHashSet<>();
+        for (ListaReproduccion lista : listas.values()) {
+            for (Nodo nodo = lista.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+                rutas.add(nodo.getRutaCancion());
+            }
+        }
+        return rutas;
+    }
+
+    /**
+     * Índice de búsqueda de la biblioteca, al día con las altas y bajas de las listas.
+     */
+    public IndiceBiblioteca getIndice() {
+        return indice;
+    }
+
+    /**
+     * Busca en todas las listas a la vez. Cada pista aparece una sola vez
+     * (el id es la huella de la ruta) junto con las listas que la contienen.
+     *
+     * @param consulta Texto buscado
+     * @param limite   Cantidad máxima de resultados
+     * @return Resultados clasificados por calidad de la coincidencia
+     */
+    public List<IndiceBiblioteca.Resultado> buscarEnBiblioteca(String consulta, int limite) {
+        List<IndiceBiblioteca.Resultado> resultados = indice.buscarClasificado(consulta, limite);
+        for (IndiceBiblioteca.Resultado resultado : resultados) {
+            resultado.getListas().addAll(getListasConPista(resultado.getIdPista()));
+        }
+        return resultados;
+    }
+
+    /**
+     * @param idPista Identificador de la pista
+     * @return Nombres de las listas que la contienen, en orden alfabético
+     */
+    public List<String> getListasConPista(long idPista) {
+        List<String> nombres = new ArrayList<>();
+        for (Map.Entry<String, ListaReproduccion> entrada : listas.entrySet()) {
+            if (entrada.getValue().getNodoPorId(idPista) != null) {
+                nombres.add(entrada.getKey());
+            }
+        }
+        if (!listas.containsValue(listaFav) && listaFav.getNodoPorId(idPista) != null) {
+            nombres.add("Favoritos");
+        }
+        Collections.sort(nombres);
+        return nombres;
+    }
+
+    /**
+     * Busca una pista por su identificador en todas las listas.
+     *
+     * @param idPista Identificador de la pista
+     * @return Nodo de la primera lista que la contiene, o null
+     */
+    public Nodo getNodoPorId(long idPista) {
+        for (ListaReproduccion lista : listas.values()) {
+            Nodo nodo = lista.getNodoPorId(idPista);
+            if (nodo != null) return nodo;
+        }
+        return null;
+    }
+
     /**
      * Devuelve los nombres de todas las listas creadas.
      */
@@ -164,13 +246,13 @@ public class GestorDeListas implements Serializable {
      * ***************/
 
     /**
-     * Agrega una canción a la lista de favoritos si no está ya.
+     * Agrega una canción a la lista de favoritos si no está ya. Los favoritos
+     * se identifican por pista (huella de la ruta), no por nombre: dos
+     * archivos con el mismo nombre son favoritos distintos.
      */
     public void agregarFav(Cancion cancion) {
         if (!esFavorita(cancion)) {
-            if (listaFav.getRutaPorNombre(cancion.getNombre()) == null) {
-                listaFav.agregarCancion(cancion.getNombre(), cancion.getRuta());
-            }
+            listaFav.agregarCancion(cancion.getNombre(), cancion.getRuta());
         }
     }
 
@@ -178,14 +260,23 @@ public class GestorDeListas implements Serializable {
      * Elimina una canción de la lista de favoritos.
      */
     public void eliminarFav(Cancion cancion) {
-        listaFav.eliminarCancion(cancion.getNombre());
+        listaFav.eliminarCancionPorId(cancion.getIdPista());
     }
 
     /**
-     * Verifica si una canción es favorita.
+     * Verifica si una canción es favorita (consulta O(1) en el mapa por id
+     * de la lista de favoritos).
      */
     public boolean esFavorita(Cancion cancion) {
-        return listaFav.getRutaPorNombre(cancion.getNombre()) != null;
+        return esFavorita(cancion.getIdPista());
+    }
+
+    /**
+     * @param idPista Identificador de la pista
+     * @return true si la pista está en favoritos
+     */
+    public boolean esFavorita(long idPista) {
+        return listaFav.getNodoPorId(idPista) != null;
     }
 
     /* **********************
@@ -196,11 +287,107 @@ public class GestorDeListas implements Serializable {
      * Guarda todas las listas (incluye favoritos) en un archivo.
      */
     public void guardarListas(String archivo) {
+        guardarListas(archivo, Runnable::run);
+    }
+
+    /**
+     * Como {@link #guardarListas(String)}, pero las listas se serializan en
+     * memoria y la escritura del archivo queda a cargo del ejecutor dado.
+     * Las listas guardadas una a una antes de esta llamada quedan incluidas;
+     * si un guardado completo posterior llega antes al disco, este se omite.
+     *
+     * @param escritor Ejecutor que escribe el archivo
+     */
+    public void guardarListas(String archivo, Executor escritor) {
         listas.put("Favoritos", listaFav);
-        try (ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(archivo))) {
+        ByteArrayOutputStream datos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(datos)) {
             out.writeObject(listas);
         } catch (IOException e) {
             System.out.println("Error al guardar las listas: " + e.getMessage());
+            return;
+        }
+        long guardado = ++guardadosCompletos;   // Las entradas del registro anteriores ya sobran
+        Runnable escribir = () -> {
+            synchronized (BLOQUEO_ARCHIVOS) {
+                if (guardado < completoEscrito) return;
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(archivo))) {
+                    datos.writeTo(out);
+                } catch (IOException e) {
+                    System.out.println("Error al guardar las listas: " + e.getMessage());
+                    return;
+                }
+                new File(archivo + SUFIJO_CAMBIOS).delete();     // Ya incluido en el archivo completo
+                completoEscrito = guardado;
+                tamanoCambios = 0;
+            }
+        };
+        try {
+            escritor.execute(escribir);
+        } catch (RejectedExecutionException e) {
+            escribir.run();                                  // Sin sitio en el escritor: se escribe aquí
+        }
+    }
+
+    /**
+     * Guarda solo una lista (p. ej. tras reordenarla) anexándola al registro de
+     * cambios del archivo de listas, sin reescribir las demás. Al cargar, las
+     * entradas del registro reemplazan a las del archivo. Si el registro crece
+     * demasiado se guardan todas las listas y el registro se vacía.
+     */
+    public void guardarLista(String archivo, String nombre) {
+        guardarLista(archivo, nombre, Runnable::run);
+    }
+
+    /**
+     * Como {@link #guardarLista(String, String)}, pero la lista se serializa
+     * en memoria y la escritura queda a cargo del ejecutor dado (p. ej. un
+     * hilo de fondo). El ejecutor debe respetar el orden de envío. El tamaño
+     * del registro se lleva en memoria, así que quien llama no toca el disco;
+     * el guardado completo que lo vacía también se hace en el ejecutor.
+     *
+     * @param escritor Ejecutor que anexa la entrada al registro
+     */
+    public void guardarLista(String archivo, String nombre, Executor escritor) {
+        ListaReproduccion lista = listas.get(nombre);
+        if (lista == null) return;
+        if (tamanoCambios > LIMITE_CAMBIOS) {                // Registro lleno o sin archivo completo
+            guardarListas(archivo, escritor);
+            return;
+        }
+        File cambios = new File(archivo + SUFIJO_CAMBIOS);
+
+        ByteArrayOutputStream entrada = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(entrada)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objetos = new ObjectOutputStream(bytes)) {
+                objetos.writeObject(lista);
+            }
+            out.writeUTF(nombre);
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+        } catch (IOException e) {
+            System.out.println("Error al guardar la lista " + nombre + ": " + e.getMessage());
+            return;
+        }
+        long guardadoPrevio = guardadosCompletos;
+        Runnable anexar = () -> {
+            synchronized (BLOQUEO_ARCHIVOS) {
+                if (guardadoPrevio != guardadosCompletos) return;  // Un guardado completo posterior ya la incluye
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(cambios, true))) {
+                    entrada.writeTo(out);
+                } catch (IOException e) {
+                    System.out.println("Error al guardar la lista " + nombre + ": " + e.getMessage());
+                    return;
+                }
+                tamanoCambios += entrada.size();
+            }
+        };
+        try {
+            escritor.execute(anexar);
+        } catch (RejectedExecutionException e) {
+            // Anexar aquí podría adelantarse a un guardado completo aún en cola, que borraría la entrada
+            guardarListas(archivo);
         }
     }
 
@@ -211,6 +398,8 @@ public class GestorDeListas implements Serializable {
     public void cargarListas(String archivo) {
         try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(archivo))) {
             listas = (Map<String, ListaReproduccion>) in.readObject();
+            aplicarCambios(archivo);
+            tamanoCambios = new File(archivo + SUFIJO_CAMBIOS).length();
 
             // Recupera o crea la lista de favoritos
             if (listas.containsKey("Favoritos")) {
@@ -219,8 +408,36 @@ public class GestorDeListas implements Serializable {
                 listaFav = new ListaReproduccion();
                 listas.put("Favoritos", listaFav);
             }
+            indice = new IndiceBiblioteca();
+            for (ListaReproduccion lista : listas.values()) {
+                if (lista != listaFav) indice.registrarLista(lista);
+            }
+            indice.registrarFavoritos(listaFav);
         } catch (IOException | ClassNotFoundException e) {
             System.out.println("Error al cargar las listas: " + e.getMessage());
         }
     }
+
+    /**
+     * Reemplaza las listas guardadas una a una desde el último guardado
+     * completo. Una entrada truncada al final (cierre inesperado) se ignora.
+     */
+    private void aplicarCambios(String archivo) {
+        File cambios = new File(archivo + SUFIJO_CAMBIOS);
+        if (!cambios.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(cambios)))) {
+            while (true) {
+                String nombre = in.readUTF();
+                byte[] datos = new byte[in.readInt()];
+                in.readFully(datos);
+                try (ObjectInputStream lista = new ObjectInputStream(new ByteArrayInputStream(datos))) {
+                    listas.put(nombre, (ListaReproduccion) lista.readObject());
+                }
+            }
+        } catch (EOFException e) {
+            // Fin del registro
+        } catch (IOException | ClassNotFoundException e) {
+            System.out.println("Error al leer los cambios de las listas: " + e.getMessage());
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package modelo;
+
+/*
+ * HistorialReproduccion.java - Historial acotado de reproducciones recientes.
+ * Buffer circular sobre arreglos primitivos: registrar una escucha no reserva
+ * memoria. Las entradas se vuelcan por lotes a un archivo de solo anexado.
+ */
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Buffer circular de escuchas (id de pista, inicio, milisegundos escuchados).
+ * Si se registran más entradas de las que caben sin volcar, las más antiguas
+ * se pierden y se cuentan en {@link #getPerdidas()}.
+ *
+ * Un volcado tiene dos pasos: {@link #reservarPendientes} copia el lote (en el
+ * hilo que registra) y {@link #confirmarVolcado} lo da por escrito cuando el
+ * escritor terminó; si el escritor no lo aceptó, {@link #liberarReserva} lo
+ * devuelve a pendientes para el siguiente volcado.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class HistorialReproduccion {
+
+    public static final int CAPACIDAD_POR_DEFECTO = 1024;
+    public static final int TAMANO_ENTRADA = 25;  // Bytes de una entrada en el archivo
+
+    private final long[] ids;
+    private final long[] inicios;        // Instante de inicio (ms desde la época)
+    private final long[] escuchados;     // Milisegundos escuchados
+    private final byte[] marcas;         // MARCA_SALTADA, ...
+    private final int mascara;
+
+    private long escritas;               // Entradas registradas desde el inicio
+    private long reservadas;             // Entradas ya entregadas a un volcado (escrito o en curso)
+    private long volcadas;               // Entradas ya escritas en disco
+    private long perdidas;               // Entradas sobrescritas antes de volcarse
+
+    public static final byte MARCA_SALTADA = 1;
+
+    public HistorialReproduccion() {
+        this(CAPACIDAD_POR_DEFECTO);
+    }
+
+    /**
+     * @param capacidad Entradas que caben (se redondea a potencia de dos)
+     */
+    public HistorialReproduccion(int capacidad) {
+        int tamano = Integer.highestOneBit(Math.max(2, capacidad - 1)) << 1;
+        ids = new long[tamano];
+        inicios = new long[tamano];
+        escuchados = new long[tamano];
+        marcas = new byte[tamano];
+        mascara = tamano - 1;
+    }
+
+    /**
+     * Registra una escucha.
+     *
+     * @param idPista     Id de la pista
+     * @param inicioMs    Instante de inicio
+     * @param escuchadoMs Milisegundos escuchados
+     * @param marca       0 o MARCA_SALTADA
+     */
+    public void registrar(long idPista, long inicioMs, long escuchadoMs, byte marca) {
+        int i = (int) (escritas & mascara);
+        ids[i] = idPista;
+        inicios[i] = inicioMs;
+        escuchados[i] = escuchadoMs;
+        marcas[i] = marca;
+        escritas++;
+    }
+
+    /**
+     * Copia las entradas que aún no se entregaron a ningún volcado y las
+     * reserva. Debe llamarse desde el hilo que registra.
+     *
+     * @param out Flujo donde escribir el lote
+     * @return Posición final del lote, o -1 si no había nada que volcar
+     */
+    public synchronized long reservarPendientes(DataOutputStream out) throws IOException {
+        if (reservadas == escritas) return -1;
+        long desde = Math.max(reservadas, escritas - ids.length);
+        perdidas += desde - reservadas;
+        for (long k = desde; k < escritas; k++) {
+            int i = (int) (k & mascara);
+            escribirEntrada(out, ids[i], inicios[i], escuchados[i], marcas[i]);
+        }
+        reservadas = escritas;
+        return escritas;
+    }
+
+    /**
+     * Da por escrito en disco el lote que termina en la posición dada.
+     */
+    public synchronized void confirmarVolcado(long hasta) {
+        volcadas = Math.max(volcadas, hasta);
+    }
+
+    /**
+     * Devuelve a pendientes un lote que no llegó al disco. Si después ya se
+     * reservó otro lote, el no escrito se cuenta como perdido (volver a
+     * copiarlo duplicaría las entradas del siguiente).
+     *
+     * @param desde Posición inicial del lote
+     * @param hasta Posición final del lote
+     */
+    public synchronized void liberarReserva(long desde, long hasta) {
+        if (reservadas == hasta) {
+            reservadas = desde;
+        } else {
+            descartarReserva(desde, hasta);
+        }
+    }
+
+    /**
+     * Da por perdido un lote que no se puede volver a escribir (p. ej. si el
+     * archivo quedó con un trozo suyo que no se pudo quitar).
+     *
+     * @param desde Posición inicial del lote
+     * @param hasta Posición final del lote
+     */
+    public synchronized void descartarReserva(long desde, long hasta) {
+        perdidas += hasta - desde;
+        volcadas = Math.max(volcadas, hasta);
+    }
+
+    /**
+     * Formato de una entrada en el archivo de estadísticas ({@link #TAMANO_ENTRADA} bytes).
+     */
+    static void escribirEntrada(DataOutputStream out, long id, long inicio, long escuchado, byte marca)
+            throws IOException {
+        out.writeLong(id);
+        out.writeLong(inicio);
+        out.writeLong(escuchado);
+        out.writeByte(marca);
+    }
+
+    /**
+     * Copia los ids de las escuchas más recientes, de la más nueva a la más antigua.
+     *
+     * @param destino Arreglo de destino
+     * @return Cantidad copiada
+     */
+    public int copiarRecientes(long[] destino) {
+        int disponibles = (int) Math.min(escritas, ids.length);
+        int n = Math.min(disponibles, destino.length);
+        for (int k = 0; k < n; k++) {
+            destino[k] = ids[(int) ((escritas - 1 - k) & mascara)];
+        }
+        return n;
+    }
+
+    public int getCapacidad() {
+        return ids.length;
+    }
+
+    public long getEscritas() {
+        return escritas;
+    }
+
+    /**
+     * @return Entradas que aún no están en disco (incluidas las de volcados en curso)
+     */
+    public synchronized long getPendientes() {
+        return escritas - volcadas;
+    }
+
+    public synchronized long getPerdidas() {
+        return perdidas;
+    }
+}
@@ -0,0 +1,466 @@
+package modelo;
+
+/*
+ * IndiceBiblioteca.java - Índice de búsqueda de todas las pistas de la biblioteca.
+ * Escucha las altas y bajas de cada lista de reproducción y mantiene al día un
+ * índice de trigramas sobre el nombre (y el artista y el álbum cuando se
+ * conocen), sin recorrer las listas en cada consulta. El vocabulario de esos
+ * textos se guarda además en un trie para tolerar errores de escritura.
+ */
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Índice de pistas por id. Una pista que está en varias listas se indexa una
+ * sola vez y sale del índice cuando la quita la última lista que la tenía.
+ * Los métodos están sincronizados: se puede buscar desde un hilo de fondo
+ * mientras las listas cambian en el de JavaFX.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class IndiceBiblioteca implements ListaReproduccion.OyenteLista {
+
+    /**
+     * Calidad de una coincidencia, de mejor a peor.
+     */
+    public enum Coincidencia {
+        PREFIJO,            // El nombre empieza por la consulta
+        INICIO_PALABRA,     // Alguna palabra empieza por la consulta
+        SUBCADENA,          // La consulta aparece dentro de una palabra
+        APROXIMADA          // Con errores de escritura o la mayoría de trigramas en común
+    }
+
+    /**
+     * Una pista encontrada (una por ruta) y las listas que la contienen.
+     */
+    public static final class Resultado {
+        private final long idPista;
+        private final String nombre;
+        private final String ruta;
+        private final Coincidencia coincidencia;
+        private final List<String> listas = new ArrayList<>();
+
+        private Resultado(long idPista, Entrada entrada, Coincidencia coincidencia) {
+            this.idPista = idPista;
+            this.nombre = entrada.nombre;
+            this.ruta = entrada.nodo.getRutaCancion();
+            this.coincidencia = coincidencia;
+        }
+
+        public long getIdPista() { return idPista; }
+        public String getNombre() { return nombre; }
+        public String getRuta() { return ruta; }
+        public Coincidencia getCoincidencia() { return coincidencia; }
+        public List<String> getListas() { return listas; }
+
+        @Override
+        public String toString() {
+            return nombre + "  (" + String.join(", ", listas) + ")";
+        }
+    }
+
+    /**
+     * Resultado exacto de buscarRefinando, con lo necesario para refinarlo.
+     */
+    public static final class Coincidencias {
+        private final IndiceBiblioteca origen;
+        private final String consulta;    // Normalizada
+        private final int[] documentos;   // Documentos del índice de trigramas
+        private final long version;       // Versión del índice al buscar
+        private final List<Long> ids;
+        private final boolean refinada;
+
+        private Coincidencias(IndiceBiblioteca origen, String consulta, int[] documentos,
+                              long version, List<Long> ids, boolean refinada) {
+            this.origen = origen;
+            this.consulta = consulta;
+            this.documentos = documentos;
+            this.version = version;
+            this.ids = ids;
+            this.refinada = refinada;
+        }
+
+        public List<Long> getIds() { return ids; }
+
+        /** @return true si se obtuvo filtrando el resultado anterior */
+        public boolean isRefinada() { return refinada; }
+    }
+
+    public static final double SIMILITUD_APROXIMADA = 0.6;  // Trigramas compartidos para el nivel aproximado
+    public static final int LONGITUD_MINIMA_TERMINO = 3;    // Palabras más cortas no entran al vocabulario
+
+    /**
+     * Datos de búsqueda de una pista.
+     */
+    private static final class Entrada {
+        private final Nodo nodo;          // Primer nodo visto (nombre y ruta)
+        private final String nombre;
+        private String artista;
+        private String album;
+        private int referencias;          // Apariciones en listas
+
+        private Entrada(Nodo nodo) {
+            this.nodo = nodo;
+            this.nombre = nodo.getNombreCancion();
+        }
+
+        private String texto() {
+            StringBuilder sb = new StringBuilder(nombre);
+            if (artista != null) sb.append('\n').append(artista);
+            if (album != null) sb.append('\n').append(album);
+            return sb.toString();
+        }
+    }
+
+    private final Map<Long, Entrada> entradas = new HashMap<>();
+    private final IndiceTrigramas<Long> trigramas = new IndiceTrigramas<>();
+    private final DiccionarioTerminos terminos = new DiccionarioTerminos(); // Vocabulario de los textos
+    private final ColumnasMetadatos columnas = new ColumnasMetadatos();     // Metadatos para las consultas por campo
+    private long version;                 // Cambia con cada alta, baja o cambio de texto (invalida Coincidencias)
+
+    /* ***********************
+     * MANTENIMIENTO
+     * ***********************/
+
+    /**
+     * Indexa todas las canciones de una lista y se suscribe a sus cambios.
+     *
+     * @param lista Lista de reproducción
+     */
+    public synchronized void registrarLista(ListaReproduccion lista) {
+        for (Nodo nodo = lista.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+            cancionAgregada(nodo);
+        }
+        lista.setOyente(this);
+    }
+
+    /**
+     * Indexa la lista de favoritos: además de las altas y bajas, mantiene la
+     * columna de favoritas al día con cada cambio de la lista.
+     *
+     * @param favoritos Lista de favoritos
+     */
+    public synchronized void registrarFavoritos(ListaReproduccion favoritos) {
+        for (Nodo nodo = favoritos.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+            cancionAgregada(nodo);
+            columnas.setFavorita(nodo.getIdPista(), true);
+        }
+        favoritos.setOyente(new ListaReproduccion.OyenteLista() {
+            @Override
+            public void cancionAgregada(Nodo nodo) {
+                synchronized (IndiceBiblioteca.this) {
+                    IndiceBiblioteca.this.cancionAgregada(nodo);
+                    columnas.setFavorita(nodo.getIdPista(), true);
+                }
+            }
+
+            @Override
+            public void cancionEliminada(Nodo nodo) {
+                synchronized (IndiceBiblioteca.this) {
+                    IndiceBiblioteca.this.cancionEliminada(nodo);
+                    columnas.setFavorita(nodo.getIdPista(), false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Quita del índice las canciones de una lista que se elimina.
+     *
+     * @param lista Lista de reproducción
+     */
+    public synchronized void olvidarLista(ListaReproduccion lista) {
+        lista.setOyente(null);
+        for (Nodo nodo = lista.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+            cancionEliminada(nodo);
+        }
+    }
+
+    @Override
+    public synchronized void cancionAgregada(Nodo nodo) {
+        long id = nodo.getIdPista();
+        Entrada entrada = entradas.get(id);
+        if (entrada == null) {
+            entrada = new Entrada(nodo);
+            entradas.put(id, entrada);
+        }
+        if (entrada.referencias++ == 0) {
+            version++;
+            trigramas.agregar(id, entrada.texto());
+            contarTerminos(entrada.texto(), 1);
+            columnas.agregar(id, nodo.getRutaCancion());
+        }
+    }
+
+    @Override
+    public synchronized void cancionEliminada(Nodo nodo) {
+        long id = nodo.getIdPista();
+        Entrada entrada = entradas.get(id);
+        if (entrada != null && --entrada.referencias <= 0) {
+            version++;
+            entradas.remove(id);
+            trigramas.quitar(id);
+            contarTerminos(entrada.texto(), -1);
+            columnas.quitar(id);
+        }
+    }
+
+    /**
+     * Añade el artista y el álbum de una pista al texto buscable.
+     *
+     * @param idPista Id de la pista
+     * @param artista Artista o null
+     * @param album   Álbum o null
+     */
+    public synchronized void setMetadatos(long idPista, String artista, String album) {
+        Entrada entrada = entradas.get(idPista);
+        if (entrada == null) return;
+        if (Objects.equals(artista, entrada.artista) && Objects.equals(album, entrada.album)) return;
+        version++;
+        contarTerminos(entrada.texto(), -1);
+        entrada.artista = artista;
+        entrada.album = album;
+        trigramas.agregar(idPista, entrada.texto());
+        contarTerminos(entrada.texto(), 1);
+    }
+
+    /**
+     * Guarda los metadatos leídos de una pista: el artista y el álbum pasan a
+     * ser buscables y todo queda en las columnas de las consultas por campo.
+     *
+     * @param idPista   Id de la pista
+     * @param metadatos Metadatos leídos del archivo
+     */
+    public synchronized void setMetadatos(long idPista, ListaReproduccion.Metadatos metadatos) {
+        setMetadatos(idPista, metadatos.getArtista(), metadatos.getAlbum());
+        columnas.setMetadatos(idPista, metadatos.getArtista(), metadatos.getGenero(), metadatos.getSegundos());
+    }
+
+    /**
+     * Suma o resta un uso a cada término del texto en el vocabulario.
+     */
+    private void contarTerminos(String texto, int delta) {
+        for (String termino : terminosDe(IndiceTrigramas.normalizar(texto))) {
+            if (termino.length() < LONGITUD_MINIMA_TERMINO) continue;
+            if (delta > 0) {
+                terminos.agregar(termino);
+            } else {
+                terminos.quitar(termino);
+            }
+        }
+    }
+
+    /**
+     * Palabras de un texto normalizado (separadas por lo que no es letra ni dígito).
+     */
+    private static List<String> terminosDe(String texto) {
+        List<String> palabras = new ArrayList<>();
+        int inicio = -1;
+        for (int i = 0; i <= texto.length(); i++) {
+            boolean letra = i < texto.length() && Character.isLetterOrDigit(texto.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                palabras.add(texto.substring(inicio, i));
+                inicio = -1;
+            }
+        }
+        return palabras;
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    /**
+     * @param consulta Texto buscado (subcadena, sin distinguir mayúsculas ni tildes)
+     * @return Ids de las pistas que coinciden
+     */
+    public synchronized List<Long> buscar(String consulta) {
+        return trigramas.buscar(consulta);
+    }
+
+    /**
+     * Busca como buscar, pero si la consulta contiene la de un resultado
+     * anterior (p. ej. "que" -> "quee") filtra ese resultado en lugar de
+     * consultar el índice completo: todo texto que contiene la nueva contiene
+     * la anterior. Se refina solo si el resultado anterior es más pequeño que
+     * la lista de trigramas más corta de la nueva consulta; si la biblioteca
+     * cambió desde entonces se busca de cero.
+     *
+     * @param consulta Texto buscado
+     * @param anterior Resultado anterior o null
+     * @return Resultado reutilizable en la siguiente consulta
+     */
+    public synchronized Coincidencias buscarRefinando(String consulta, Coincidencias anterior) {
+        String q = IndiceTrigramas.normalizar(consulta);
+        boolean refinable = anterior != null && anterior.origen == this && anterior.version == version
+                && !anterior.consulta.isEmpty() && q.contains(anterior.consulta)
+                && anterior.documentos.length < trigramas.estimarCandidatos(q);
+        int[] documentos = refinable
+                ? trigramas.refinarDocumentos(anterior.documentos, q)
+                : trigramas.buscarDocumentos(q);
+        return new Coincidencias(this, q, documentos, version, trigramas.elementosDe(documentos), refinable);
+    }
+
+    /**
+     * Búsqueda clasificada: primero las pistas cuyo nombre empieza por la
+     * consulta, luego las que la tienen al inicio de una palabra, luego como
+     * subcadena y, si faltan resultados, las aproximadas (primero por distancia
+     * de edición y luego por trigramas compartidos). Dentro de cada nivel
+     * exacto los nombres más cortos van primero.
+     *
+     * @param consulta Texto buscado
+     * @param limite   Cantidad máxima de resultados
+     * @return Resultados sin las listas (las completa GestorDeListas)
+     */
+    public synchronized List<Resultado> buscarClasificado(String consulta, int limite) {
+        String q = IndiceTrigramas.normalizar(consulta);
+        List<Resultado> resultados = new ArrayList<>();
+        if (q.isEmpty() || limite <= 0) return resultados;
+
+        List<List<Long>> niveles = new ArrayList<>();
+        for (int i = 0; i < Coincidencia.values().length; i++) niveles.add(new ArrayList<>());
+        for (Long id : trigramas.buscar(q)) {
+            niveles.get(clasificar(trigramas.getTexto(id), q).ordinal()).add(id);
+        }
+
+        Comparator<Long> porNombre = Comparator
+                .comparingInt((Long id) -> trigramas.getTexto(id).length())
+                .thenComparing(id -> trigramas.getTexto(id));
+        for (Coincidencia nivel : Coincidencia.values()) {
+            if (nivel == Coincidencia.APROXIMADA) break;
+            List<Long> ids = niveles.get(nivel.ordinal());
+            Collections.sort(ids, porNombre);
+            for (Long id : ids) {
+                if (resultados.size() >= limite) return resultados;
+                resultados.add(new Resultado(id, entradas.get(id), nivel));
+            }
+        }
+
+        if (resultados.size() < limite) {
+            Set<Long> vistos = new HashSet<>();
+            for (Resultado r : resultados) vistos.add(r.idPista);
+            List<Long> aproximados = buscarAproximado(q, limite);
+            aproximados.addAll(trigramas.buscarParecidos(q, SIMILITUD_APROXIMADA, limite));
+            for (Long id : aproximados) {
+                if (resultados.size() >= limite) break;
+                if (vistos.add(id)) {
+                    resultados.add(new Resultado(id, entradas.get(id), Coincidencia.APROXIMADA));
+                }
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Búsqueda tolerante a errores de escritura. Cada palabra de la consulta
+     * (de al menos tres letras) se busca en el vocabulario con distancia de
+     * Damerau-Levenshtein 1 (hasta cuatro letras) o 2 (más largas); una pista
+     * coincide si contiene alguna variante de cada palabra.
+     *
+     * @param consulta Texto buscado
+     * @param limite   Cantidad máxima de resultados
+     * @return Ids de pista, de menor a mayor distancia total
+     */
+    public synchronized List<Long> buscarAproximado(String consulta, int limite) {
+        List<Long> ids = new ArrayList<>();
+        Map<Long, Integer> costes = null;
+        for (String palabra : terminosDe(IndiceTrigramas.normalizar(consulta))) {
+            if (palabra.length() < LONGITUD_MINIMA_TERMINO) continue;
+
+            Map<String, Integer> variantes = new HashMap<>();
+            int k = (palabra.length() <= 4) ? 1 : 2;
+            terminos.buscar(palabra, k, variantes::put);
+
+            Map<Long, Integer> dePalabra = new HashMap<>();
+            for (Map.Entry<String, Integer> variante : variantes.entrySet()) {
+                for (Long id : trigramas.buscar(variante.getKey())) {
+                    dePalabra.merge(id, variante.getValue(), Math::min);
+                }
+            }
+            if (costes == null) {
+                costes = dePalabra;
+            } else {
+                Map<Long, Integer> ambas = new HashMap<>();
+                for (Map.Entry<Long, Integer> e : dePalabra.entrySet()) {
+                    Integer previo = costes.get(e.getKey());
+                    if (previo != null) ambas.put(e.getKey(), previo + e.getValue());
+                }
+                costes = ambas;
+            }
+            if (costes.isEmpty()) return ids;
+        }
+        if (costes == null) return ids;
+
+        final Map<Long, Integer> total = costes;
+        ids.addAll(total.keySet());
+        ids.sort(Comparator.comparingInt((Long id) -> total.get(id))
+                .thenComparingInt(id -> trigramas.getTexto(id).length()));
+        return (ids.size() > limite) ? new ArrayList<>(ids.subList(0, limite)) : ids;
+    }
+
+    /**
+     * Búsqueda por campos (artista:, dur>, ext:, fav:...) o por nombre si el
+     * texto no usa ningún campo.
+     *
+     * @param consulta Texto de la consulta
+     * @return Ids de las pistas que cumplen la consulta
+     * @throws IllegalArgumentException si la consulta no es válida
+     */
+    public synchronized List<Long> buscarPorCampos(String consulta) {
+        return ConsultaMetadatos.compilar(consulta).ejecutar(this);
+    }
+
+    public ColumnasMetadatos getColumnas() {
+        return columnas;
+    }
+
+    /**
+     * @return Términos distintos en uso (vocabulario de la búsqueda aproximada)
+     */
+    public synchronized int getTerminos() {
+        return terminos.getTamano();
+    }
+
+    /**
+     * Nivel de una coincidencia exacta (el texto ya contiene la consulta).
+     */
+    private static Coincidencia clasificar(String texto, String q) {
+        if (texto.startsWith(q)) return Coincidencia.PREFIJO;
+        for (int i = texto.indexOf(q); i >= 0; i = texto.indexOf(q, i + 1)) {
+            if (i == 0 || !Character.isLetterOrDigit(texto.charAt(i - 1))) {
+                return Coincidencia.INICIO_PALABRA;
+            }
+        }
+        return Coincidencia.SUBCADENA;
+    }
+
+    /**
+     * @return Nombre indexado de la pista o null si no está en la biblioteca
+     */
+    public synchronized String getNombre(long idPista) {
+        Entrada entrada = entradas.get(idPista);
+        return (entrada != null) ? entrada.nombre : null;
+    }
+
+    public synchronized boolean contiene(long idPista) {
+        return entradas.containsKey(idPista);
+    }
+
+    /**
+     * @return Pistas distintas de la biblioteca
+     */
+    public synchronized int getTamano() {
+        return entradas.size();
+    }
+}
@@ -0,0 +1,251 @@
+package modelo;
+
+/*
+ * IndiceBusquedaMP3.java - Índice de búsqueda de un archivo MP3.
+ * Guarda el desplazamiento en bytes de una trama cada N milisegundos para
+ * que un salto se resuelva con una búsqueda binaria y empiece a decodificar
+ * a menos de una trama de la posición pedida, incluso en archivos VBR.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Índice de tramas de un MP3 construido leyendo solo las cabeceras.
+ *
+ * Cada entrada relaciona el número de trama con su posición en el archivo.
+ * Como todas las tramas de un archivo tienen la misma cantidad de muestras,
+ * el tiempo de una trama es exactamente {@code trama * msPorTrama}.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class IndiceBusquedaMP3 implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int INTERVALO_POR_DEFECTO_MS = 500;   // Separación entre entradas
+
+    // Tablas de tasas de bits (kbps) según versión y capa
+    private static final int[][] TASAS_MPEG1 = {
+        {0, 32, 64, 96, 128, 160, 192, 224, 256, 288, 320, 352, 384, 416, 448},   // Capa I
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320, 384},      // Capa II
+        {0, 32, 40, 48, 56, 64, 80, 96, 112, 128, 160, 192, 224, 256, 320}        // Capa III
+    };
+    private static final int[][] TASAS_MPEG2 = {
+        {0, 32, 48, 56, 64, 80, 96, 112, 128, 144, 160, 176, 192, 224, 256},      // Capa I
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160},           // Capa II
+        {0, 8, 16, 24, 32, 40, 48, 56, 64, 80, 96, 112, 128, 144, 160}            // Capa III
+    };
+    private static final int[] FRECUENCIAS_MPEG1 = {44100, 48000, 32000};
+
+    // Bits que deben coincidir entre tramas de un mismo archivo (sincronía, versión, capa, frecuencia)
+    private static final int MASCARA_REFERENCIA = 0xFFFE0C00;
+
+    private final int[] tramas;              // Número de trama de cada entrada
+    private final long[] desplazamientos;    // Byte donde empieza esa trama
+    private final double msPorTrama;         // Duración de una trama
+    private final int totalTramas;           // Tramas del archivo
+
+    private IndiceBusquedaMP3(int[] tramas, long[] desplazamientos, double msPorTrama, int totalTramas) {
+        this.tramas = tramas;
+        this.desplazamientos = desplazamientos;
+        this.msPorTrama = msPorTrama;
+        this.totalTramas = totalTramas;
+    }
+
+    /* ***********************
+     * CONSTRUCCIÓN
+     * ***********************/
+
+    /**
+     * Recorre las cabeceras del archivo (sin decodificar audio) y registra una
+     * entrada cada {@code intervaloMs} milisegundos.
+     *
+     * @param ruta        Ruta del archivo MP3
+     * @param intervaloMs Separación entre entradas del índice
+     * @return Índice construido, o null si el archivo no contiene tramas MPEG
+     */
+    public static IndiceBusquedaMP3 construir(String ruta, int intervaloMs) throws IOException {
+        int capacidad = 256;
+        int[] tramas = new int[capacidad];
+        long[] desplazamientos = new long[capacidad];
+        int cantidad = 0;
+
+        int referencia = 0;
+        double msPorTrama = 0;
+        int paso = 1;
+        int numeroTrama = 0;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(ruta), 1 << 16)) {
+            long posicion = saltarID3v2(in);
+            int cabecera = 0;
+            int leidos = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                cabecera = (cabecera << 8) | b;
+                posicion++;
+                if (++leidos < 4) continue;
+
+                int longitud = longitudTrama(cabecera);
+                if (longitud <= 0 || (referencia != 0 && (cabecera & MASCARA_REFERENCIA) != referencia)) {
+                    continue;   // Sin sincronía: se desplaza un byte y se vuelve a intentar
+                }
+                if (referencia == 0) {
+                    referencia = cabecera & MASCARA_REFERENCIA;
+                    msPorTrama = muestrasPorTrama(cabecera) * 1000.0 / frecuencia(cabecera);
+                    paso = Math.max(1, (int) Math.round(intervaloMs / msPorTrama));
+                }
+
+                if (numeroTrama % paso == 0) {
+                    if (cantidad == capacidad) {
+                        capacidad *= 2;
+                        tramas = Arrays.copyOf(tramas, capacidad);
+                        desplazamientos = Arrays.copyOf(desplazamientos, capacidad);
+                    }
+                    tramas[cantidad] = numeroTrama;
+                    desplazamientos[cantidad] = posicion - 4;
+                    cantidad++;
+                }
+                numeroTrama++;
+
+                try {
+                    saltarCompleto(in, longitud - 4);
+                } catch (EOFException e) {
+                    break;      // Última trama truncada
+                }
+                posicion += longitud - 4;
+                cabecera = 0;
+                leidos = 0;
+            }
+        }
+
+        if (cantidad == 0) return null;
+        return new IndiceBusquedaMP3(Arrays.copyOf(tramas, cantidad),
+                Arrays.copyOf(desplazamientos, cantidad), msPorTrama, numeroTrama);
+    }
+
+    /**
+     * Salta la etiqueta ID3v2 del inicio, si existe.
+     *
+     * @return Bytes saltados
+     */
+    private static long saltarID3v2(InputStream in) throws IOException {
+        byte[] c = new byte[10];
+        in.mark(10);
+        int n = in.read(c);
+        if (n == 10 && c[0] == 'I' && c[1] == 'D' && c[2] == '3') {
+            long tamano = ((c[6] & 0x7F) << 21) | ((c[7] & 0x7F) << 14) | ((c[8] & 0x7F) << 7) | (c[9] & 0x7F);
+            if ((c[5] & 0x10) != 0) tamano += 10;   // Pie de etiqueta
+            saltarCompleto(in, tamano);
+            return 10 + tamano;
+        }
+        in.reset();
+        return 0;
+    }
+
+    private static void saltarCompleto(InputStream in, long bytes) throws IOException {
+        while (bytes > 0) {
+            long saltados = in.skip(bytes);
+            if (saltados <= 0) {
+                if (in.read() == -1) throw new EOFException();
+                saltados = 1;
+            }
+            bytes -= saltados;
+        }
+    }
+
+    /* ***********************
+     * CABECERAS MPEG
+     * ***********************/
+
+    /**
+     * Longitud en bytes de la trama cuya cabecera se indica.
+     *
+     * @return Longitud, o -1 si la cabecera no es válida
+     */
+    static int longitudTrama(int h) {
+        if ((h >>> 21 & 0x7FF) != 0x7FF) return -1;
+        int version = h >>> 19 & 3;          // 0 = 2.5, 2 = MPEG2, 3 = MPEG1
+        int capa = h >>> 17 & 3;             // 1 = III, 2 = II, 3 = I
+        int indiceTasa = h >>> 12 & 0xF;
+        int indiceFrecuencia = h >>> 10 & 3;
+        if (version == 1 || capa == 0 || indiceTasa == 0 || indiceTasa == 15 || indiceFrecuencia == 3) {
+            return -1;
+        }
+        int relleno = h >>> 9 & 1;
+        int tasa = ((version == 3) ? TASAS_MPEG1 : TASAS_MPEG2)[3 - capa][indiceTasa] * 1000;
+        int frecuencia = frecuencia(h);
+
+        if (capa == 3) {
+            return (12 * tasa / frecuencia + relleno) * 4;
+        }
+        int coeficiente = (capa == 1 && version != 3) ? 72 : 144;
+        return coeficiente * tasa / frecuencia + relleno;
+    }
+
+    private static int frecuencia(int h) {
+        int version = h >>> 19 & 3;
+        int base = FRECUENCIAS_MPEG1[h >>> 10 & 3];
+        return (version == 3) ? base : (version == 2) ? base / 2 : base / 4;
+    }
+
+    private static int muestrasPorTrama(int h) {
+        int version = h >>> 19 & 3;
+        int capa = h >>> 17 & 3;
+        if (capa == 3) return 384;
+        if (capa == 2) return 1152;
+        return (version == 3) ? 1152 : 576;
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    /**
+     * Entrada más cercana que no supera la posición pedida (búsqueda binaria).
+     *
+     * @param posicionMs Posición buscada en milisegundos
+     * @return Índice de la entrada
+     */
+    public int buscar(double posicionMs) {
+        int objetivo = (int) Math.min(Integer.MAX_VALUE, Math.max(0, posicionMs / msPorTrama));
+        int i = Arrays.binarySearch(tramas, objetivo);
+        return (i >= 0) ? i : Math.max(0, -i - 2);
+    }
+
+    public long getDesplazamiento(int entrada) {
+        return desplazamientos[entrada];
+    }
+
+    /**
+     * Tiempo exacto en que empieza la trama de una entrada.
+     */
+    public double getTiempoMs(int entrada) {
+        return tramas[entrada] * msPorTrama;
+    }
+
+    public int getCantidadEntradas() {
+        return tramas.length;
+    }
+
+    public double getMsPorTrama() {
+        return msPorTrama;
+    }
+
+    public int getTotalTramas() {
+        return totalTramas;
+    }
+
+    /**
+     * Duración exacta del archivo (también en VBR sin cabecera Xing).
+     */
+    public long getDuracionMs() {
+        return (long) (totalTramas * msPorTrama);
+    }
+}
@@ -0,0 +1,481 @@
+package modelo;
+
+/*
+ * IndiceTrigramas.java - Índice invertido de trigramas para búsqueda por subcadena.
+ * Cada texto se normaliza (minúsculas, sin tildes) y se descompone en trigramas;
+ * cada trigrama guarda la lista ordenada de documentos que lo contienen. Una
+ * consulta intersecta las listas de sus trigramas (de la más corta a la más
+ * larga) y solo verifica con contains() los candidatos que sobreviven.
+ */
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Índice de trigramas con altas y bajas incrementales.
+ *
+ * Estructura:
+ * - Cada elemento recibe un número de documento creciente, así que las listas
+ *   de documentos se mantienen ordenadas solo con añadir al final.
+ * - Las bajas marcan el documento como muerto; si el mismo elemento vuelve con
+ *   el mismo texto (p. ej. al reordenar una lista) se revive sin reindexar.
+ * - Cuando hay más muertos que vivos el índice se compacta.
+ * - La tabla trigrama -> documentos es de direccionamiento abierto sobre long
+ *   (sin objetos por trigrama).
+ *
+ * @param <T> Tipo de los elementos indexados
+ * @author Notasoft
+ * @version 1.0
+ */
+public class IndiceTrigramas<T> {
+
+    private static final int COMPACTAR_DESDE = 1024;   // Muertos mínimos antes de compactar
+
+    // Documentos
+    private Object[] elementos = new Object[64];
+    private String[] textos = new String[64];
+    private boolean[] vivos = new boolean[64];
+    private int documentos;
+    private int muertos;
+    private final Map<T, Integer> documentoPorElemento = new HashMap<>();
+
+    // Tabla trigrama -> lista ordenada de documentos
+    private long[] claves = new long[1 << 10];          // 0 = ranura libre
+    private int[][] listas = new int[1 << 10][];
+    private int[] longitudes = new int[1 << 10];
+    private int ocupadas;
+
+    /* ***********************
+     * ALTAS Y BAJAS
+     * ***********************/
+
+    /**
+     * Indexa un elemento. Si ya estaba con otro texto, se reindexa.
+     *
+     * @param elemento Elemento (clave de igualdad)
+     * @param texto    Texto por el que se buscará
+     */
+    public void agregar(T elemento, String texto) {
+        String normalizado = normalizar(texto);
+        Integer anterior = documentoPorElemento.get(elemento);
+        if (anterior != null) {
+            int d = anterior;
+            if (textos[d].equals(normalizado)) {
+                if (!vivos[d]) {
+                    vivos[d] = true;
+                    muertos--;
+                }
+                return;
+            }
+            if (vivos[d]) matar(d);
+        }
+        indexar(elemento, normalizado);
+    }
+
+    /**
+     * Quita un elemento del índice.
+     *
+     * @param elemento Elemento a quitar
+     */
+    public void quitar(T elemento) {
+        Integer d = documentoPorElemento.get(elemento);
+        if (d != null && vivos[d]) {
+            matar(d);
+            if (muertos >= COMPACTAR_DESDE && muertos > documentos - muertos) {
+                compactar();
+            }
+        }
+    }
+
+    private void matar(int d) {
+        vivos[d] = false;
+        muertos++;
+    }
+
+    private void indexar(T elemento, String normalizado) {
+        if (documentos == elementos.length) {
+            int n = documentos * 2;
+            elementos = Arrays.copyOf(elementos, n);
+            textos = Arrays.copyOf(textos, n);
+            vivos = Arrays.copyOf(vivos, n);
+        }
+        int d = documentos++;
+        elementos[d] = elemento;
+        textos[d] = normalizado;
+        vivos[d] = true;
+        documentoPorElemento.put(elemento, d);
+
+        for (int i = 0; i + 3 <= normalizado.length(); i++) {
+            int r = ranuraPara(clave(normalizado, i));
+            int n = longitudes[r];
+            int[] lista = listas[r];
+            if (n > 0 && lista[n - 1] == d) continue;      // Trigrama repetido en el mismo texto
+            if (lista == null) {
+                lista = listas[r] = new int[2];
+            } else if (n == lista.length) {
+                lista = listas[r] = Arrays.copyOf(lista, n + (n >> 1) + 1);
+            }
+            lista[n] = d;
+            longitudes[r] = n + 1;
+        }
+    }
+
+    /**
+     * Rehace el índice solo con los documentos vivos.
+     */
+    @SuppressWarnings("unchecked")
+    private void compactar() {
+        Object[] viejosElementos = elementos;
+        String[] viejosTextos = textos;
+        boolean[] viejosVivos = vivos;
+        int viejos = documentos;
+
+        int capacidad = Math.max(64, Integer.highestOneBit(Math.max(1, viejos - muertos)) << 1);
+        elementos = new Object[capacidad];
+        textos = new String[capacidad];
+        vivos = new boolean[capacidad];
+        documentos = 0;
+        muertos = 0;
+        documentoPorElemento.clear();
+        Arrays.fill(claves, 0L);
+        Arrays.fill(listas, null);
+        Arrays.fill(longitudes, 0);
+        ocupadas = 0;
+
+        for (int d = 0; d < viejos; d++) {
+            if (viejosVivos[d]) {
+                indexar((T) viejosElementos[d], viejosTextos[d]);
+            }
+        }
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    /**
+     * Busca los elementos cuyo texto contiene la consulta (sin distinguir
+     * mayúsculas ni tildes). Con menos de tres caracteres no hay trigramas
+     * y se recorren los textos.
+     *
+     * @param consulta Texto buscado
+     * @return Elementos encontrados, en orden de alta
+     */
+    public List<T> buscar(String consulta) {
+        return elementosDe(buscarDocumentos(consulta));
+    }
+
+    /**
+     * Como buscar, pero devuelve los números de documento (en orden
+     * creciente) para poder refinar el resultado después.
+     *
+     * @param consulta Texto buscado
+     * @return Documentos vivos cuyo texto contiene la consulta
+     */
+    public int[] buscarDocumentos(String consulta) {
+        String q = normalizar(consulta);
+        if (q.isEmpty()) return new int[0];
+
+        if (q.length() < 3) {
+            int[] resultado = new int[Math.min(documentos, 64)];
+            int n = 0;
+            for (int d = 0; d < documentos; d++) {
+                if (vivos[d] && textos[d].contains(q)) {
+                    if (n == resultado.length) resultado = Arrays.copyOf(resultado, n * 2);
+                    resultado[n++] = d;
+                }
+            }
+            return Arrays.copyOf(resultado, n);
+        }
+
+        // Ranuras distintas de los trigramas de la consulta; si falta alguno no hay resultados
+        int[] ranuras = new int[q.length() - 2];
+        int m = 0;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            int r = ranura(clave(q, i));
+            if (r < 0) return new int[0];
+            boolean repetida = false;
+            for (int j = 0; j < m && !repetida; j++) repetida = ranuras[j] == r;
+            if (!repetida) ranuras[m++] = r;
+        }
+
+        // De la lista más corta a la más larga: los candidatos solo pueden disminuir
+        for (int i = 1; i < m; i++) {
+            int r = ranuras[i];
+            int j = i - 1;
+            while (j >= 0 && longitudes[ranuras[j]] > longitudes[r]) {
+                ranuras[j + 1] = ranuras[j];
+                j--;
+            }
+            ranuras[j + 1] = r;
+        }
+
+        int[] candidatos = Arrays.copyOf(listas[ranuras[0]], longitudes[ranuras[0]]);
+        int n = candidatos.length;
+        for (int i = 1; i < m && n > 0; i++) {
+            n = intersecar(candidatos, n, listas[ranuras[i]], longitudes[ranuras[i]]);
+        }
+
+        // Los trigramas no garantizan que aparezcan contiguos: se verifica cada candidato
+        int escritos = 0;
+        for (int i = 0; i < n; i++) {
+            int d = candidatos[i];
+            if (vivos[d] && (m == 1 && q.length() == 3 || textos[d].contains(q))) {
+                candidatos[escritos++] = d;
+            }
+        }
+        return Arrays.copyOf(candidatos, escritos);
+    }
+
+    /**
+     * Filtra un resultado anterior de buscarDocumentos con una consulta que
+     * contiene la anterior: solo se revisan esos documentos. Válido mientras
+     * el índice no cambie (una compactación renumera los documentos).
+     *
+     * @param anteriores Documentos de la búsqueda anterior
+     * @param consulta   Nueva consulta
+     * @return Documentos que también contienen la nueva consulta
+     */
+    public int[] refinarDocumentos(int[] anteriores, String consulta) {
+        String q = normalizar(consulta);
+        int[] resultado = new int[anteriores.length];
+        int n = 0;
+        for (int d : anteriores) {
+            if (d < documentos && vivos[d] && textos[d].contains(q)) resultado[n++] = d;
+        }
+        return Arrays.copyOf(resultado, n);
+    }
+
+    /**
+     * Candidatos que revisaría buscarDocumentos: la lista más corta de los
+     * trigramas de la consulta (0 si alguno no existe) o todos los documentos
+     * si la consulta es demasiado corta. Permite elegir entre buscar y refinar.
+     */
+    public int estimarCandidatos(String consulta) {
+        String q = normalizar(consulta);
+        if (q.length() < 3) return documentos;
+        int minimo = Integer.MAX_VALUE;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            int r = ranura(clave(q, i));
+            if (r < 0) return 0;
+            minimo = Math.min(minimo, longitudes[r]);
+        }
+        return minimo;
+    }
+
+    /**
+     * @return Elementos de los documentos dados, en el mismo orden
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> elementosDe(int[] docs) {
+        List<T> resultado = new ArrayList<>(docs.length);
+        for (int d : docs) resultado.add((T) elementos[d]);
+        return resultado;
+    }
+
+    /**
+     * Busca elementos parecidos a la consulta aunque no la contengan: los que
+     * comparten al menos una fracción de sus trigramas. Sirve de último nivel
+     * cuando la búsqueda exacta da pocos resultados.
+     *
+     * @param consulta Texto buscado (al menos cuatro caracteres)
+     * @param minimo   Fracción mínima de trigramas compartidos (0..1]
+     * @param limite   Cantidad máxima de resultados
+     * @return Elementos de más a menos parecidos
+     */
+    @SuppressWarnings("unchecked")
+    public List<T> buscarParecidos(String consulta, double minimo, int limite) {
+        String q = normalizar(consulta);
+        List<T> resultado = new ArrayList<>();
+        if (q.length() < 4 || limite <= 0) return resultado;
+
+        // Trigramas distintos de la consulta (también los que no están indexados)
+        int total = 0;
+        int[] ranuras = new int[q.length() - 2];
+        int m = 0;
+        for (int i = 0; i + 3 <= q.length(); i++) {
+            long c = clave(q, i);
+            boolean repetida = false;
+            for (int j = 0; j < i && !repetida; j++) repetida = clave(q, j) == c;
+            if (repetida) continue;
+            total++;
+            int r = ranura(c);
+            if (r >= 0) ranuras[m++] = r;
+        }
+        int necesarios = Math.max(1, (int) Math.ceil(total * minimo));
+        if (m < necesarios) return resultado;
+
+        // Cuenta de trigramas compartidos por documento
+        int[] cuentas = new int[documentos];
+        int[] tocados = new int[Math.min(documentos, 1 << 12)];
+        int nt = 0;
+        for (int k = 0; k < m; k++) {
+            int[] lista = listas[ranuras[k]];
+            for (int i = 0, n = longitudes[ranuras[k]]; i < n; i++) {
+                int d = lista[i];
+                if (cuentas[d]++ == 0) {
+                    if (nt == tocados.length) tocados = Arrays.copyOf(tocados, nt * 2);
+                    tocados[nt++] = d;
+                }
+            }
+        }
+
+        List<Integer> elegidos = new ArrayList<>();
+        for (int i = 0; i < nt; i++) {
+            int d = tocados[i];
+            if (vivos[d] && cuentas[d] >= necesarios) elegidos.add(d);
+        }
+        elegidos.sort((a, b) -> {
+            int c = Integer.compare(cuentas[b], cuentas[a]);
+            return (c != 0) ? c : Integer.compare(textos[a].length(), textos[b].length());
+        });
+        for (int i = 0; i < elegidos.size() && i < limite; i++) {
+            resultado.add((T) elementos[elegidos.get(i)]);
+        }
+        return resultado;
+    }
+
+    /**
+     * Deja en a[0, n) solo los documentos que también están en b. Como b suele
+     * ser mucho más larga, se avanza por ella con búsqueda exponencial.
+     *
+     * @return Nueva cantidad de candidatos
+     */
+    private static int intersecar(int[] a, int n, int[] b, int nb) {
+        int escritos = 0;
+        int j = 0;
+        for (int i = 0; i < n && j < nb; i++) {
+            int buscado = a[i];
+            if (b[j] < buscado) {
+                int paso = 1;
+                int hasta = j + paso;
+                while (hasta < nb && b[hasta] < buscado) {
+                    j = hasta;
+                    paso <<= 1;
+                    hasta = j + paso;
+                }
+                int pos = Arrays.binarySearch(b, j + 1, Math.min(hasta + 1, nb), buscado);
+                j = (pos >= 0) ? pos : -pos - 1;
+            }
+            if (j < nb && b[j] == buscado) {
+                a[escritos++] = buscado;
+                j++;
+            }
+        }
+        return escritos;
+    }
+
+    /**
+     * @return Elementos vivos en el índice
+     */
+    public int getTamano() {
+        return documentos - muertos;
+    }
+
+    /**
+     * @return Trigramas distintos indexados
+     */
+    public int getTrigramas() {
+        return ocupadas;
+    }
+
+    public boolean contiene(T elemento) {
+        Integer d = documentoPorElemento.get(elemento);
+        return d != null && vivos[d];
+    }
+
+    /**
+     * @return Texto normalizado con el que se indexó el elemento, o null
+     */
+    public String getTexto(T elemento) {
+        Integer d = documentoPorElemento.get(elemento);
+        return (d != null && vivos[d]) ? textos[d] : null;
+    }
+
+    /* ***********************
+     * NORMALIZACIÓN Y TABLA
+     * ***********************/
+
+    /**
+     * Minúsculas y sin marcas diacríticas ("Canción" -> "cancion").
+     */
+    public static String normalizar(String texto) {
+        if (texto == null) return "";
+        String t = texto.trim();
+        boolean ascii = true;
+        for (int i = 0; i < t.length() && ascii; i++) ascii = t.charAt(i) < 128;
+        if (ascii) return t.toLowerCase(Locale.ROOT);
+
+        String descompuesto = Normalizer.normalize(t, Normalizer.Form.NFD);
+        char[] sin = new char[descompuesto.length()];
+        int n = 0;
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sin[n++] = Character.toLowerCase(c);
+            }
+        }
+        return new String(sin, 0, n);
+    }
+
+    /**
+     * Tres caracteres empaquetados; el bit 48 garantiza que la clave no sea 0.
+     */
+    private static long clave(String s, int i) {
+        return (1L << 48) | ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    private int indiceInicial(long clave) {
+        long h = clave * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (claves.length - 1);
+    }
+
+    /**
+     * @return Ranura del trigrama o -1 si no está indexado
+     */
+    private int ranura(long clave) {
+        int mascara = claves.length - 1;
+        for (int i = indiceInicial(clave); ; i = (i + 1) & mascara) {
+            if (claves[i] == clave) return i;
+            if (claves[i] == 0L) return -1;
+        }
+    }
+
+    private int ranuraPara(long clave) {
+        if ((ocupadas + 1) * 2 > claves.length) {
+            agrandarTabla();
+        }
+        int mascara = claves.length - 1;
+        for (int i = indiceInicial(clave); ; i = (i + 1) & mascara) {
+            if (claves[i] == clave) return i;
+            if (claves[i] == 0L) {
+                claves[i] = clave;
+                ocupadas++;
+                return i;
+            }
+        }
+    }
+
+    private void agrandarTabla() {
+        long[] viejasClaves = claves;
+        int[][] viejasListas = listas;
+        int[] viejasLongitudes = longitudes;
+        claves = new long[viejasClaves.length * 2];
+        listas = new int[claves.length][];
+        longitudes = new int[claves.length];
+        int mascara = claves.length - 1;
+        for (int k = 0; k < viejasClaves.length; k++) {
+            if (viejasClaves[k] == 0L) continue;
+            int i = indiceInicial(viejasClaves[k]);
+            while (claves[i] != 0L) i = (i + 1) & mascara;
+            claves[i] = viejasClaves[k];
+            listas[i] = viejasListas[k];
+            longitudes[i] = viejasLongitudes[k];
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package modelo;
+
+/*
+ * LectorMetadatos.java - Lee en segundo plano la duración y las etiquetas de las pistas.
+ * La tabla se llena al instante con filas sin duración; este lector abre cada
+ * archivo una sola vez en el carril de filas visibles del planificador,
+ * alimenta el índice de la biblioteca y entrega las duraciones por tandas en
+ * el hilo de JavaFX. Las etiquetas quedan en la caché de metadatos y, al
+ * arrancar, un recorrido de fondo llena el índice con las de toda la
+ * biblioteca para que las consultas por campo no dependan de qué listas se
+ * abrieron.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javafx.application.Platform;
+
+/**
+ * Lector de metadatos con memoria por pista y cancelación al cambiar de lista.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class LectorMetadatos {
+
+    private static final int TANDA = 64;          // Filas por tarea y por actualización de la tabla
+
+    private final PlanificadorTareas planificador;
+    private PlanificadorTareas.Token token = new PlanificadorTareas.Token(); // Solo la última lista pedida sigue leyendo
+    private final PlanificadorTareas.Token tokenBiblioteca = new PlanificadorTareas.Token(); // Recorrido de toda la biblioteca
+    private final Map<Long, ListaReproduccion.Metadatos> leidos = new ConcurrentHashMap<>();
+    private final CacheMetadatos cache = CacheMetadatos.getInstancia();
+    private volatile boolean bibliotecaIndexada = false;
+
+    /**
+     * @param planificador Planificador cuyo carril de filas visibles hace la lectura
+     */
+    public LectorMetadatos(PlanificadorTareas planificador) {
+        this.planificador = planificador;
+    }
+
+    /**
+     * Llena el índice con las etiquetas de toda la biblioteca en el carril de
+     * fondo: las que están en la caché se toman de ahí y el resto se lee del
+     * archivo y se guarda en la caché. Mientras no termina, las consultas por
+     * artista, género o duración solo ven las pistas ya leídas.
+     *
+     * @param rutas  Rutas de la biblioteca
+     * @param indice Índice de la biblioteca
+     */
+    public void indexarBiblioteca(Collection<String> rutas, IndiceBiblioteca indice) {
+        bibliotecaIndexada = false;
+        boolean aceptado = planificador.repartir(PlanificadorTareas.Carril.FONDO, tokenBiblioteca,
+                new ArrayList<>(rutas), ruta -> {
+                    long id = DiccionarioRutas.huella(ruta);
+                    indice.setMetadatos(id, leer(id, ruta));
+                }, () -> bibliotecaIndexada = true);
+        if (!aceptado) {
+            System.err.println("No se pudo encolar la lectura de etiquetas de la biblioteca");
+        }
+    }
+
+    /**
+     * @return true si el índice ya tiene las etiquetas de toda la biblioteca
+     */
+    public boolean isBibliotecaIndexada() {
+        return bibliotecaIndexada;
+    }
+
+    /**
+     * Metadatos de una pista: de memoria, de la caché o, si no, del archivo.
+     * Se llama desde los hilos del planificador.
+     */
+    private ListaReproduccion.Metadatos leer(long id, String ruta) {
+        ListaReproduccion.Metadatos metadatos = leidos.get(id);
+        if (metadatos != null) return metadatos;
+        metadatos = cache.getEtiquetas(ruta);
+        if (metadatos == null) {
+            metadatos = ListaReproduccion.leerMetadatos(ruta);
+            cache.setEtiquetas(ruta, metadatos);
+        }
+        leidos.put(id, metadatos);
+        return metadatos;
+    }
+
+    /**
+     * Completa la duración de las filas y los metadatos del índice empezando
+     * por la primera fila.
+     *
+     * @see #completar(List, IndiceBiblioteca, int)
+     */
+    public void completar(List<Cancion> filas, IndiceBiblioteca indice) {
+        completar(filas, indice, 0);
+    }
+
+    /**
+     * Completa la duración de las filas y los metadatos del índice. Las filas
+     * que ya tienen duración se saltan; las pistas ya leídas se completan en
+     * el acto y el resto se lee en segundo plano, empezando por la fila dada
+     * (la que se está mostrando) y siguiendo desde el principio al llegar al
+     * final. Cada tanda es una tarea aparte, de modo que otros trabajos del
+     * carril no esperan a que se lea la lista entera. Una nueva llamada
+     * cancela la anterior (p. ej. al cambiar de lista). Debe llamarse desde
+     * el hilo de JavaFX.
+     *
+     * @param filas  Filas de la tabla
+     * @param indice Índice de la biblioteca
+     * @param desde  Fila por la que empezar
+     */
+    public void completar(List<Cancion> filas, IndiceBiblioteca indice, int desde) {
+        token.cancelar();
+        PlanificadorTareas.Token mio = new PlanificadorTareas.Token();
+        token = mio;
+
+        List<Cancion> pendientes = new ArrayList<>();
+        List<String> rutasPendientes = new ArrayList<>();
+        int n = filas.size();
+        int inicio = (desde > 0 && desde < n) ? desde : 0;
+        for (int k = 0; k < n; k++) {
+            Cancion cancion = filas.get((inicio + k) % n);
+            if (!cancion.getDuracion().isEmpty()) continue;
+            ListaReproduccion.Metadatos metadatos = leidos.get(cancion.getIdPista());
+            if (metadatos != null) {
+                indice.setMetadatos(cancion.getIdPista(), metadatos);   // El índice pudo reconstruirse
+                cancion.setDuracion(metadatos.getDuracionLegible());
+            } else {
+                pendientes.add(cancion);
+                rutasPendientes.add(cancion.getRuta());
+            }
+        }
+        if (pendientes.isEmpty()) return;
+        leerTanda(pendientes, rutasPendientes, 0, indice, mio);
+    }
+
+    /**
+     * Encola la lectura de la tanda que empieza en {@code desde}; al
+     * terminarla, encola la siguiente.
+     */
+    private void leerTanda(List<Cancion> pendientes, List<String> rutas, int desde,
+                           IndiceBiblioteca indice, PlanificadorTareas.Token mio) {
+        boolean aceptada = planificador.ejecutar(PlanificadorTareas.Carril.VISIBLE, mio, () -> {
+            int hasta = Math.min(desde + TANDA, pendientes.size());
+            List<Cancion> tanda = new ArrayList<>(TANDA);
+            List<String> duraciones = new ArrayList<>(TANDA);
+            for (int i = desde; i < hasta; i++) {
+                if (mio.isCancelado()) return;           // Se cambió de lista
+                Cancion cancion = pendientes.get(i);
+                long id = cancion.getIdPista();
+                ListaReproduccion.Metadatos metadatos = leer(id, rutas.get(i));
+                indice.setMetadatos(id, metadatos);
+                tanda.add(cancion);
+                duraciones.add(metadatos.getDuracionLegible());
+            }
+            entregar(tanda, duraciones);
+            if (hasta < pendientes.size()) {
+                leerTanda(pendientes, rutas, hasta, indice, mio);
+            }
+        });
+        if (!aceptada) {
+            System.err.println("No se pudo encolar la lectura de metadatos");
+        }
+    }
+
+    /**
+     * Lleva una tanda de duraciones a la tabla en una sola pasada del hilo de JavaFX.
+     */
+    private static void entregar(List<Cancion> tanda, List<String> duraciones) {
+        Platform.runLater(() -> {
+            for (int i = 0; i < tanda.size(); i++) {
+                tanda.get(i).setDuracion(duraciones.get(i));
+            }
+        });
+    }
+
+    /**
+     * Detiene la lectura en curso.
+     */
+    public void cancelar() {
+        token.cancelar();
+    }
+
+    /**
+     * Detiene la lectura en curso y el recorrido de la biblioteca.
+     */
+    public void cerrar() {
+        token.cancelar();
+        tokenBiblioteca.cancelar();
+    }
+
+    /**
+     * @return Metadatos ya leídos de la pista o null
+     */
+    public ListaReproduccion.Metadatos getLeidos(long idPista) {
+        return leidos.get(idPista);
+    }
+
+    /**
+     * @return Pistas cuyos metadatos ya se leyeron
+     */
+    public int getLeidos() {
+        return leidos.size();
+    }
+}
@@ -8,10 +8,15 @@ package modelo;
 
 import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javafx.scene.image.Image;
 import org.jaudiotagger.audio.AudioFile;
 import org.jaudiotagger.audio.AudioFileIO;
@@ -22,8 +27,22 @@ public class ListaReproduccion implements Serializable {
 
     private static final long serialVersionUID = 1L; // Para compatibilidad con la serialización
 
-    private Nodo cabeza;                // Referencia al primer nodo de la lista
+    // Versión del formato en disco (nombres + rutas front-coded)
+    private static final int FORMATO_COMPACTO = 2;
+
+    private transient Nodo cabeza;      // Referencia al primer nodo de la lista
+    private transient Map<Long, Nodo> nodosPorId = new HashMap<>(); // Acceso directo por id de pista
     private List<Cancion> canciones;    // Lista auxiliar (no enlazada) de canciones
+    private transient OyenteLista oyente; // Avisado de altas y bajas (índice de búsqueda)
+    private transient long modificaciones; // Cambia con cada alta, baja o reordenamiento
+
+    /**
+     * Recibe las altas y bajas de canciones de la lista. Reordenar no avisa.
+     */
+    public interface OyenteLista {
+        void cancionAgregada(Nodo nodo);
+        void cancionEliminada(Nodo nodo);
+    }
 
     // Constructor: Inicializa la lista vacía
     public ListaReproduccion() {
@@ -42,6 +61,21 @@ public class ListaReproduccion implements Serializable {
         return cabeza == null;
     }
 
+    /**
+     * @return Contador de cambios (altas, bajas y reordenamientos); si no
+     *         cambió, una vista construida antes sigue siendo válida
+     */
+    public long getModificaciones() {
+        return modificaciones;
+    }
+
+    /**
+     * @param oyente Oyente de altas y bajas, o null
+     */
+    public void setOyente(OyenteLista oyente) {
+        this.oyente = oyente;
+    }
+
     /**
      * Retorna los nombres de todas las canciones de la lista.
      */
@@ -73,11 +107,28 @@ public class ListaReproduccion implements Serializable {
         return getRutaCancion(nombreCancion);
     }
 
+    /**
+     * Busca el nodo de una pista por su identificador, sin recorrer la lista.
+     *
+     * @param idPista Identificador de la pista
+     * @return Nodo de la pista o null si no está en la lista
+     */
+    public Nodo getNodoPorId(long idPista) {
+        return nodosPorId.get(idPista);
+    }
+
     /**
      * Vacía la lista por completo.
      */
     public void vaciarLista() {
+        if (oyente != null) {
+            for (Nodo temp = cabeza; temp != null; temp = temp.getSiguiente()) {
+                oyente.cancionEliminada(temp);
+            }
+        }
         cabeza = null;
+        nodosPorId.clear();
+        modificaciones++;
     }
 
     /* ========================
@@ -89,6 +140,7 @@ public class ListaReproduccion implements Serializable {
      */
     public void agregarCancion(String nombreCancion, String rutaCancion) {
         Nodo nuevoNodo = new Nodo(nombreCancion, rutaCancion);
+        nodosPorId.put(nuevoNodo.getIdPista(), nuevoNodo);
         if (cabeza == null) {
             cabeza = nuevoNodo;
         } else {
@@ -99,6 +151,8 @@ public class ListaReproduccion implements Serializable {
             temp.setSiguiente(nuevoNodo);
             nuevoNodo.setAnterior(temp);
         }
+        modificaciones++;
+        if (oyente != null) oyente.cancionAgregada(nuevoNodo);
     }
 
     /**
@@ -110,15 +164,7 @@ public class ListaReproduccion implements Serializable {
         Nodo actual = cabeza;
         while (actual != null) {
             if (nombre.equals(actual.getNombreCancion())) {
-                if (actual == cabeza) {
-                    cabeza = actual.getSiguiente();
-                    if (cabeza != null) cabeza.setAnterior(null);
-                } else if (actual.getSiguiente() == null) {
-                    actual.getAnterior().setSiguiente(null);
-                } else {
-                    actual.getAnterior().setSiguiente(actual.getSiguiente());
-                    actual.getSiguiente().setAnterior(actual.getAnterior());
-                }
+                desenlazar(actual);
                 return true;
             }
             actual = actual.getSiguiente();
@@ -126,6 +172,60 @@ public class ListaReproduccion implements Serializable {
         return false;
     }
 
+    /**
+     * Elimina una canción por su id de pista, sin recorrer la lista.
+     */
+    public boolean eliminarCancionPorId(long idPista) {
+        Nodo nodo = nodosPorId.get(idPista);
+        if (nodo == null) return false;
+        desenlazar(nodo);
+        return true;
+    }
+
+    private void desenlazar(Nodo actual) {
+        nodosPorId.remove(actual.getIdPista(), actual);
+        soltar(actual);
+        modificaciones++;
+        if (oyente != null) oyente.cancionEliminada(actual);
+    }
+
+    /**
+     * Saca el nodo de la cadena sin quitarlo de la lista (índice y oyente intactos).
+     */
+    private void soltar(Nodo actual) {
+        if (actual == cabeza) {
+            cabeza = actual.getSiguiente();
+            if (cabeza != null) cabeza.setAnterior(null);
+        } else if (actual.getSiguiente() == null) {
+            actual.getAnterior().setSiguiente(null);
+        } else {
+            actual.getAnterior().setSiguiente(actual.getSiguiente());
+            actual.getSiguiente().setAnterior(actual.getAnterior());
+        }
+        actual.setAnterior(null);
+        actual.setSiguiente(null);
+    }
+
+    private void insertarAntes(Nodo nodo, Nodo referencia) {
+        Nodo previo = referencia.getAnterior();
+        nodo.setAnterior(previo);
+        nodo.setSiguiente(referencia);
+        referencia.setAnterior(nodo);
+        if (previo == null) {
+            cabeza = nodo;
+        } else {
+            previo.setSiguiente(nodo);
+        }
+    }
+
+    private void insertarDespues(Nodo nodo, Nodo referencia) {
+        Nodo siguiente = referencia.getSiguiente();
+        nodo.setAnterior(referencia);
+        nodo.setSiguiente(siguiente);
+        referencia.setSiguiente(nodo);
+        if (siguiente != null) siguiente.setAnterior(nodo);
+    }
+
     /**
      * Cuenta el número total de canciones en la lista.
      */
@@ -184,8 +284,8 @@ public class ListaReproduccion implements Serializable {
 
     public void ordenFormato() {
         ordenarPorCriterio((a, b) -> {
-            String extA = a.getRutaCancion().substring(a.getRutaCancion().lastIndexOf('.') + 1);
-            String extB = b.getRutaCancion().substring(b.getRutaCancion().lastIndexOf('.') + 1);
+            String extA = a.getNombreArchivo().substring(a.getNombreArchivo().lastIndexOf('.') + 1);
+            String extB = b.getNombreArchivo().substring(b.getNombreArchivo().lastIndexOf('.') + 1);
             return extA.compareToIgnoreCase(extB);
         });
     }
@@ -221,6 +321,84 @@ public class ListaReproduccion implements Serializable {
             nodos.get(i).setAnterior(nodos.get(i - 1));
         }
         nodos.get(nodos.size() - 1).setSiguiente(null);
+        modificaciones++;
+    }
+
+    /**
+     * Lleva la lista al orden dado moviendo el mínimo de nodos: los que forman
+     * la subsecuencia creciente más larga respecto al orden actual se quedan
+     * donde están y el resto se reenlaza junto a su predecesor en el nuevo
+     * orden. Si los ids son solo parte de la lista (p. ej. los resultados de
+     * una búsqueda), se ordenan entre sí y las demás canciones no se mueven.
+     *
+     * @param idsEnOrden Ids de pista en el orden deseado
+     * @return Nodos movidos, o -1 si algún id falta o se repite (la lista no cambia)
+     */
+    public int aplicarOrden(List<Long> idsEnOrden) {
+        Map<Long, Integer> posicion = new HashMap<>(nodosPorId.size() * 2);
+        int p = 0;
+        for (Nodo temp = cabeza; temp != null; temp = temp.getSiguiente()) {
+            if (posicion.put(temp.getIdPista(), p++) != null) return -1;   // Pista repetida en la lista
+        }
+
+        int n = idsEnOrden.size();
+        Nodo[] nodos = new Nodo[n];
+        int[] actual = new int[n];
+        boolean[] usada = new boolean[p];
+        for (int i = 0; i < n; i++) {
+            Integer pos = posicion.get(idsEnOrden.get(i));
+            if (pos == null || usada[pos]) return -1;
+            usada[pos] = true;
+            nodos[i] = nodosPorId.get(idsEnOrden.get(i));
+            actual[i] = pos;
+        }
+
+        boolean[] fijo = subsecuenciaCreciente(actual);
+        int primerFijo = 0;
+        while (primerFijo < n && !fijo[primerFijo]) primerFijo++;
+
+        int movidos = 0;
+        for (int i = 0; i < n; i++) {
+            if (fijo[i]) continue;
+            soltar(nodos[i]);
+            if (i == 0) {
+                insertarAntes(nodos[i], nodos[primerFijo]);
+            } else {
+                insertarDespues(nodos[i], nodos[i - 1]);
+            }
+            movidos++;
+        }
+        if (movidos > 0) modificaciones++;
+        return movidos;
+    }
+
+    /**
+     * Marca una subsecuencia estrictamente creciente de longitud máxima (O(n log n)).
+     */
+    private static boolean[] subsecuenciaCreciente(int[] valores) {
+        int n = valores.length;
+        int[] finales = new int[n];    // Índice del menor final de cada longitud
+        int[] previo = new int[n];
+        int largo = 0;
+        for (int i = 0; i < n; i++) {
+            int bajo = 0, alto = largo;
+            while (bajo < alto) {
+                int medio = (bajo + alto) >>> 1;
+                if (valores[finales[medio]] < valores[i]) {
+                    bajo = medio + 1;
+                } else {
+                    alto = medio;
+                }
+            }
+            previo[i] = (bajo > 0) ? finales[bajo - 1] : -1;
+            finales[bajo] = i;
+            if (bajo == largo) largo++;
+        }
+        boolean[] marcados = new boolean[n];
+        for (int i = (largo > 0) ? finales[largo - 1] : -1; i >= 0; i = previo[i]) {
+            marcados[i] = true;
+        }
+        return marcados;
     }
 
     /**
@@ -241,6 +419,7 @@ public class ListaReproduccion implements Serializable {
             actual = siguiente;
         }
         cabeza = previo;
+        modificaciones++;
     }
 
     /* ========================
@@ -275,6 +454,57 @@ public class ListaReproduccion implements Serializable {
         }
     }
 
+    /**
+     * Metadatos de una pista leídos con una sola apertura del archivo.
+     */
+    public static final class Metadatos implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String artista;
+        private final String album;
+        private final String genero;
+        private final int segundos;       // -1 si no se pudo leer
+
+        public Metadatos(String artista, String album, String genero, int segundos) {
+            this.artista = artista;
+            this.album = album;
+            this.genero = genero;
+            this.segundos = segundos;
+        }
+
+        public String getArtista() { return artista; }
+        public String getAlbum() { return album; }
+        public String getGenero() { return genero; }
+        public int getSegundos() { return segundos; }
+
+        public String getDuracionLegible() {
+            return (segundos < 0) ? "0:00" : String.format("%d:%02d", segundos / 60, segundos % 60);
+        }
+    }
+
+    /**
+     * Lee duración, artista, álbum y género de una vez.
+     */
+    public static Metadatos leerMetadatos(String ruta) {
+        try {
+            AudioFile audioFile = AudioFileIO.read(new File(ruta));
+            int segundos = audioFile.getAudioHeader().getTrackLength();
+            Tag tag = audioFile.getTag();
+            if (tag == null) return new Metadatos(null, null, null, segundos);
+            return new Metadatos(valorTag(tag, FieldKey.ARTIST), valorTag(tag, FieldKey.ALBUM),
+                    valorTag(tag, FieldKey.GENRE), segundos);
+        } catch (Exception e) {
+            System.err.println("Error al leer metadatos: " + e.getMessage());
+            return new Metadatos(null, null, null, -1);
+        }
+    }
+
+    private static String valorTag(Tag tag, FieldKey campo) {
+        String valor = tag.getFirst(campo);
+        return (valor != null && !valor.trim().isEmpty()) ? valor.trim() : null;
+    }
+
     public String obtenerDuracionLegible(String rutaCancion) {
         try {
             AudioFile audioFile = AudioFileIO.read(new File(rutaCancion));
@@ -303,6 +533,67 @@ public Image obtenerPortada(String ruta) {
     return null; // Imagen por defecto si falla
 }
 
+    /* ========================
+     *  SERIALIZACIÓN
+     * ======================== */
+
+    /**
+     * Guarda la lista en formato compacto: los nombres en orden y las rutas
+     * en bloques front-coded, en lugar de la cadena de nodos enlazados.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        List<String> nombres = new ArrayList<>();
+        List<String> rutas = new ArrayList<>();
+        for (Nodo temp = cabeza; temp != null; temp = temp.getSiguiente()) {
+            nombres.add(temp.getNombreCancion());
+            rutas.add(temp.getRutaCancion());
+        }
+        out.writeInt(FORMATO_COMPACTO);
+        out.writeInt(nombres.size());
+        for (String nombre : nombres) {
+            out.writeUTF(nombre);
+        }
+        DiccionarioRutas.escribirRutas(out, rutas);
+    }
+
+    /**
+     * Lee tanto el formato compacto como el formato antiguo, en el que la
+     * cabeza de la lista se serializaba junto con todos sus nodos.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        canciones = null;
+        nodosPorId = new HashMap<>();
+        if (campos.getObjectStreamClass().getField("cabeza") != null) {
+            cabeza = (Nodo) campos.get("cabeza", null);
+            for (Nodo temp = cabeza; temp != null; temp = temp.getSiguiente()) {
+                nodosPorId.put(temp.getIdPista(), temp);
+            }
+            return;
+        }
+
+        in.readInt(); // versión del formato
+        String[] nombres = new String[in.readInt()];
+        for (int i = 0; i < nombres.length; i++) {
+            nombres[i] = in.readUTF();
+        }
+        String[] rutas = DiccionarioRutas.leerRutas(in);
+
+        Nodo ultimo = null;
+        for (int i = 0; i < nombres.length; i++) {
+            Nodo nuevo = new Nodo(nombres[i], rutas[i]);
+            nodosPorId.put(nuevo.getIdPista(), nuevo);
+            if (ultimo == null) {
+                cabeza = nuevo;
+            } else {
+                ultimo.setSiguiente(nuevo);
+                nuevo.setAnterior(ultimo);
+            }
+            ultimo = nuevo;
+        }
+    }
+
     /* ========================
      *  ACCESOR ADICIONAL
      * ======================== */
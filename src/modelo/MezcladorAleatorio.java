@@ -0,0 +1,336 @@
+package modelo;
+
+/*
+ * MezcladorAleatorio.java - Orden aleatorio de reproducción sin repeticiones.
+ * Genera de forma perezosa una permutación de Fisher–Yates sobre los ids de
+ * pista: cada paso sortea una pista entre las que aún no han sonado, de modo
+ * que ninguna se repite hasta completar la vuelta. Admite semilla, altas y
+ * bajas sin rehacer la permutación y sorteo ponderado con tabla de alias.
+ */
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.LongToDoubleFunction;
+
+/**
+ * Motor del modo aleatorio.
+ *
+ * Estructura:
+ * - orden[0, generados) ya sorteado (historial de la vuelta actual)
+ * - orden[generados, tamano) pistas pendientes, en cualquier orden
+ * - cursor: posición de la pista actual dentro de lo sorteado
+ *
+ * siguiente() y anterior() son O(1) (el sorteo ponderado es O(1) amortizado).
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class MezcladorAleatorio {
+
+    private static final int MAX_RECHAZOS = 8;   // Sorteos fallidos antes de rehacer la tabla de alias
+
+    private long[] orden;
+    private int tamano;
+    private int generados;
+    private int cursor = -1;
+    private final Map<Long, Integer> posiciones = new HashMap<>();
+    private final Random azar;
+
+    // Sorteo ponderado (null = uniforme)
+    private LongToDoubleFunction pesos;
+    private long[] idsAlias;                     // Pistas pendientes al construir la tabla
+    private double[] probabilidadAlias;
+    private int[] alias;
+
+    /**
+     * @param ids Identificadores de las pistas a mezclar
+     */
+    public MezcladorAleatorio(Collection<Long> ids) {
+        this(ids, System.nanoTime());
+    }
+
+    /**
+     * @param ids     Identificadores de las pistas a mezclar
+     * @param semilla Semilla del generador (mismo orden con la misma semilla)
+     */
+    public MezcladorAleatorio(Collection<Long> ids, long semilla) {
+        this.azar = new Random(semilla);
+        this.orden = new long[Math.max(16, ids.size())];
+        for (Long id : ids) {
+            agregar(id);
+        }
+    }
+
+    /* ***********************
+     * NAVEGACIÓN
+     * ***********************/
+
+    /**
+     * Avanza a la siguiente pista del orden aleatorio. Al completar la vuelta
+     * empieza otra, sin repetir como primera la última que sonó.
+     *
+     * @return Id de la pista o null si no hay pistas
+     */
+    public Long siguiente() {
+        if (tamano == 0) return null;
+        if (cursor + 1 >= tamano) {
+            nuevaVuelta();
+        }
+        asegurarGenerado(cursor + 1);
+        cursor++;
+        return orden[cursor];
+    }
+
+    /**
+     * Pista que devolverá siguiente(), sin avanzar (para precargarla).
+     * Si la vuelta está completa devuelve null.
+     */
+    public Long verSiguiente() {
+        if (cursor + 1 >= tamano) return null;
+        asegurarGenerado(cursor + 1);
+        return orden[cursor + 1];
+    }
+
+    /**
+     * Retrocede a la pista anterior dentro de la vuelta actual.
+     *
+     * @return Id de la pista o null si ya se está en la primera
+     */
+    public Long anterior() {
+        if (cursor <= 0) return null;
+        cursor--;
+        return orden[cursor];
+    }
+
+    /**
+     * @return Id de la pista actual o null si aún no empezó
+     */
+    public Long actual() {
+        return (cursor >= 0) ? orden[cursor] : null;
+    }
+
+    /**
+     * Hace que la vuelta empiece por una pista dada (la que ya está sonando).
+     *
+     * @param id Id de la pista
+     */
+    public void empezarPor(long id) {
+        Integer posicion = posiciones.get(id);
+        if (posicion == null) return;
+        generados = 0;
+        intercambiar(0, posicion);
+        generados = 1;
+        cursor = 0;
+        invalidarAlias();
+    }
+
+    private void nuevaVuelta() {
+        Long ultima = actual();
+        generados = 0;
+        cursor = -1;
+        invalidarAlias();
+        if (ultima != null && tamano > 1) {
+            // La última de la vuelta anterior no puede ser la primera de esta
+            asegurarGenerado(0);
+            if (orden[0] == ultima) {
+                intercambiar(0, 1 + azar.nextInt(tamano - 1));
+            }
+        }
+    }
+
+    /**
+     * Sortea posiciones hasta tener generada la pedida (paso de Fisher–Yates).
+     */
+    private void asegurarGenerado(int posicion) {
+        while (generados <= posicion) {
+            int elegido = (pesos != null) ? sortearPonderado() : generados + azar.nextInt(tamano - generados);
+            intercambiar(generados, elegido);
+            generados++;
+        }
+    }
+
+    private void intercambiar(int a, int b) {
+        long ida = orden[a];
+        long idb = orden[b];
+        orden[a] = idb;
+        orden[b] = ida;
+        posiciones.put(idb, a);
+        posiciones.put(ida, b);
+    }
+
+    /* ***********************
+     * SORTEO PONDERADO
+     * ***********************/
+
+    /**
+     * Activa el sorteo ponderado (por valoración, reproducciones, etc.).
+     * Pesos no positivos cuentan como muy improbables, no como excluidos.
+     *
+     * @param pesos Peso de cada id de pista, o null para sorteo uniforme
+     */
+    public void setPesos(LongToDoubleFunction pesos) {
+        this.pesos = pesos;
+        invalidarAlias();
+    }
+
+    private void invalidarAlias() {
+        idsAlias = null;
+    }
+
+    /**
+     * Sortea una pista pendiente con la tabla de alias. Las pistas que ya
+     * salieron desde que se construyó la tabla se rechazan; si se rechaza
+     * demasiado, la tabla se reconstruye con las pendientes.
+     *
+     * @return Posición de la pista elegida en orden[]
+     */
+    private int sortearPonderado() {
+        for (int intento = 0; ; intento++) {
+            if (idsAlias == null || intento >= MAX_RECHAZOS) {
+                construirAlias();
+                intento = 0;
+            }
+            int i = azar.nextInt(idsAlias.length);
+            int elegido = (azar.nextDouble() < probabilidadAlias[i]) ? i : alias[i];
+            Integer posicion = posiciones.get(idsAlias[elegido]);
+            if (posicion != null && posicion >= generados) {
+                return posicion;
+            }
+        }
+    }
+
+    /**
+     * Tabla de alias de Vose sobre las pistas pendientes.
+     */
+    private void construirAlias() {
+        int n = tamano - generados;
+        idsAlias = new long[n];
+        probabilidadAlias = new double[n];
+        alias = new int[n];
+
+        double[] escalados = new double[n];
+        double total = 0;
+        for (int i = 0; i < n; i++) {
+            idsAlias[i] = orden[generados + i];
+            escalados[i] = Math.max(1e-9, pesos.applyAsDouble(idsAlias[i]));
+            total += escalados[i];
+        }
+
+        int[] pequenos = new int[n];
+        int[] grandes = new int[n];
+        int np = 0;
+        int ng = 0;
+        for (int i = 0; i < n; i++) {
+            escalados[i] = escalados[i] * n / total;
+            if (escalados[i] < 1.0) {
+                pequenos[np++] = i;
+            } else {
+                grandes[ng++] = i;
+            }
+        }
+        while (np > 0 && ng > 0) {
+            int p = pequenos[--np];
+            int g = grandes[--ng];
+            probabilidadAlias[p] = escalados[p];
+            alias[p] = g;
+            escalados[g] = (escalados[g] + escalados[p]) - 1.0;
+            if (escalados[g] < 1.0) {
+                pequenos[np++] = g;
+            } else {
+                grandes[ng++] = g;
+            }
+        }
+        while (ng > 0) probabilidadAlias[grandes[--ng]] = 1.0;
+        while (np > 0) probabilidadAlias[pequenos[--np]] = 1.0;
+    }
+
+    /* ***********************
+     * ALTAS Y BAJAS
+     * ***********************/
+
+    /**
+     * Añade una pista a las pendientes de la vuelta actual.
+     *
+     * @param id Id de la pista
+     */
+    public void agregar(long id) {
+        if (posiciones.containsKey(id)) return;
+        if (tamano == orden.length) {
+            long[] mayor = new long[orden.length * 2];
+            System.arraycopy(orden, 0, mayor, 0, tamano);
+            orden = mayor;
+        }
+        orden[tamano] = id;
+        posiciones.put(id, tamano);
+        tamano++;
+        invalidarAlias();
+    }
+
+    /**
+     * Quita una pista. Si estaba pendiente es O(1); si ya sonó en esta vuelta
+     * se conserva el orden del historial desplazando lo posterior.
+     *
+     * @param id Id de la pista
+     */
+    public void quitar(long id) {
+        Integer posicion = posiciones.remove(id);
+        if (posicion == null) return;
+        int p = posicion;
+        if (p >= generados) {
+            tamano--;
+            if (p != tamano) {
+                orden[p] = orden[tamano];
+                posiciones.put(orden[p], p);
+            }
+        } else {
+            for (int i = p; i < tamano - 1; i++) {
+                orden[i] = orden[i + 1];
+                posiciones.put(orden[i], i);
+            }
+            tamano--;
+            generados--;
+            if (cursor >= p) cursor--;
+        }
+    }
+
+    /**
+     * Ajusta el mezclador a un nuevo conjunto de pistas sin rehacer la
+     * permutación: añade las nuevas y quita las que ya no están.
+     *
+     * @param ids Identificadores actuales
+     */
+    public void sincronizar(Collection<Long> ids) {
+        Set<Long> actuales = new HashSet<>(ids);
+        for (int i = tamano - 1; i >= 0; i--) {
+            if (!actuales.contains(orden[i])) {
+                quitar(orden[i]);
+            }
+        }
+        for (Long id : ids) {
+            agregar(id);
+        }
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    public int getTamano() {
+        return tamano;
+    }
+
+    /**
+     * Pistas que ya sonaron (o se sortearon) en la vuelta actual.
+     */
+    public int getGenerados() {
+        return generados;
+    }
+
+    public boolean contiene(long id) {
+        return posiciones.containsKey(id);
+    }
+}
@@ -0,0 +1,85 @@
+package modelo;
+
+/*
+ * MotorAudio.java - Interfaz de los motores de reproducción.
+ * Reproductor solo conoce esta interfaz, de modo que la lógica de cambio de
+ * pista, repetición, volumen y progreso funciona igual con MediaPlayer, con
+ * JLayer o con un reloj virtual sin audio.
+ */
+
+/**
+ * Motor capaz de reproducir una única pista.
+ *
+ * Contrato:
+ * - {@link #preparar} se llama una sola vez; para otra pista se crea otro motor.
+ * - Las acciones de {@link #cuandoEsteListo} y {@link #setAlTerminar} se
+ *   ejecutan en el hilo de control del reproductor (el de JavaFX en la
+ *   aplicación, el que avanza el reloj en el motor virtual).
+ * - Las posiciones y duraciones se expresan en milisegundos.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public interface MotorAudio {
+
+    /**
+     * Abre la pista. Puede terminar de prepararse de forma asíncrona.
+     *
+     * @param ruta Ruta del archivo
+     */
+    void preparar(String ruta) throws Exception;
+
+    /**
+     * Ejecuta la acción en cuanto la pista esté lista (de inmediato si ya lo está).
+     */
+    void cuandoEsteListo(Runnable accion);
+
+    void reproducir();
+
+    void pausar();
+
+    /**
+     * Detiene y vuelve al inicio sin liberar la pista.
+     */
+    void detener();
+
+    void buscar(long posicionMs);
+
+    long getPosicionMs();
+
+    /**
+     * @return Duración de la pista, o -1 si aún no se conoce
+     */
+    long getDuracionMs();
+
+    /**
+     * @param volumen Volumen lineal entre 0.0 y 1.0
+     */
+    void setVolumen(double volumen);
+
+    /**
+     * Acción a ejecutar cuando la pista llega al final.
+     */
+    void setAlTerminar(Runnable accion);
+
+    boolean isListo();
+
+    boolean isReproduciendo();
+
+    boolean isPausado();
+
+    String getRuta();
+
+    /**
+     * Libera todos los recursos; el motor no puede volver a usarse.
+     */
+    void liberar();
+
+    /**
+     * Crea el motor adecuado para una ruta.
+     */
+    @FunctionalInterface
+    interface Fabrica {
+        MotorAudio crear(String ruta);
+    }
+}
@@ -0,0 +1,536 @@
+package modelo;
+
+/*
+ * MotorJLayer.java - Motor de reproducción MP3 de baja latencia.
+ * Decodifica con JLayer en un hilo dedicado hacia un buffer circular PCM
+ * y un segundo hilo entrega las muestras a una SourceDataLine.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import javafx.application.Platform;
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.SourceDataLine;
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+/**
+ * Motor alternativo a MediaPlayer para archivos MP3.
+ *
+ * Características:
+ * - Decodificación anticipada en un hilo propio (JLayer)
+ * - Buffer circular SPSC sin bloqueos entre decodificador y salida
+ * - Tamaños de buffer configurables y contador de subdesbordamientos
+ * - Modo sin salida de audio (headless): consume las muestras a ritmo real
+ *   sin abrir ningún dispositivo, útil para pruebas
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class MotorJLayer implements MotorAudio {
+
+    public static final int MUESTRAS_BUFFER_POR_DEFECTO = 1 << 16;  // ~0.75 s estéreo a 44.1 kHz
+    public static final int MUESTRAS_BLOQUE_POR_DEFECTO = 2048;     // Bloque entregado a la línea
+
+    private final int muestrasBuffer;
+    private final int muestrasBloque;
+    private final boolean sinSalida;
+
+    // Pista cargada
+    private String ruta;
+    private int frecuencia;
+    private int canales;
+    private long duracionMs;
+    private volatile IndiceBusquedaMP3 indice;   // Índice de búsqueda (null hasta construirlo)
+
+    // Construye los índices de búsqueda en el carril de fondo de la aplicación
+    private static volatile PlanificadorTareas planificador;
+    private PlanificadorTareas.Token tokenIndice = new PlanificadorTareas.Token(); // Índice de la pista preparada
+
+    /**
+     * Estado de una puesta en marcha (reproducir o saltar). Cada una tiene su
+     * propio buffer, línea e hilos, y los hilos solo consultan su ejecución:
+     * un hilo de una ejecución anterior que tarde en terminar (p. ej. bloqueado
+     * en E/S) no puede escribir en el buffer nuevo ni dar por terminada la pista.
+     */
+    private static final class Ejecucion {
+        private final BufferCircularPCM buffer;
+        private final SourceDataLine linea;          // null sin salida de audio
+        private Thread hiloDecodificador;
+        private Thread hiloSalida;
+        private volatile boolean activa = true;
+        private volatile boolean finDecodificacion;
+        private volatile long muestrasEntregadas;    // Muestras entregadas a la salida en esta ejecución
+
+        private Ejecucion(BufferCircularPCM buffer, SourceDataLine linea) {
+            this.buffer = buffer;
+            this.linea = linea;
+        }
+    }
+
+    // Hilos y sincronización
+    private volatile Ejecucion ejecucion;        // null si no hay hilos en marcha
+    private volatile boolean pausado;
+    private volatile float volumen = 1f;
+
+    // Posición
+    private volatile long desplazamientoMs;      // Posición desde la que se empezó a decodificar
+
+    // Métricas
+    private final AtomicLong subdesbordamientos = new AtomicLong();
+    private final AtomicLong tramasDecodificadas = new AtomicLong();
+
+    private Runnable alTerminar;
+    private Executor hiloControl;                        // Donde se avisa del fin de pista
+
+    /**
+     * Motor con tamaños por defecto y salida de audio real.
+     */
+    public MotorJLayer() {
+        this(MUESTRAS_BUFFER_POR_DEFECTO, MUESTRAS_BLOQUE_POR_DEFECTO, false);
+    }
+
+    /**
+     * @param muestrasBuffer Capacidad del buffer circular (muestras intercaladas)
+     * @param muestrasBloque Muestras entregadas a la línea en cada escritura
+     * @param sinSalida      true para no abrir ningún dispositivo de audio; el
+     *                       fin de pista se avisa entonces en el hilo de salida
+     *                       en lugar del de JavaFX, que puede no existir
+     */
+    public MotorJLayer(int muestrasBuffer, int muestrasBloque, boolean sinSalida) {
+        this.muestrasBuffer = muestrasBuffer;
+        this.muestrasBloque = muestrasBloque;
+        this.sinSalida = sinSalida;
+        this.hiloControl = sinSalida ? Runnable::run : Platform::runLater;
+    }
+
+    /**
+     * Planificador en cuyo carril de fondo se construyen los índices de
+     * búsqueda. Sin él (p. ej. en pruebas sin interfaz) cada índice se
+     * construye en un hilo propio de baja prioridad.
+     *
+     * @param planificador Planificador de la aplicación
+     */
+    public static void setPlanificador(PlanificadorTareas planificador) {
+        MotorJLayer.planificador = planificador;
+    }
+
+    /* ***********************
+     * CONTROL
+     * ***********************/
+
+    /**
+     * Lee la cabecera del archivo para conocer formato y duración.
+     *
+     * @param rutaCancion Ruta del archivo MP3
+     */
+    @Override
+    public void preparar(String rutaCancion) throws Exception {
+        detener();
+        File archivo = new File(rutaCancion);
+        try (InputStream in = new BufferedInputStream(new FileInputStream(archivo))) {
+            Bitstream bitstream = new Bitstream(in);
+            Header cabecera = bitstream.readFrame();
+            if (cabecera == null) {
+                throw new IllegalArgumentException("No es un MP3 válido: " + rutaCancion);
+            }
+            frecuencia = cabecera.frequency();
+            canales = (cabecera.mode() == Header.SINGLE_CHANNEL) ? 1 : 2;
+            duracionMs = (long) cabecera.total_ms((int) Math.min(archivo.length(), Integer.MAX_VALUE));
+            bitstream.close();
+        }
+        ruta = rutaCancion;
+        desplazamientoMs = 0;
+
+        indice = CacheMetadatos.getInstancia().getIndiceBusqueda(rutaCancion);
+        if (indice != null) {
+            duracionMs = indice.getDuracionMs();
+        } else {
+            construirIndiceEnSegundoPlano(rutaCancion);
+        }
+    }
+
+    /**
+     * Construye el índice de búsqueda de la pista mientras suena y lo guarda
+     * en la caché; hasta entonces los saltos recorren las tramas desde el inicio.
+     */
+    private void construirIndiceEnSegundoPlano(String rutaCancion) {
+        tokenIndice.cancelar();                 // El de la pista anterior ya no hace falta
+        PlanificadorTareas.Token mio = new PlanificadorTareas.Token();
+        tokenIndice = mio;
+        Runnable construir = () -> {
+            if (mio.isCancelado()) return;
+            try {
+                IndiceBusquedaMP3 nuevo = IndiceBusquedaMP3.construir(rutaCancion,
+                        IndiceBusquedaMP3.INTERVALO_POR_DEFECTO_MS);
+                if (nuevo == null) return;
+                CacheMetadatos.getInstancia().setIndiceBusqueda(rutaCancion, nuevo);
+                if (rutaCancion.equals(ruta)) {
+                    indice = nuevo;
+                    duracionMs = nuevo.getDuracionMs();
+                }
+            } catch (Exception e) {
+                System.err.println("Error al indexar: " + e.getMessage());
+            }
+        };
+        PlanificadorTareas compartido = planificador;
+        if (compartido != null) {
+            if (!compartido.ejecutar(PlanificadorTareas.Carril.FONDO, mio, construir)) {
+                System.err.println("No se pudo encolar el índice de búsqueda");
+            }
+        } else {
+            Thread hilo = new Thread(construir, "JLayer-indice");
+            hilo.setDaemon(true);
+            hilo.setPriority(Thread.MIN_PRIORITY);
+            hilo.start();
+        }
+    }
+
+    /**
+     * La cabecera se lee de forma síncrona: tras preparar() la pista ya está lista.
+     */
+    @Override
+    public void cuandoEsteListo(Runnable accion) {
+        accion.run();
+    }
+
+    /**
+     * Inicia (o reanuda) la reproducción.
+     */
+    @Override
+    public void reproducir() {
+        if (ruta == null) return;
+        Ejecucion actual = ejecucion;
+        if (actual != null && actual.activa) {
+            pausado = false;
+            if (actual.linea != null) actual.linea.start();
+            return;
+        }
+        try {
+            iniciarDesde(desplazamientoMs, false);
+        } catch (Exception e) {
+            System.err.println("Error al reproducir: " + e.getMessage());
+            detenerHilos();
+        }
+    }
+
+    /**
+     * Pausa la reproducción. Sin hilos en marcha deja la pista preparada en pausa.
+     */
+    @Override
+    public void pausar() {
+        if (ruta == null) return;
+        pausado = true;
+        Ejecucion actual = ejecucion;
+        if (actual != null && actual.linea != null) actual.linea.stop();
+    }
+
+    /**
+     * Salta a una posición. La decodificación se reinicia desde la trama
+     * que contiene la posición pedida.
+     *
+     * @param posicionMs Posición en milisegundos
+     */
+    @Override
+    public void buscar(long posicionMs) {
+        if (ruta == null) return;
+        boolean estabaPausado = pausado;
+        Ejecucion actual = ejecucion;
+        boolean estabaSonando = actual != null && actual.activa;
+        detenerHilos();
+        desplazamientoMs = Math.max(0, Math.min(posicionMs, duracionMs));
+        pausado = estabaPausado;
+        if (estabaSonando) {
+            try {
+                iniciarDesde(desplazamientoMs, estabaPausado);
+            } catch (Exception e) {
+                System.err.println("Error al buscar: " + e.getMessage());
+                detenerHilos();
+            }
+        }
+    }
+
+    /**
+     * Detiene la reproducción y vuelve al inicio de la pista.
+     */
+    @Override
+    public void detener() {
+        detenerHilos();
+        desplazamientoMs = 0;
+    }
+
+    /**
+     * Libera la pista y la línea de audio.
+     */
+    @Override
+    public void liberar() {
+        detener();
+        tokenIndice.cancelar();
+        ruta = null;
+    }
+
+    private void iniciarDesde(long inicioMs, boolean enPausa) throws Exception {
+        SourceDataLine linea = null;
+        if (!sinSalida) {
+            AudioFormat formato = new AudioFormat(frecuencia, 16, canales, true, false);
+            linea = AudioSystem.getSourceDataLine(formato);
+            linea.open(formato, muestrasBloque * 2 * 2);
+            if (!enPausa) linea.start();
+        }
+
+        Ejecucion nueva = new Ejecucion(new BufferCircularPCM(muestrasBuffer), linea);
+        desplazamientoMs = inicioMs;
+        pausado = enPausa;
+        nueva.hiloDecodificador = new Thread(() -> decodificar(nueva, inicioMs), "JLayer-decodificador");
+        nueva.hiloSalida = new Thread(() -> entregarMuestras(nueva), "JLayer-salida");
+        nueva.hiloDecodificador.setDaemon(true);
+        nueva.hiloSalida.setDaemon(true);
+        nueva.hiloDecodificador.setPriority(Thread.MAX_PRIORITY);
+        nueva.hiloSalida.setPriority(Thread.MAX_PRIORITY);
+        ejecucion = nueva;
+        nueva.hiloDecodificador.start();
+        nueva.hiloSalida.start();
+    }
+
+    private void detenerHilos() {
+        pausado = false;
+        Ejecucion actual = ejecucion;
+        if (actual == null) return;
+        actual.activa = false;
+        // Vaciar la línea desbloquea al hilo de salida si está esperando en write()
+        if (actual.linea != null) {
+            actual.linea.stop();
+            actual.linea.flush();
+        }
+        unirHilo(actual.hiloDecodificador);
+        unirHilo(actual.hiloSalida);
+        if (actual.linea != null) {
+            actual.linea.close();
+        }
+        ejecucion = null;
+    }
+
+    private void unirHilo(Thread hilo) {
+        if (hilo == null || hilo == Thread.currentThread()) return;
+        LockSupport.unpark(hilo);
+        try {
+            hilo.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* ***********************
+     * HILOS
+     * ***********************/
+
+    /**
+     * Hilo productor: decodifica tramas y las deja en el buffer circular.
+     * Con índice, el archivo se abre directamente en la trama indexada más
+     * cercana y solo se recorren las tramas que faltan hasta la posición.
+     */
+    private void decodificar(Ejecucion ej, long inicioMs) {
+        try (FileInputStream archivo = new FileInputStream(ruta)) {
+            double restanteMs = inicioMs;
+            IndiceBusquedaMP3 ind = indice;
+            if (ind != null && inicioMs > 0) {
+                int entrada = ind.buscar(inicioMs);
+                archivo.getChannel().position(ind.getDesplazamiento(entrada));
+                restanteMs = inicioMs - ind.getTiempoMs(entrada);
+            }
+
+            Bitstream bitstream = new Bitstream(new BufferedInputStream(archivo));
+            Decoder decoder = new Decoder();
+            saltarHasta(bitstream, restanteMs);
+
+            Header cabecera;
+            while (ej.activa && (cabecera = bitstream.readFrame()) != null) {
+                SampleBuffer salida = (SampleBuffer) decoder.decodeFrame(cabecera, bitstream);
+                short[] pcm = salida.getBuffer();
+                int total = salida.getBufferLength();
+                int desde = 0;
+                while (desde < total && ej.activa) {
+                    int escritas = ej.buffer.escribir(pcm, desde, total - desde);
+                    desde += escritas;
+                    if (escritas == 0) {
+                        LockSupport.parkNanos(1_000_000L);
+                    }
+                }
+                bitstream.closeFrame();
+                tramasDecodificadas.incrementAndGet();
+            }
+            bitstream.close();
+        } catch (Exception e) {
+            System.err.println("Error al decodificar: " + e.getMessage());
+        } finally {
+            ej.finDecodificacion = true;
+        }
+    }
+
+    /**
+     * Avanza tramas sin decodificarlas hasta alcanzar la posición pedida.
+     */
+    private void saltarHasta(Bitstream bitstream, double inicioMs) throws Exception {
+        double acumuladoMs = 0;
+        Header cabecera;
+        while (acumuladoMs + 0.001 < inicioMs && (cabecera = bitstream.readFrame()) != null) {
+            acumuladoMs += cabecera.ms_per_frame();
+            bitstream.closeFrame();
+        }
+    }
+
+    /**
+     * Hilo consumidor: entrega bloques a la línea aplicando el volumen.
+     * Sin línea (headless) consume las muestras a ritmo de tiempo real.
+     */
+    private void entregarMuestras(Ejecucion ej) {
+        short[] bloque = new short[muestrasBloque];
+        byte[] bytes = new byte[muestrasBloque * 2];
+        boolean conDatos = false;               // La última lectura trajo muestras
+
+        while (ej.activa) {
+            if (pausado) {
+                LockSupport.parkNanos(5_000_000L);
+                continue;
+            }
+            int n = ej.buffer.leer(bloque, 0, bloque.length);
+            if (n == 0) {
+                if (ej.finDecodificacion) break;
+                if (conDatos) {
+                    subdesbordamientos.incrementAndGet();   // Se cuenta al vaciarse, no cada espera
+                    conDatos = false;
+                }
+                LockSupport.parkNanos(1_000_000L);
+                continue;
+            }
+            conDatos = true;
+
+            float v = volumen;
+            for (int i = 0; i < n; i++) {
+                int muestra = (int) (bloque[i] * v);
+                bytes[2 * i] = (byte) muestra;
+                bytes[2 * i + 1] = (byte) (muestra >> 8);
+            }
+            if (ej.linea != null) {
+                ej.linea.write(bytes, 0, n * 2);
+            } else {
+                LockSupport.parkNanos(n * 1_000_000_000L / ((long) frecuencia * canales));
+            }
+            ej.muestrasEntregadas += n;
+        }
+
+        if (ej.activa) {
+            if (ej.linea != null) ej.linea.drain();
+            ej.activa = false;
+            Runnable accion = alTerminar;
+            if (accion != null) {
+                // Un salto posterior pone en marcha otra ejecución y anula el aviso
+                hiloControl.execute(() -> {
+                    Ejecucion vigente = ejecucion;
+                    if ((vigente == ej || vigente == null) && ruta != null) accion.run();
+                });
+            }
+        }
+    }
+
+    /* ***********************
+     * CONSULTAS Y AJUSTES
+     * ***********************/
+
+    /**
+     * Posición actual descontando lo que aún está en la línea sin sonar.
+     */
+    @Override
+    public long getPosicionMs() {
+        if (frecuencia == 0) return 0;
+        Ejecucion actual = ejecucion;
+        if (actual == null) return desplazamientoMs;
+        long muestras = actual.muestrasEntregadas;
+        SourceDataLine l = actual.linea;
+        if (l != null) {
+            muestras -= (l.getBufferSize() - l.available()) / 2;
+        }
+        return desplazamientoMs + Math.max(0, muestras) * 1000L / ((long) frecuencia * canales);
+    }
+
+    @Override
+    public long getDuracionMs() {
+        return duracionMs;
+    }
+
+    @Override
+    public String getRuta() {
+        return ruta;
+    }
+
+    @Override
+    public boolean isListo() {
+        return ruta != null;
+    }
+
+    @Override
+    public boolean isReproduciendo() {
+        Ejecucion actual = ejecucion;
+        return actual != null && actual.activa && !pausado;
+    }
+
+    @Override
+    public boolean isPausado() {
+        return ruta != null && pausado;
+    }
+
+    /**
+     * @param volumen Volumen lineal entre 0.0 y 1.0
+     */
+    @Override
+    public void setVolumen(double volumen) {
+        this.volumen = (float) Math.max(0.0, Math.min(1.0, volumen));
+    }
+
+    /**
+     * Acción a ejecutar al terminar la pista (se invoca en el hilo de control).
+     */
+    @Override
+    public void setAlTerminar(Runnable alTerminar) {
+        this.alTerminar = alTerminar;
+    }
+
+    /**
+     * Hilo en el que se avisa del fin de pista (por defecto el de JavaFX, o
+     * el propio hilo de salida en un motor sin salida de audio).
+     */
+    public void setHiloControl(Executor hiloControl) {
+        this.hiloControl = hiloControl;
+    }
+
+    /**
+     * @return Veces que el buffer se vació mientras sonaba (no milisegundos de espera)
+     */
+    public long getSubdesbordamientos() {
+        return subdesbordamientos.get();
+    }
+
+    public long getTramasDecodificadas() {
+        return tramasDecodificadas.get();
+    }
+
+    public int getMuestrasBuffer() {
+        return muestrasBuffer;
+    }
+
+    public int getMuestrasBloque() {
+        return muestrasBloque;
+    }
+
+    public boolean isSinSalida() {
+        return sinSalida;
+    }
+}
@@ -0,0 +1,136 @@
+package modelo;
+
+/*
+ * MotorJavaFX.java - Motor de reproducción basado en MediaPlayer de JavaFX.
+ */
+
+import java.io.File;
+import javafx.application.Platform;
+import javafx.scene.media.Media;
+import javafx.scene.media.MediaPlayer;
+import javafx.util.Duration;
+
+/**
+ * Adaptador de {@link MediaPlayer} a la interfaz {@link MotorAudio}.
+ * Admite todos los formatos que reproduce JavaFX.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class MotorJavaFX implements MotorAudio {
+
+    private MediaPlayer mediaPlayer;
+    private String ruta;
+    private Runnable alEstarListo;       // Acción pendiente hasta que el reproductor esté listo
+    private Runnable alTerminar;
+
+    @Override
+    public void preparar(String ruta) {
+        this.ruta = ruta;
+        mediaPlayer = new MediaPlayer(new Media(new File(ruta).toURI().toString()));
+        mediaPlayer.setOnReady(() -> {
+            Runnable accion = alEstarListo;
+            alEstarListo = null;
+            if (accion != null) accion.run();
+        });
+        mediaPlayer.setOnEndOfMedia(() -> Platform.runLater(() -> {
+            if (alTerminar != null) alTerminar.run();
+        }));
+    }
+
+    @Override
+    public void cuandoEsteListo(Runnable accion) {
+        if (isListo()) {
+            accion.run();
+        } else {
+            alEstarListo = accion;
+        }
+    }
+
+    @Override
+    public void reproducir() {
+        if (mediaPlayer == null) return;
+        if (mediaPlayer.getStatus() == MediaPlayer.Status.STOPPED) {
+            mediaPlayer.seek(mediaPlayer.getCurrentTime());
+        }
+        mediaPlayer.play();
+    }
+
+    @Override
+    public void pausar() {
+        if (mediaPlayer != null) mediaPlayer.pause();
+    }
+
+    @Override
+    public void detener() {
+        if (mediaPlayer != null) mediaPlayer.stop();
+    }
+
+    @Override
+    public void buscar(long posicionMs) {
+        if (mediaPlayer != null) mediaPlayer.seek(Duration.millis(posicionMs));
+    }
+
+    @Override
+    public long getPosicionMs() {
+        return (mediaPlayer != null) ? (long) mediaPlayer.getCurrentTime().toMillis() : 0;
+    }
+
+    @Override
+    public long getDuracionMs() {
+        if (mediaPlayer == null) return -1;
+        Duration total = mediaPlayer.getTotalDuration();
+        return (total == null || total.isUnknown() || total.isIndefinite()) ? -1 : (long) total.toMillis();
+    }
+
+    @Override
+    public void setVolumen(double volumen) {
+        if (mediaPlayer != null) mediaPlayer.setVolume(volumen);
+    }
+
+    @Override
+    public void setAlTerminar(Runnable accion) {
+        this.alTerminar = accion;
+    }
+
+    @Override
+    public boolean isListo() {
+        if (mediaPlayer == null) return false;
+        MediaPlayer.Status estado = mediaPlayer.getStatus();
+        return estado == MediaPlayer.Status.READY || estado == MediaPlayer.Status.PLAYING
+                || estado == MediaPlayer.Status.PAUSED || estado == MediaPlayer.Status.STOPPED;
+    }
+
+    @Override
+    public boolean isReproduciendo() {
+        return mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING;
+    }
+
+    @Override
+    public boolean isPausado() {
+        return mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PAUSED;
+    }
+
+    @Override
+    public String getRuta() {
+        return ruta;
+    }
+
+    /**
+     * Reproductor de JavaFX subyacente (para funciones propias de JavaFX).
+     */
+    public MediaPlayer getMediaPlayer() {
+        return mediaPlayer;
+    }
+
+    @Override
+    public void liberar() {
+        if (mediaPlayer != null) {
+            mediaPlayer.stop();
+            mediaPlayer.dispose();
+            mediaPlayer = null;
+        }
+        alEstarListo = null;
+        alTerminar = null;
+    }
+}
@@ -5,6 +5,10 @@ package modelo;
  * Cada nodo contiene información de una canción y referencias al nodo anterior
  * y siguiente en la lista de reproducción.
  */
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 
 /**
@@ -15,9 +19,19 @@ public class Nodo implements Serializable {
 
     private static final long serialVersionUID = 1L; // Control de versión para serialización
 
+    // Formato serializado original (la ruta se guarda completa por compatibilidad)
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("nombreCancion", String.class),
+        new ObjectStreamField("rutaCancion", String.class),
+        new ObjectStreamField("siguiente", Nodo.class),
+        new ObjectStreamField("anterior", Nodo.class)
+    };
+
     // Campos de la clase
-    private final String nombreCancion;  // Nombre de la canción (no cambia después de creado)
-    private final String rutaCancion;    // Ruta absoluta del archivo de audio (no cambia)
+    private String nombreCancion;                         // Nombre de la canción (no cambia después de creado)
+    private DiccionarioRutas.Directorio directorio;       // Directorio compartido en el trie de rutas
+    private String archivo;                               // Nombre del archivo dentro del directorio
+    private long idPista;                                 // Identificador estable (huella de la ruta)
     private Nodo siguiente;              // Referencia al siguiente nodo en la lista
     private Nodo anterior;               // Referencia al nodo anterior en la lista
 
@@ -33,7 +47,7 @@ public class Nodo implements Serializable {
      */
     public Nodo(String nombreCancion, String rutaCancion) {
         this.nombreCancion = nombreCancion;
-        this.rutaCancion = rutaCancion;
+        asignarRuta(rutaCancion);
         this.siguiente = null;
         this.anterior = null;
     }
@@ -52,12 +66,40 @@ public class Nodo implements Serializable {
     }
 
     /**
-     * Obtiene la ruta del archivo de audio.
+     * Obtiene la ruta del archivo de audio. La ruta se reconstruye a partir
+     * del diccionario de directorios cada vez que se solicita.
      * 
      * @return Ruta absoluta del archivo
      */
     public String getRutaCancion() {
-        return rutaCancion;
+        return DiccionarioRutas.materializar(directorio, archivo);
+    }
+
+    /**
+     * Obtiene solo el nombre del archivo (sin directorio), sin reconstruir la ruta.
+     * 
+     * @return Nombre del archivo de audio
+     */
+    public String getNombreArchivo() {
+        return archivo;
+    }
+
+    /**
+     * Obtiene el identificador estable de la pista (huella de su ruta).
+     * 
+     * @return Identificador de la pista
+     */
+    public long getIdPista() {
+        return idPista;
+    }
+
+    /**
+     * Obtiene el directorio compartido donde se encuentra el archivo.
+     * 
+     * @return Directorio del trie de rutas
+     */
+    public DiccionarioRutas.Directorio getDirectorio() {
+        return directorio;
     }
 
     /**
@@ -96,6 +138,36 @@ public class Nodo implements Serializable {
         this.anterior = anterior;
     }
 
+    /**
+     * Separa la ruta en directorio internado y nombre de archivo.
+     */
+    private void asignarRuta(String rutaCancion) {
+        this.directorio = DiccionarioRutas.getInstancia().internarDirectorio(rutaCancion);
+        this.archivo = rutaCancion.substring(DiccionarioRutas.indiceNombreArchivo(rutaCancion));
+        this.idPista = DiccionarioRutas.huella(rutaCancion);
+    }
+
+    /* ***********************
+     * SERIALIZACIÓN
+     * ***********************/
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField campos = out.putFields();
+        campos.put("nombreCancion", nombreCancion);
+        campos.put("rutaCancion", getRutaCancion());
+        campos.put("siguiente", siguiente);
+        campos.put("anterior", anterior);
+        out.writeFields();
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField campos = in.readFields();
+        nombreCancion = (String) campos.get("nombreCancion", null);
+        asignarRuta((String) campos.get("rutaCancion", ""));
+        siguiente = (Nodo) campos.get("siguiente", null);
+        anterior = (Nodo) campos.get("anterior", null);
+    }
+
     /* ***********************
      * MÉTODOS SOBREESCRITOS
      * ***********************/
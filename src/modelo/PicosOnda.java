@@ -0,0 +1,123 @@
+package modelo;
+
+/*
+ * PicosOnda.java - Forma de onda resumida de una pista.
+ * Guarda el mínimo y el máximo de cada cubeta de tiempo con 8 bits, de modo
+ * que la onda completa de una canción ocupa unos 2 KB.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+/**
+ * Picos mínimo/máximo de una pista repartidos en un número fijo de cubetas.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class PicosOnda implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int CUBETAS_POR_DEFECTO = 1024;
+
+    private final byte[] minimos;   // Mínimo de cada cubeta (muestra >> 8)
+    private final byte[] maximos;   // Máximo de cada cubeta (muestra >> 8)
+
+    private PicosOnda(byte[] minimos, byte[] maximos) {
+        this.minimos = minimos;
+        this.maximos = maximos;
+    }
+
+    /**
+     * Decodifica el MP3 completo una vez y resume sus picos.
+     * Primero guarda el mínimo y el máximo de cada trama y al final los
+     * agrupa en cubetas, así no hace falta conocer la duración de antemano.
+     *
+     * @param ruta    Ruta del archivo MP3
+     * @param cubetas Cantidad de cubetas del resultado
+     * @return Picos de la pista, o null si no contiene audio decodificable
+     */
+    public static PicosOnda extraer(String ruta, int cubetas) throws Exception {
+        short[] minTrama = new short[4096];
+        short[] maxTrama = new short[4096];
+        int tramas = 0;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(ruta), 1 << 16)) {
+            Bitstream bitstream = new Bitstream(in);
+            Decoder decoder = new Decoder();
+            Header cabecera;
+            while ((cabecera = bitstream.readFrame()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Extracción cancelada");
+                }
+                SampleBuffer salida = (SampleBuffer) decoder.decodeFrame(cabecera, bitstream);
+                short[] pcm = salida.getBuffer();
+                int total = salida.getBufferLength();
+                short min = Short.MAX_VALUE;
+                short max = Short.MIN_VALUE;
+                for (int i = 0; i < total; i++) {
+                    short m = pcm[i];
+                    if (m < min) min = m;
+                    if (m > max) max = m;
+                }
+                if (tramas == minTrama.length) {
+                    minTrama = Arrays.copyOf(minTrama, tramas * 2);
+                    maxTrama = Arrays.copyOf(maxTrama, tramas * 2);
+                }
+                minTrama[tramas] = (total > 0) ? min : 0;
+                maxTrama[tramas] = (total > 0) ? max : 0;
+                tramas++;
+                bitstream.closeFrame();
+            }
+            bitstream.close();
+        }
+        if (tramas == 0) return null;
+
+        byte[] minimos = new byte[cubetas];
+        byte[] maximos = new byte[cubetas];
+        for (int c = 0; c < cubetas; c++) {
+            int desde = (int) ((long) c * tramas / cubetas);
+            int hasta = Math.max(desde + 1, (int) ((long) (c + 1) * tramas / cubetas));
+            short min = Short.MAX_VALUE;
+            short max = Short.MIN_VALUE;
+            for (int t = desde; t < hasta; t++) {
+                if (minTrama[t] < min) min = minTrama[t];
+                if (maxTrama[t] > max) max = maxTrama[t];
+            }
+            minimos[c] = (byte) (min >> 8);
+            maximos[c] = (byte) (max >> 8);
+        }
+        return new PicosOnda(minimos, maximos);
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    public int getCubetas() {
+        return minimos.length;
+    }
+
+    /**
+     * Mínimo normalizado de una cubeta, entre -1.0 y 0.0 (aprox.).
+     */
+    public double getMinimo(int cubeta) {
+        return minimos[cubeta] / 128.0;
+    }
+
+    /**
+     * Máximo normalizado de una cubeta, entre 0.0 y 1.0 (aprox.).
+     */
+    public double getMaximo(int cubeta) {
+        return maximos[cubeta] / 128.0;
+    }
+}
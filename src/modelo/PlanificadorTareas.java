@@ -0,0 +1,395 @@
+package modelo;
+
+/*
+ * PlanificadorTareas.java - Hilos de fondo compartidos, separados por prioridad.
+ * El acceso a disco (portadas, metadatos, guardados, sonoridad, forma de onda)
+ * se envía a uno de tres carriles en lugar de hacerse en el hilo de JavaFX o en
+ * grupos de hilos propios de cada componente. Cada carril tiene su cola acotada
+ * y sus hilos, de modo que un escaneo de la biblioteca nunca retrasa la portada
+ * de la pista que empieza a sonar.
+ */
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import javafx.application.Platform;
+
+/**
+ * Planificador de tareas con carriles de prioridad, colas acotadas, tokens de
+ * cancelación y métricas de profundidad de cola y latencia.
+ *
+ * Una tarea cuyo token se cancela antes de empezar no llega a ejecutarse; una
+ * que ya empezó puede consultar {@link Token#isCancelado()} para detenerse.
+ * Con la cola de un carril llena se descartan primero las tareas canceladas
+ * y, si aún no hay sitio, la nueva se rechaza. Las tareas de un carril de un
+ * solo hilo se ejecutan en el orden en que se enviaron.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class PlanificadorTareas {
+
+    /**
+     * Carriles de trabajo, de mayor a menor prioridad.
+     */
+    public enum Carril {
+        INTERACTIVO("Interactivo", 1, Thread.NORM_PRIORITY + 2, 64),  // Portada actual, precarga de la siguiente, guardados
+        VISIBLE("Visible", 1, Thread.NORM_PRIORITY, 256),             // Metadatos de las filas mostradas, onda de la pista actual
+        FONDO("Fondo", Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+                Thread.MIN_PRIORITY, 1024);                           // Escaneos de la biblioteca, sonoridad, ondas
+
+        private final String nombre;
+        private final int hilos;
+        private final int prioridad;
+        private final int capacidad;
+
+        Carril(String nombre, int hilos, int prioridad, int capacidad) {
+            this.nombre = nombre;
+            this.hilos = hilos;
+            this.prioridad = prioridad;
+            this.capacidad = capacidad;
+        }
+
+        public int getHilos() { return hilos; }
+        public int getCapacidad() { return capacidad; }
+    }
+
+    /**
+     * Token de cancelación compartido por una o varias tareas.
+     */
+    public static final class Token {
+        private volatile boolean cancelado;
+
+        public void cancelar() {
+            cancelado = true;
+        }
+
+        public boolean isCancelado() {
+            return cancelado;
+        }
+    }
+
+    /**
+     * Tarea en cola con el instante en que se envió.
+     */
+    private static final class Tarea {
+        private final Token token;
+        private final Runnable trabajo;
+        private final long enviadaNs = System.nanoTime();
+
+        private Tarea(Token token, Runnable trabajo) {
+            this.token = token;
+            this.trabajo = trabajo;
+        }
+    }
+
+    /**
+     * Contadores de un carril.
+     */
+    public static final class Metricas {
+        private final ArrayBlockingQueue<Tarea> cola;
+        private final AtomicLong enviadas = new AtomicLong();
+        private final AtomicLong completadas = new AtomicLong();
+        private final AtomicLong fallidas = new AtomicLong();
+        private final AtomicLong canceladas = new AtomicLong();
+        private final AtomicLong rechazadas = new AtomicLong();
+        private final AtomicInteger profundidadMaxima = new AtomicInteger();
+        private final AtomicLong esperaTotalNs = new AtomicLong();
+        private final AtomicLong esperaMaximaNs = new AtomicLong();
+        private final AtomicLong ejecucionTotalNs = new AtomicLong();
+
+        private Metricas(ArrayBlockingQueue<Tarea> cola) {
+            this.cola = cola;
+        }
+
+        private void registrarEspera(long ns) {
+            esperaTotalNs.addAndGet(ns);
+            esperaMaximaNs.accumulateAndGet(ns, Math::max);
+        }
+
+        public long getEnviadas() { return enviadas.get(); }
+        public long getCompletadas() { return completadas.get(); }
+        public long getFallidas() { return fallidas.get(); }
+
+        /**
+         * @return Tareas descartadas sin ejecutarse porque su token se canceló
+         */
+        public long getCanceladas() { return canceladas.get(); }
+
+        /**
+         * @return Tareas rechazadas por tener la cola llena
+         */
+        public long getRechazadas() { return rechazadas.get(); }
+
+        public int getProfundidad() { return cola.size(); }
+        public int getProfundidadMaxima() { return profundidadMaxima.get(); }
+
+        /**
+         * @return Tiempo medio entre el envío y el inicio de una tarea
+         */
+        public double getEsperaMediaMs() {
+            long iniciadas = completadas.get() + fallidas.get();
+            return (iniciadas == 0) ? 0 : esperaTotalNs.get() / 1e6 / iniciadas;
+        }
+
+        public double getEsperaMaximaMs() { return esperaMaximaNs.get() / 1e6; }
+
+        public double getEjecucionMediaMs() {
+            long iniciadas = completadas.get() + fallidas.get();
+            return (iniciadas == 0) ? 0 : ejecucionTotalNs.get() / 1e6 / iniciadas;
+        }
+
+        private void reiniciar() {
+            enviadas.set(0);
+            completadas.set(0);
+            fallidas.set(0);
+            canceladas.set(0);
+            rechazadas.set(0);
+            profundidadMaxima.set(cola.size());
+            esperaTotalNs.set(0);
+            esperaMaximaNs.set(0);
+            ejecucionTotalNs.set(0);
+        }
+    }
+
+    /**
+     * Cola e hilos de un carril.
+     */
+    private static final class Cola {
+        private final Carril carril;
+        private final ArrayBlockingQueue<Tarea> tareas;
+        private final Metricas metricas;
+        private final Thread[] hilos;
+
+        private Cola(Carril carril) {
+            this.carril = carril;
+            tareas = new ArrayBlockingQueue<>(carril.capacidad);
+            metricas = new Metricas(tareas);
+            hilos = new Thread[carril.hilos];
+            for (int i = 0; i < hilos.length; i++) {
+                hilos[i] = new Thread(this::atender, "Tareas-" + carril.nombre + "-" + (i + 1));
+                hilos[i].setDaemon(true);
+                hilos[i].setPriority(carril.prioridad);
+                hilos[i].start();
+            }
+        }
+
+        private boolean encolar(Tarea tarea) {
+            metricas.enviadas.incrementAndGet();
+            if (!tareas.offer(tarea)) {
+                // Hacer sitio quitando lo que ya no hace falta
+                tareas.removeIf(t -> {
+                    if (!t.token.isCancelado()) return false;
+                    metricas.canceladas.incrementAndGet();
+                    return true;
+                });
+                if (!tareas.offer(tarea)) {
+                    metricas.rechazadas.incrementAndGet();
+                    return false;
+                }
+            }
+            metricas.profundidadMaxima.accumulateAndGet(tareas.size(), Math::max);
+            return true;
+        }
+
+        private void atender() {
+            try {
+                while (true) {
+                    Tarea tarea = tareas.take();
+                    if (tarea.token.isCancelado()) {
+                        metricas.canceladas.incrementAndGet();
+                        continue;
+                    }
+                    long inicio = System.nanoTime();
+                    metricas.registrarEspera(inicio - tarea.enviadaNs);
+                    try {
+                        tarea.trabajo.run();
+                        metricas.completadas.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        metricas.fallidas.incrementAndGet();
+                        System.err.println("Error en una tarea de " + carril.nombre + ": " + e.getMessage());
+                    }
+                    metricas.ejecucionTotalNs.addAndGet(System.nanoTime() - inicio);
+                }
+            } catch (InterruptedException e) {
+                // Planificador cerrado
+            }
+        }
+
+        private void cerrar() {
+            tareas.clear();
+            for (Thread hilo : hilos) {
+                hilo.interrupt();
+            }
+        }
+    }
+
+    private final Map<Carril, Cola> colas = new EnumMap<>(Carril.class);
+    private volatile boolean cerrado = false;
+
+    /**
+     * Crea los carriles y arranca sus hilos.
+     */
+    public PlanificadorTareas() {
+        for (Carril carril : Carril.values()) {
+            colas.put(carril, new Cola(carril));
+        }
+    }
+
+    /* ***********************
+     * ENVÍO DE TAREAS
+     * ***********************/
+
+    /**
+     * Ejecuta un trabajo en el carril dado.
+     *
+     * @param carril  Carril de prioridad
+     * @param token   Token que permite cancelarlo antes de que empiece
+     * @param trabajo Trabajo a ejecutar
+     * @return false si se rechazó (cola llena o planificador cerrado)
+     */
+    public boolean ejecutar(Carril carril, Token token, Runnable trabajo) {
+        if (cerrado) return false;
+        return colas.get(carril).encolar(new Tarea(token, trabajo));
+    }
+
+    /**
+     * Calcula un valor en el carril dado y lo entrega en el hilo de JavaFX,
+     * salvo que el token se cancele antes.
+     *
+     * @param carril     Carril de prioridad
+     * @param token      Token de cancelación
+     * @param calculo    Trabajo que produce el valor
+     * @param alTerminar Recibe el valor en el hilo de JavaFX
+     * @return false si se rechazó
+     */
+    public <T> boolean calcular(Carril carril, Token token, Supplier<T> calculo, Consumer<T> alTerminar) {
+        return ejecutar(carril, token, () -> {
+            T valor = calculo.get();
+            if (token.isCancelado()) return;
+            Platform.runLater(() -> {
+                if (!token.isCancelado()) alTerminar.accept(valor);
+            });
+        });
+    }
+
+    /**
+     * Reparte un lote entre los hilos del carril: cada hilo toma elementos
+     * de una cola común hasta vaciarla, así el lote ocupa como mucho un
+     * puesto de la cola por hilo sin importar su tamaño. Cancelar el token
+     * detiene el lote entre un elemento y el siguiente.
+     *
+     * @param carril     Carril de prioridad
+     * @param token      Token de cancelación del lote
+     * @param elementos  Elementos a procesar
+     * @param trabajo    Trabajo por elemento (en el hilo del carril)
+     * @param alTerminar Se ejecuta en el carril al procesar el lote completo (puede ser null)
+     * @return false si no se pudo encolar ninguna parte del lote
+     */
+    public <T> boolean repartir(Carril carril, Token token, Collection<T> elementos,
+                                Consumer<T> trabajo, Runnable alTerminar) {
+        ConcurrentLinkedQueue<T> pendientes = new ConcurrentLinkedQueue<>(elementos);
+        int trabajadores = Math.max(1, Math.min(carril.hilos, pendientes.size()));
+        AtomicInteger activos = new AtomicInteger(trabajadores + 1); // +1: este envío
+        Runnable terminar = () -> {
+            if (activos.decrementAndGet() == 0 && alTerminar != null && !token.isCancelado()) {
+                alTerminar.run();
+            }
+        };
+        Runnable drenar = () -> {
+            T elemento;
+            while (!token.isCancelado() && (elemento = pendientes.poll()) != null) {
+                try {
+                    trabajo.accept(elemento);
+                } catch (RuntimeException e) {
+                    System.err.println("Error en un lote de " + carril.nombre + ": " + e.getMessage());
+                }
+            }
+            terminar.run();
+        };
+
+        int aceptados = 0;
+        for (int i = 0; i < trabajadores; i++) {
+            if (ejecutar(carril, token, drenar)) {
+                aceptados++;
+            } else {
+                activos.decrementAndGet();
+            }
+        }
+        if (aceptados == 0) return false;
+        // Si los trabajadores ya terminaron, el cierre del lote no se hace en el hilo que envía
+        if (activos.decrementAndGet() == 0 && alTerminar != null) {
+            ejecutar(carril, token, alTerminar);
+        }
+        return true;
+    }
+
+    /**
+     * Ejecutor que envía cada trabajo al carril dado con un token propio
+     * (p. ej. para escrituras que otra clase deja en segundo plano). Como
+     * indica {@link Executor}, lanza RejectedExecutionException si la cola
+     * del carril está llena, para que quien envía pueda reintentar.
+     */
+    public Executor ejecutor(Carril carril) {
+        return trabajo -> {
+            if (!ejecutar(carril, new Token(), trabajo)) {
+                throw new RejectedExecutionException("cola " + carril.nombre + " llena");
+            }
+        };
+    }
+
+    /**
+     * Espera a que el carril termine lo que ya tiene en cola (p. ej. los
+     * guardados antes de cerrar). En un carril de un solo hilo es exacto: la
+     * marca que se encola se ejecuta después de todo lo anterior.
+     *
+     * @param carril   Carril a vaciar
+     * @param esperaMs Tiempo máximo de espera
+     * @return true si el carril llegó a la marca a tiempo
+     */
+    public boolean vaciar(Carril carril, long esperaMs) {
+        CountDownLatch hecho = new CountDownLatch(1);
+        if (!ejecutar(carril, new Token(), hecho::countDown)) return false;
+        try {
+            return hecho.await(esperaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Detiene los hilos y descarta lo pendiente. Lo que deba llegar al disco
+     * se espera antes con {@link #vaciar(Carril, long)}.
+     */
+    public void cerrar() {
+        cerrado = true;
+        for (Cola cola : colas.values()) {
+            cola.cerrar();
+        }
+    }
+
+    /* ***********************
+     * MÉTRICAS
+     * ***********************/
+
+    public Metricas getMetricas(Carril carril) {
+        return colas.get(carril).metricas;
+    }
+
+    public void reiniciarMetricas() {
+        for (Cola cola : colas.values()) {
+            cola.metricas.reiniciar();
+        }
+    }
+}
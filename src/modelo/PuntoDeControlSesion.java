@@ -0,0 +1,206 @@
+package modelo;
+
+/*
+ * PuntoDeControlSesion.java - Registro de sesión de tamaño fijo en un archivo
+ * mapeado en memoria. Se sobrescribe en el mismo lugar cada pocos segundos,
+ * de modo que un cierre inesperado no pierde la posición de reproducción.
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Punto de control de la sesión de reproducción.
+ *
+ * Estructura del registro (bytes):
+ * - 0   magic, 4  versión, 8 secuencia (impar mientras se escribe)
+ * - 16  id de pista, 24 posición en ms, 32 volumen
+ * - 40  estado, 44 longitud del nombre de lista, 48 nombre de lista (UTF-8)
+ * - 304 tamaño de la cola, 308 ids de la cola
+ *
+ * Escribir no reserva memoria salvo cuando cambia el nombre de la lista. Un
+ * nombre de más de {@link #MAX_NOMBRE_LISTA} bytes se recorta sin partir
+ * caracteres; {@link #esListaLeida(String)} lo reconoce al restaurar.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class PuntoDeControlSesion {
+
+    public static final byte DETENIDO = 0;
+    public static final byte REPRODUCIENDO = 1;
+    public static final byte PAUSADO = 2;
+
+    public static final int MAX_NOMBRE_LISTA = 256;   // Bytes reservados para el nombre de la lista
+    public static final int MAX_COLA = 256;           // Pistas de la cola que caben en el registro
+
+    private static final int MAGIC = 0x4E53434B;      // "NSCK"
+    private static final int VERSION = 1;
+
+    private static final int POS_MAGIC = 0;
+    private static final int POS_VERSION = 4;
+    private static final int POS_SECUENCIA = 8;
+    private static final int POS_ID_PISTA = 16;
+    private static final int POS_POSICION = 24;
+    private static final int POS_VOLUMEN = 32;
+    private static final int POS_ESTADO = 40;
+    private static final int POS_LONG_LISTA = 44;
+    private static final int POS_LISTA = 48;
+    private static final int POS_TAM_COLA = POS_LISTA + MAX_NOMBRE_LISTA;
+    private static final int POS_COLA = POS_TAM_COLA + 4;
+    private static final int TAMANO_REGISTRO = POS_COLA + MAX_COLA * 8;
+
+    private final RandomAccessFile archivo;
+    private final MappedByteBuffer buffer;
+    private long secuencia;
+
+    // Nombre de lista ya codificado (se recodifica solo si cambia)
+    private String ultimaLista;
+    private byte[] ultimaListaBytes = new byte[0];
+
+    // Último registro leído
+    private String listaLeida;
+    private byte[] listaLeidaBytes = new byte[0];
+    private long idPistaLeida;
+    private long posicionLeida;
+    private double volumenLeido;
+    private byte estadoLeido;
+    private long[] colaLeida = new long[0];
+
+    /**
+     * Abre (o crea) el archivo del punto de control y lo mapea en memoria.
+     *
+     * @param ruta Ruta del archivo del registro
+     */
+    public PuntoDeControlSesion(String ruta) throws IOException {
+        archivo = new RandomAccessFile(ruta, "rw");
+        if (archivo.length() != TAMANO_REGISTRO) {
+            archivo.setLength(TAMANO_REGISTRO);
+        }
+        buffer = archivo.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, TAMANO_REGISTRO);
+        secuencia = buffer.getLong(POS_SECUENCIA) & ~1L;
+    }
+
+    /**
+     * Sobrescribe el registro con el estado actual de la sesión.
+     *
+     * @param lista      Nombre de la lista activa (puede ser null)
+     * @param idPista    Identificador de la pista actual
+     * @param posicionMs Posición de reproducción en milisegundos
+     * @param volumen    Volumen entre 0.0 y 1.0
+     * @param estado     DETENIDO, REPRODUCIENDO o PAUSADO
+     * @param cola       Identificadores de la cola de reproducción (puede ser null)
+     * @param tamCola    Cantidad de elementos válidos en la cola
+     */
+    public void escribir(String lista, long idPista, long posicionMs, double volumen,
+                         byte estado, long[] cola, int tamCola) {
+        if (!Objects.equals(lista, ultimaLista)) {
+            ultimaLista = lista;
+            ultimaListaBytes = codificar(lista);
+        }
+        int n = (cola == null) ? 0 : Math.min(tamCola, MAX_COLA);
+
+        buffer.putLong(POS_SECUENCIA, ++secuencia);          // impar: escritura en curso
+        buffer.putInt(POS_MAGIC, MAGIC);
+        buffer.putInt(POS_VERSION, VERSION);
+        buffer.putLong(POS_ID_PISTA, idPista);
+        buffer.putLong(POS_POSICION, posicionMs);
+        buffer.putDouble(POS_VOLUMEN, volumen);
+        buffer.put(POS_ESTADO, estado);
+        buffer.putInt(POS_LONG_LISTA, ultimaListaBytes.length);
+        for (int i = 0; i < ultimaListaBytes.length; i++) {
+            buffer.put(POS_LISTA + i, ultimaListaBytes[i]);
+        }
+        buffer.putInt(POS_TAM_COLA, n);
+        for (int i = 0; i < n; i++) {
+            buffer.putLong(POS_COLA + i * 8, cola[i]);
+        }
+        buffer.putLong(POS_SECUENCIA, ++secuencia);          // par: registro completo
+    }
+
+    private static byte[] codificar(String lista) {
+        if (lista == null) return new byte[0];
+        byte[] bytes = lista.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_NOMBRE_LISTA) return bytes;
+        // Cortar antes del carácter que no cabe entero (sus bytes de continuación son 10xxxxxx)
+        int fin = MAX_NOMBRE_LISTA;
+        while (fin > 0 && (bytes[fin] & 0xC0) == 0x80) fin--;
+        return Arrays.copyOf(bytes, fin);
+    }
+
+    /**
+     * Lee el registro guardado.
+     *
+     * @return true si el registro es válido y estaba completo
+     */
+    public boolean leer() {
+        long secuenciaLeida = buffer.getLong(POS_SECUENCIA);
+        if (buffer.getInt(POS_MAGIC) != MAGIC || buffer.getInt(POS_VERSION) != VERSION
+                || (secuenciaLeida & 1L) != 0) {
+            return false;
+        }
+        int longitud = buffer.getInt(POS_LONG_LISTA);
+        int tamCola = buffer.getInt(POS_TAM_COLA);
+        if (longitud < 0 || longitud > MAX_NOMBRE_LISTA || tamCola < 0 || tamCola > MAX_COLA) {
+            return false;
+        }
+        byte[] nombre = new byte[longitud];
+        for (int i = 0; i < longitud; i++) {
+            nombre[i] = buffer.get(POS_LISTA + i);
+        }
+        listaLeidaBytes = nombre;
+        listaLeida = new String(nombre, StandardCharsets.UTF_8);
+        idPistaLeida = buffer.getLong(POS_ID_PISTA);
+        posicionLeida = buffer.getLong(POS_POSICION);
+        volumenLeido = buffer.getDouble(POS_VOLUMEN);
+        estadoLeido = buffer.get(POS_ESTADO);
+        colaLeida = new long[tamCola];
+        for (int i = 0; i < tamCola; i++) {
+            colaLeida[i] = buffer.getLong(POS_COLA + i * 8);
+        }
+        return true;
+    }
+
+    /**
+     * Fuerza la escritura del registro a disco (se usa al cerrar la aplicación).
+     */
+    public void forzar() {
+        buffer.force();
+    }
+
+    /**
+     * Fuerza la escritura y cierra el archivo.
+     */
+    public void cerrar() {
+        try {
+            forzar();
+            archivo.close();
+        } catch (IOException e) {
+            System.out.println("Error al cerrar el punto de control: " + e.getMessage());
+        }
+    }
+
+    /* ***********************
+     * DATOS LEÍDOS
+     * ***********************/
+
+    public String getLista() { return listaLeida; }
+
+    /**
+     * @param lista Nombre de una lista
+     * @return true si es la lista del registro leído (también si se guardó recortada)
+     */
+    public boolean esListaLeida(String lista) {
+        return Arrays.equals(codificar(lista), listaLeidaBytes);
+    }
+    public long getIdPista() { return idPistaLeida; }
+    public long getPosicionMs() { return posicionLeida; }
+    public double getVolumen() { return volumenLeido; }
+    public byte getEstado() { return estadoLeido; }
+    public long[] getCola() { return colaLeida; }
+}
@@ -0,0 +1,259 @@
+package modelo;
+
+/*
+ * RelojReproduccion.java - Reloj único de la posición de reproducción.
+ * Consulta la posición con un solo temporizador y avisa a cada suscriptor
+ * solo cuando cambia el valor visible con su resolución. Deja de consultar
+ * cuando no hay nada sonando, y con la ventana minimizada solo atiende a los
+ * suscriptores del modelo con un periodo lento.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+import javafx.util.Duration;
+
+/**
+ * Servicio de reloj de reproducción con publicación por cambios.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class RelojReproduccion {
+
+    public static final Duration PERIODO_POR_DEFECTO = Duration.millis(100);
+    public static final Duration PERIODO_SUSPENDIDO = Duration.seconds(1);
+
+    /**
+     * Recibe la posición y la duración (-1 si se desconoce) en milisegundos.
+     */
+    @FunctionalInterface
+    public interface Oyente {
+        void alCambiar(long posicionMs, long duracionMs);
+    }
+
+    /**
+     * Suscriptor con su resolución y el último valor que se le publicó.
+     */
+    private static final class Suscripcion {
+        final long resolucionMs;        // Paso en milisegundos (0 si usa divisiones)
+        final int divisiones;           // Pasos en que se divide la pista (0 si usa milisegundos)
+        final boolean enSegundoPlano;   // Sigue recibiendo avisos con la ventana minimizada
+        final Oyente oyente;
+        long ultimoPaso = Long.MIN_VALUE;
+        long ultimaDuracion = Long.MIN_VALUE;
+
+        Suscripcion(long resolucionMs, int divisiones, boolean enSegundoPlano, Oyente oyente) {
+            this.resolucionMs = resolucionMs;
+            this.divisiones = divisiones;
+            this.enSegundoPlano = enSegundoPlano;
+            this.oyente = oyente;
+        }
+
+        long paso(long posicionMs, long duracionMs) {
+            if (divisiones > 0) {
+                return (duracionMs > 0) ? posicionMs * divisiones / duracionMs : 0;
+            }
+            return posicionMs / resolucionMs;
+        }
+    }
+
+    private final Temporizador temporizador;          // Periodo normal
+    private final Temporizador temporizadorLento;     // Periodo con la ventana minimizada
+    private final LongSupplier posicionMs;
+    private final LongSupplier duracionMs;
+    private final List<Suscripcion> suscripciones = new ArrayList<>();
+    private boolean enMarcha;                         // Hay una pista sonando
+    private boolean suspendido;                       // Ventana minimizada
+
+    // Métricas
+    private long tics;
+    private long publicaciones;
+
+    // Etiquetas "M:SS" ya formateadas, indexadas por segundo
+    private static final int MAX_SEGUNDOS_TABLA = 24 * 3600;
+    private static volatile String[] etiquetas = new String[0];
+
+    /**
+     * @param fabrica    Crea los temporizadores (JavaFX o virtuales)
+     * @param periodo    Periodo de consulta con la ventana visible
+     * @param posicionMs Posición actual en milisegundos
+     * @param duracionMs Duración actual en milisegundos (-1 si se desconoce)
+     */
+    public RelojReproduccion(Temporizador.Fabrica fabrica, Duration periodo,
+                             LongSupplier posicionMs, LongSupplier duracionMs) {
+        this.temporizador = fabrica.crear(periodo, this::tic);
+        this.temporizadorLento = fabrica.crear(PERIODO_SUSPENDIDO, this::tic);
+        this.posicionMs = posicionMs;
+        this.duracionMs = duracionMs;
+    }
+
+    /* ***********************
+     * SUSCRIPCIONES
+     * ***********************/
+
+    /**
+     * Avisa cada vez que la posición cruza un múltiplo de la resolución.
+     *
+     * @param resolucion     Paso visible (por ejemplo, un segundo para una etiqueta)
+     * @param enSegundoPlano true si debe seguir avisando con la ventana minimizada
+     * @param oyente         Receptor de los cambios
+     */
+    public void suscribir(Duration resolucion, boolean enSegundoPlano, Oyente oyente) {
+        long ms = Math.max(1, (long) resolucion.toMillis());
+        suscripciones.add(new Suscripcion(ms, 0, enSegundoPlano, oyente));
+    }
+
+    /**
+     * Avisa cada vez que la posición avanza una fracción de la pista
+     * (por ejemplo, un píxel de la barra de progreso).
+     *
+     * @param divisiones Número de pasos visibles en toda la pista
+     * @param oyente     Receptor de los cambios
+     */
+    public void suscribirFraccion(int divisiones, Oyente oyente) {
+        suscripciones.add(new Suscripcion(0, Math.max(1, divisiones), false, oyente));
+    }
+
+    /* ***********************
+     * CONTROL
+     * ***********************/
+
+    /**
+     * Empieza a consultar la posición (hay una pista sonando).
+     */
+    public void iniciar() {
+        enMarcha = true;
+        actualizarTemporizadores();
+        publicar();
+    }
+
+    /**
+     * Deja de consultar; publica la posición en la que quedó la pista.
+     */
+    public void pausar() {
+        enMarcha = false;
+        actualizarTemporizadores();
+        publicar();
+    }
+
+    /**
+     * Igual que pausar(); los suscriptores reciben la posición sin pista.
+     */
+    public void detener() {
+        pausar();
+    }
+
+    /**
+     * Suspende los suscriptores de la interfaz mientras la ventana está minimizada.
+     * Al volver se publica de inmediato el estado actual.
+     *
+     * @param suspendido true si la ventana está minimizada
+     */
+    public void setSuspendido(boolean suspendido) {
+        if (this.suspendido == suspendido) return;
+        this.suspendido = suspendido;
+        actualizarTemporizadores();
+        if (!suspendido) publicar();
+    }
+
+    public boolean isSuspendido() {
+        return suspendido;
+    }
+
+    /**
+     * Publica ya los cambios pendientes (tras un salto o una pausa).
+     */
+    public void publicar() {
+        tic();
+    }
+
+    private void actualizarTemporizadores() {
+        boolean lento = suspendido && hayEnSegundoPlano();
+        if (enMarcha && !suspendido) {
+            temporizadorLento.detener();
+            temporizador.iniciar();
+        } else if (enMarcha && lento) {
+            temporizador.detener();
+            temporizadorLento.iniciar();
+        } else {
+            temporizador.detener();
+            temporizadorLento.detener();
+        }
+    }
+
+    private boolean hayEnSegundoPlano() {
+        for (Suscripcion s : suscripciones) {
+            if (s.enSegundoPlano) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Lee la posición una vez y avisa solo a quien vea un valor distinto.
+     */
+    private void tic() {
+        tics++;
+        long posicion = posicionMs.getAsLong();
+        long duracion = duracionMs.getAsLong();
+        for (int i = 0; i < suscripciones.size(); i++) {
+            Suscripcion s = suscripciones.get(i);
+            if (suspendido && !s.enSegundoPlano) continue;
+            long paso = s.paso(posicion, duracion);
+            if (paso != s.ultimoPaso || duracion != s.ultimaDuracion) {
+                s.ultimoPaso = paso;
+                s.ultimaDuracion = duracion;
+                publicaciones++;
+                s.oyente.alCambiar(posicion, duracion);
+            }
+        }
+    }
+
+    /* ***********************
+     * ETIQUETAS Y MÉTRICAS
+     * ***********************/
+
+    /**
+     * Texto "M:SS" de una posición, tomado de una tabla ya formateada.
+     *
+     * @param ms Milisegundos (negativo si se desconoce)
+     * @return Etiqueta de tiempo
+     */
+    public static String etiqueta(long ms) {
+        if (ms < 0) return "0:00";
+        long segundos = ms / 1000;
+        if (segundos >= MAX_SEGUNDOS_TABLA) {
+            return String.format("%d:%02d", segundos / 60, segundos % 60);
+        }
+        int segundo = (int) segundos;
+        String[] tabla = etiquetas;
+        if (segundo >= tabla.length) {
+            tabla = ampliarEtiquetas(segundo);
+        }
+        return tabla[segundo];
+    }
+
+    /**
+     * Amplía la tabla hasta cubrir el segundo pedido (al menos una hora).
+     */
+    private static synchronized String[] ampliarEtiquetas(int segundo) {
+        String[] actual = etiquetas;
+        if (segundo < actual.length) return actual;
+        int tamano = Math.max(3600, Math.max(segundo + 1, actual.length * 2));
+        String[] nueva = new String[tamano];
+        System.arraycopy(actual, 0, nueva, 0, actual.length);
+        for (int s = actual.length; s < tamano; s++) {
+            nueva[s] = String.format("%d:%02d", s / 60, s % 60);
+        }
+        etiquetas = nueva;
+        return nueva;
+    }
+
+    public long getTics() {
+        return tics;
+    }
+
+    public long getPublicaciones() {
+        return publicaciones;
+    }
+}
@@ -0,0 +1,309 @@
+package modelo;
+
+/*
+ * RelojVirtual.java - Reloj determinista para ejecutar el reproductor sin audio.
+ * Sustituye a los Timeline de JavaFX y a los motores reales: el tiempo solo
+ * avanza cuando se llama a avanzar(), y los temporizadores y fines de pista se
+ * disparan en orden cronológico en el hilo que llama.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import javafx.util.Duration;
+
+/**
+ * Reloj virtual con fábricas de motores y temporizadores.
+ *
+ * Uso típico (pruebas de carga sin interfaz gráfica):
+ * <pre>
+ *   RelojVirtual reloj = new RelojVirtual(ruta -&gt; 180_000);
+ *   Reproductor r = new Reproductor(reloj::crearMotor, reloj::crearTemporizador);
+ *   r.reproducir("a.mp3");
+ *   reloj.avanzar(200_000);   // termina la pista y dispara el fin de canción
+ * </pre>
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class RelojVirtual {
+
+    public static final long DURACION_POR_DEFECTO_MS = 180_000;
+
+    private final ToLongFunction<String> duracionPorRuta;
+    private final List<TemporizadorVirtual> temporizadores = new ArrayList<>();
+    private final List<MotorVirtual> motores = new ArrayList<>();
+    private long ahoraMs;
+    private long eventos;                       // Temporizadores y fines de pista disparados
+
+    /**
+     * Reloj en el que todas las pistas duran {@link #DURACION_POR_DEFECTO_MS}.
+     */
+    public RelojVirtual() {
+        this(ruta -> DURACION_POR_DEFECTO_MS);
+    }
+
+    /**
+     * @param duracionPorRuta Duración en milisegundos de cada pista
+     */
+    public RelojVirtual(ToLongFunction<String> duracionPorRuta) {
+        this.duracionPorRuta = duracionPorRuta;
+    }
+
+    /* ***********************
+     * FÁBRICAS
+     * ***********************/
+
+    /**
+     * Compatible con {@link MotorAudio.Fabrica}.
+     */
+    public MotorAudio crearMotor(String ruta) {
+        MotorVirtual motor = new MotorVirtual();
+        motores.add(motor);
+        return motor;
+    }
+
+    /**
+     * Compatible con {@link Temporizador.Fabrica}.
+     */
+    public Temporizador crearTemporizador(Duration periodo, Runnable accion) {
+        TemporizadorVirtual temporizador = new TemporizadorVirtual((long) Math.max(1, periodo.toMillis()), accion);
+        temporizadores.add(temporizador);
+        return temporizador;
+    }
+
+    /* ***********************
+     * TIEMPO
+     * ***********************/
+
+    /**
+     * Avanza el reloj disparando, en orden, cada evento que caiga en el intervalo.
+     * A igual instante, los temporizadores van antes que los fines de pista.
+     *
+     * @param ms Milisegundos a avanzar
+     */
+    public void avanzar(long ms) {
+        long objetivo = ahoraMs + Math.max(0, ms);
+        while (true) {
+            long siguiente = Long.MAX_VALUE;
+            TemporizadorVirtual temporizador = null;
+            MotorVirtual motor = null;
+            for (int i = 0; i < temporizadores.size(); i++) {
+                TemporizadorVirtual t = temporizadores.get(i);
+                if (t.activo && t.proximoMs < siguiente) {
+                    siguiente = t.proximoMs;
+                    temporizador = t;
+                }
+            }
+            for (int i = 0; i < motores.size(); i++) {
+                MotorVirtual m = motores.get(i);
+                if (m.reproduciendo && m.finMs() < siguiente) {
+                    siguiente = m.finMs();
+                    temporizador = null;
+                    motor = m;
+                }
+            }
+            if (siguiente > objetivo) break;
+
+            ahoraMs = Math.max(ahoraMs, siguiente);
+            eventos++;
+            if (temporizador != null) {
+                temporizador.proximoMs += temporizador.periodoMs;
+                temporizador.accion.run();
+            } else {
+                motor.terminar();
+            }
+        }
+        ahoraMs = objetivo;
+    }
+
+    public long getAhoraMs() {
+        return ahoraMs;
+    }
+
+    public long getEventos() {
+        return eventos;
+    }
+
+    /**
+     * Motores que aún no se han liberado.
+     */
+    public int getMotoresVivos() {
+        return motores.size();
+    }
+
+    /**
+     * Volumen aplicado al motor que está sonando, para comprobar desde las
+     * pruebas la ganancia que llega al motor (volumen y normalización).
+     *
+     * @return Volumen lineal, o -1 si no suena ningún motor
+     */
+    public double getVolumenSonando() {
+        for (int i = 0; i < motores.size(); i++) {
+            MotorVirtual m = motores.get(i);
+            if (m.reproduciendo) return m.getVolumen();
+        }
+        return -1;
+    }
+
+    /* ***********************
+     * IMPLEMENTACIONES
+     * ***********************/
+
+    private final class TemporizadorVirtual implements Temporizador {
+
+        private final long periodoMs;
+        private final Runnable accion;
+        private boolean activo;
+        private long proximoMs;
+        private long restanteMs = -1;           // Tiempo hasta el disparo al pausar
+
+        TemporizadorVirtual(long periodoMs, Runnable accion) {
+            this.periodoMs = periodoMs;
+            this.accion = accion;
+        }
+
+        @Override
+        public void iniciar() {
+            if (activo) return;
+            proximoMs = ahoraMs + ((restanteMs > 0) ? restanteMs : periodoMs);
+            restanteMs = -1;
+            activo = true;
+        }
+
+        @Override
+        public void pausar() {
+            if (!activo) return;
+            restanteMs = proximoMs - ahoraMs;
+            activo = false;
+        }
+
+        @Override
+        public void detener() {
+            activo = false;
+            restanteMs = -1;
+        }
+
+        @Override
+        public boolean isActivo() {
+            return activo;
+        }
+    }
+
+    private final class MotorVirtual implements MotorAudio {
+
+        private String ruta;
+        private long duracionMs = -1;
+        private long posicionBaseMs;            // Posición al último cambio de estado
+        private long inicioRelojMs;             // Instante del reloj en que empezó a sonar
+        private boolean reproduciendo;
+        private boolean pausado;
+        private double volumen = 1.0;
+        private Runnable alTerminar;
+
+        @Override
+        public void preparar(String ruta) {
+            this.ruta = ruta;
+            this.duracionMs = Math.max(0, duracionPorRuta.applyAsLong(ruta));
+        }
+
+        @Override
+        public void cuandoEsteListo(Runnable accion) {
+            accion.run();
+        }
+
+        @Override
+        public void reproducir() {
+            if (ruta == null || reproduciendo) return;
+            if (posicionBaseMs >= duracionMs) posicionBaseMs = 0;
+            inicioRelojMs = ahoraMs;
+            reproduciendo = true;
+            pausado = false;
+        }
+
+        @Override
+        public void pausar() {
+            if (ruta == null) return;
+            posicionBaseMs = getPosicionMs();
+            reproduciendo = false;
+            pausado = true;
+        }
+
+        @Override
+        public void detener() {
+            reproduciendo = false;
+            pausado = false;
+            posicionBaseMs = 0;
+        }
+
+        @Override
+        public void buscar(long posicionMs) {
+            posicionBaseMs = Math.max(0, Math.min(posicionMs, duracionMs));
+            inicioRelojMs = ahoraMs;
+        }
+
+        @Override
+        public long getPosicionMs() {
+            if (!reproduciendo) return posicionBaseMs;
+            return Math.min(duracionMs, posicionBaseMs + (ahoraMs - inicioRelojMs));
+        }
+
+        @Override
+        public long getDuracionMs() {
+            return duracionMs;
+        }
+
+        @Override
+        public void setVolumen(double volumen) {
+            this.volumen = volumen;
+        }
+
+        double getVolumen() {
+            return volumen;
+        }
+
+        @Override
+        public void setAlTerminar(Runnable accion) {
+            this.alTerminar = accion;
+        }
+
+        @Override
+        public boolean isListo() {
+            return ruta != null;
+        }
+
+        @Override
+        public boolean isReproduciendo() {
+            return reproduciendo;
+        }
+
+        @Override
+        public boolean isPausado() {
+            return pausado;
+        }
+
+        @Override
+        public String getRuta() {
+            return ruta;
+        }
+
+        @Override
+        public void liberar() {
+            reproduciendo = false;
+            pausado = false;
+            ruta = null;
+            alTerminar = null;
+            motores.remove(this);
+        }
+
+        long finMs() {
+            return inicioRelojMs + (duracionMs - posicionBaseMs);
+        }
+
+        void terminar() {
+            posicionBaseMs = duracionMs;
+            reproduciendo = false;
+            if (alTerminar != null) alTerminar.run();
+        }
+    }
+}
@@ -2,39 +2,70 @@ package modelo;
 
 /*
  * Reproductor.java - Controla la reproducción de archivos de audio.
- * Maneja la creación del MediaPlayer, control de reproducción, temporización
- * y propiedades observables para la interfaz de usuario.
+ * Maneja la creación de los motores de audio, control de reproducción,
+ * temporización y propiedades observables para la interfaz de usuario.
  */
 
-import javafx.scene.media.Media;
-import javafx.scene.media.MediaPlayer;
 import javafx.util.Duration;
-import java.io.File;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.application.Platform;
 import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.SimpleDoubleProperty;
+import java.util.function.Supplier;
 
 /**
  * Clase que gestiona la reproducción de archivos de audio.
  * Proporciona métodos para controlar la reproducción y propiedades
  * observables para sincronización con la interfaz gráfica.
- * 
+ *
+ * La reproducción se delega en {@link MotorAudio} y la temporización en
+ * {@link Temporizador}; con las fábricas de {@link RelojVirtual} el
+ * reproductor funciona sin JavaFX ni dispositivo de audio.
+ *
  * @author Notasoft
  * @version 1.0
  */
 public class Reproductor {
 
+    // Motores y temporizadores
+    private final MotorAudio.Fabrica fabricaMotores;
+    private final Temporizador.Fabrica fabricaTemporizadores;
+
     // Reproducción
-    private MediaPlayer mediaPlayer;                  // Reproductor de JavaFX
+    private MotorAudio motor;                         // Motor de la pista actual
     private String rutaActual;                        // Ruta del archivo actual
-    private Timeline timelineTemporizador;            // Temporizador para actualizar UI
+    private RelojReproduccion reloj;                  // Reloj único de la posición
     private boolean repetirUna = false;               // Modo repetición
 
+    // Reproducción sin pausas (gapless)
+    private static final Duration ANTICIPACION_PRECARGA = Duration.seconds(10);
+    private boolean modoSinPausas = false;            // Precargar la siguiente pista
+    private Supplier<String> proveedorSiguiente;      // Indica la ruta de la siguiente pista
+    private MotorAudio motorPrecargado;               // Motor preparado para la siguiente pista
+    private String rutaPrecargada;                    // Ruta del motor precargado
+
+    // Fundido cruzado (crossfade)
+    private static final Duration PASO_FUNDIDO = Duration.millis(40);
+    private Duration duracionFundido = Duration.ZERO; // Duración del fundido (cero = sin fundido)
+    private Temporizador motorFundido;                // Planificador único que ajusta ambos volúmenes
+    private MotorAudio motorSaliente;                 // Pista que se desvanece durante el fundido
+    private long inicioFundidoMs;                     // Posición de la entrante al empezar el fundido
+    private boolean fundidoSolicitado = false;        // El avance en curso lo pidió el fundido
+
+    // Motor alternativo JLayer para MP3 (se activa con -Dnotasoft.motor=jlayer)
+    public static final String PROPIEDAD_MOTOR = "notasoft.motor";
+
+    // Normalización de sonoridad (ganancia precalculada por pista o por álbum)
+    public enum ModoNormalizacion { DESACTIVADA, PISTA, ALBUM }
+    public static final double SONORIDAD_OBJETIVO = -18.0;   // LUFS de referencia
+    private ModoNormalizacion modoNormalizacion = ModoNormalizacion.DESACTIVADA;
+    private double gananciaActual = 1.0;              // Ganancia de la pista actual
+    private double gananciaSaliente = 1.0;            // Ganancia de la pista que se desvanece
+    private PlanificadorTareas planificador;          // Lee las ganancias fuera del hilo de control (null: en el mismo hilo)
+    private PlanificadorTareas.Token tokenGanancia = new PlanificadorTareas.Token(); // Lectura de la ganancia actual
+    private String rutaGananciaPrecargada;            // Pista precargada cuya ganancia ya se leyó
+    private double gananciaPrecargada = 1.0;
+
     // Propiedades para la UI
     private final StringProperty tiempoTranscurrido = new SimpleStringProperty("00:00");
     private final StringProperty tiempoTotal       = new SimpleStringProperty("00:00");
@@ -46,39 +77,99 @@ public class Reproductor {
     // Manejador de fin de canción
     private Runnable onEndOfMediaHandler;
 
+    // Escucha en curso (para el historial de reproducción)
+    private static final long MAX_AVANCE_ESCUCHA_MS = 2500;   // Avances mayores son saltos, no escucha
+    private OyenteEscucha oyenteEscucha;
+    private long inicioEscucha;                       // Inicio de la escucha (ms desde la época, 0 si no hay)
+    private long escuchadoMs;                         // Milisegundos realmente escuchados
+    private long ultimaPosicionEscucha;               // Posición en la última medición
+
+    /**
+     * Recibe cada escucha terminada (cambio de pista, fin, detención o repetición).
+     */
+    @FunctionalInterface
+    public interface OyenteEscucha {
+        void escuchaFinalizada(String ruta, long inicioMs, long escuchadoMs, long duracionMs);
+    }
+
     /**
-     * Constructor - Inicializa volumen y temporizador.
+     * Constructor - Usa MediaPlayer (o JLayer para MP3 si está habilitado)
+     * y temporizadores de JavaFX.
      */
     public Reproductor() {
+        this(Reproductor::crearMotorPorDefecto, TemporizadorFX::new);
+    }
+
+    /**
+     * Constructor con motores y temporizadores a medida (por ejemplo, los de
+     * {@link RelojVirtual} para pruebas sin interfaz gráfica).
+     * @param fabricaMotores        Crea el motor de cada pista
+     * @param fabricaTemporizadores Crea las tareas periódicas
+     */
+    public Reproductor(MotorAudio.Fabrica fabricaMotores, Temporizador.Fabrica fabricaTemporizadores) {
+        this.fabricaMotores = fabricaMotores;
+        this.fabricaTemporizadores = fabricaTemporizadores;
         this.volumenProperty.set(1.0);
-        inicializarTemporizador();
+        inicializarReloj();
+        inicializarMotorFundido();
 
-        // Escucha cambios en el volumen
+        // Escucha cambios en el volumen (durante un fundido lo aplica el motor de fundido)
         volumenProperty.addListener((obs, oldVal, newVal) -> {
             this.ultimoVolumen = newVal.doubleValue();
-            if (mediaPlayer != null) {
-                mediaPlayer.setVolume(newVal.doubleValue());
-            }
+            aplicarVolumen();
         });
     }
 
     /**
-     * Inicializa el temporizador para actualizar el tiempo cada segundo.
+     * Motor de la aplicación: JLayer para MP3 con -Dnotasoft.motor=jlayer,
+     * MediaPlayer en cualquier otro caso.
+     */
+    private static MotorAudio crearMotorPorDefecto(String ruta) {
+        boolean usarJLayer = "jlayer".equalsIgnoreCase(System.getProperty(PROPIEDAD_MOTOR));
+        if (usarJLayer && ruta != null && ruta.toLowerCase().endsWith(".mp3")) {
+            return new MotorJLayer(
+                    Integer.getInteger("notasoft.jlayer.buffer", MotorJLayer.MUESTRAS_BUFFER_POR_DEFECTO),
+                    Integer.getInteger("notasoft.jlayer.bloque", MotorJLayer.MUESTRAS_BLOQUE_POR_DEFECTO),
+                    Boolean.getBoolean("notasoft.jlayer.sinSalida"));
+        }
+        return new MotorJavaFX();
+    }
+
+    /**
+     * Crea y prepara el motor de una ruta.
+     */
+    private MotorAudio abrirMotor(String ruta) throws Exception {
+        MotorAudio nuevo = fabricaMotores.crear(ruta);
+        try {
+            nuevo.preparar(ruta);
+        } catch (Exception e) {
+            nuevo.liberar();
+            throw e;
+        }
+        return nuevo;
+    }
+
+    /**
+     * Crea el reloj de reproducción; el reproductor lo consulta cada segundo
+     * (también con la ventana minimizada) para precargar y fundir pistas.
      */
-    private void inicializarTemporizador() {
-        timelineTemporizador = new Timeline(
-            new KeyFrame(Duration.seconds(1), e -> actualizarTiempo())
-        );
-        timelineTemporizador.setCycleCount(Animation.INDEFINITE);
+    private void inicializarReloj() {
+        reloj = new RelojReproduccion(fabricaTemporizadores, RelojReproduccion.PERIODO_POR_DEFECTO,
+                () -> (motor != null) ? motor.getPosicionMs() : 0,
+                () -> (motor != null) ? motor.getDuracionMs() : -1);
+        reloj.suscribir(Duration.seconds(1), true, (posicionMs, duracionMs) -> actualizarTiempo());
     }
 
     /**
      * Actualiza el tiempo transcurrido y total en la interfaz.
      */
     private void actualizarTiempo() {
-        if (mediaPlayer != null) {
-            tiempoTranscurrido.set(formatearTiempo(mediaPlayer.getCurrentTime()));
-            tiempoTotal.set(formatearTiempo(mediaPlayer.getTotalDuration()));
+        if (motor != null) {
+            acumularEscucha();
+            tiempoTranscurrido.set(RelojReproduccion.etiqueta(motor.getPosicionMs()));
+            tiempoTotal.set(RelojReproduccion.etiqueta(motor.getDuracionMs()));
+            precargarSiguienteSiCorresponde();
+            iniciarFundidoSiCorresponde();
         }
     }
 
@@ -89,12 +180,7 @@ public class Reproductor {
      */
     public String formatearTiempo(Duration tiempo) {
         if (tiempo == null || tiempo.isUnknown()) return "0:00";
-
-        long segundosTotales = (long) Math.floor(tiempo.toSeconds());
-        long minutos         = segundosTotales / 60;
-        long segundos        = segundosTotales % 60;
-
-        return String.format("%d:%02d", minutos, segundos);
+        return RelojReproduccion.etiqueta((long) Math.floor(tiempo.toMillis()));
     }
 
     /**
@@ -102,8 +188,8 @@ public class Reproductor {
      * @return Cadena con formato MM:SS
      */
     public String getDuracionFormateada() {
-        return (mediaPlayer != null && mediaPlayer.getTotalDuration() != null)
-            ? formatearTiempo(mediaPlayer.getTotalDuration())
+        return (getDuracion() != null)
+            ? formatearTiempo(getDuracion())
             : "00:00";
     }
 
@@ -127,37 +213,84 @@ public class Reproductor {
      * @param rutaCancion Ruta absoluta del archivo
      */
     public void reproducir(String rutaCancion) {
-        if (mediaPlayer != null && rutaCancion.equals(rutaActual)
-                && mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING) {
+        reproducir(rutaCancion, Duration.ZERO, false);
+    }
+
+    /**
+     * Reproduce una canción empezando en una posición dada (restauración de sesión).
+     * @param rutaCancion     Ruta absoluta del archivo
+     * @param posicionInicial Posición desde la que empezar
+     * @param iniciarPausado  true para dejarla cargada y en pausa
+     */
+    public void reproducir(String rutaCancion, Duration posicionInicial, boolean iniciarPausado) {
+        if (motor != null && rutaCancion.equals(rutaActual) && motor.isReproduciendo()) {
             return;
         }
 
-        detener();
+        // Un avance pedido por el fundido conserva la pista actual para desvanecerla
+        boolean cruzar = fundidoSolicitado && estaPrecargada(rutaCancion);
+        MotorAudio precargado = tomarPrecarga(rutaCancion);
+        if (cruzar) {
+            entregarAlFundido();
+        } else {
+            liberarActual();
+        }
+        resolverGanancia(rutaCancion);
 
         try {
-            Media media = new Media(new File(rutaCancion).toURI().toString());
-            mediaPlayer = new MediaPlayer(media);
-            rutaActual  = rutaCancion;
+            MotorAudio actual = (precargado != null) ? precargado : abrirMotor(rutaCancion);
+            motor      = actual;
+            rutaActual = rutaCancion;
 
-            mediaPlayer.setVolume(volumenProperty.get());
+            actual.setVolumen(cruzar ? 0.0 : volumenEfectivo());
+            actual.setAlTerminar(() -> finDePista(actual));
 
-            mediaPlayer.setOnReady(() -> {
+            // Un motor precargado ya está listo: se inicia sin esperar
+            actual.cuandoEsteListo(() -> {
+                if (motor != actual) return;
                 tiempoTranscurrido.set("00:00");
-                tiempoTotal.set(formatearTiempo(mediaPlayer.getTotalDuration()));
-                timelineTemporizador.play();
-                mediaPlayer.play();
-            });
-
-            mediaPlayer.setOnEndOfMedia(() -> Platform.runLater(() -> {
-                if (!repetirUna) {
-                    if (onEndOfMediaHandler != null) onEndOfMediaHandler.run();
+                tiempoTotal.set(formatearTiempo(getDuracion()));
+                if (posicionInicial != null && posicionInicial.greaterThan(Duration.ZERO)) {
+                    actual.buscar((long) posicionInicial.toMillis());
+                }
+                iniciarEscucha();
+                if (iniciarPausado) {
+                    actual.pausar();
+                    reloj.publicar();
                 } else {
-                    reiniciarReproduccion();
+                    actual.reproducir();
+                    reloj.iniciar();
+                }
+                if (cruzar) {
+                    inicioFundidoMs = actual.getPosicionMs();
+                    motorFundido.iniciar();
                 }
-            }));
+            });
 
         } catch (Exception e) {
             System.err.println("Error al reproducir: " + e.getMessage());
+            motor      = null;
+            rutaActual = null;
+        }
+    }
+
+    /**
+     * Fin de pista de un motor (en el hilo de control). Los avisos de motores
+     * que ya no son el actual se ignoran.
+     */
+    private void finDePista(MotorAudio terminado) {
+        if (terminado != motor) {
+            return;
+        }
+        if (!repetirUna) {
+            if (onEndOfMediaHandler != null) onEndOfMediaHandler.run();
+        } else {
+            cerrarEscucha();
+            motor.buscar(0);
+            iniciarEscucha();
+            motor.reproducir();
+            reiniciarTiempos();
+            reloj.publicar();
         }
     }
 
@@ -173,9 +306,10 @@ public class Reproductor {
      * Pausa la reproducción.
      */
     public void pausar() {
-        if (mediaPlayer != null && mediaPlayer.getStatus() == MediaPlayer.Status.PLAYING) {
-            mediaPlayer.pause();
-            timelineTemporizador.pause();
+        terminarFundido();
+        if (motor != null && motor.isReproduciendo()) {
+            motor.pausar();
+            reloj.pausar();
         }
     }
 
@@ -183,33 +317,276 @@ public class Reproductor {
      * Reanuda la reproducción si está pausada o detenida.
      */
     public void reanudar() {
-        if (mediaPlayer != null) {
-            switch (mediaPlayer.getStatus()) {
-                case PAUSED:
-                    mediaPlayer.play();
-                    timelineTemporizador.play();
-                    break;
-                case STOPPED:
-                case READY:
-                    mediaPlayer.seek(mediaPlayer.getCurrentTime());
-                    mediaPlayer.play();
-                    timelineTemporizador.play();
-                    break;
-            }
+        if (motor != null && motor.isListo() && !motor.isReproduciendo()) {
+            motor.reproducir();
+            reloj.iniciar();
         }
     }
 
     /**
-     * Detiene la reproducción y libera recursos.
+     * Detiene la reproducción y libera recursos, incluida la pista precargada.
      */
     public void detener() {
-        if (mediaPlayer != null) {
-            timelineTemporizador.stop();
-            mediaPlayer.stop();
-            mediaPlayer.dispose();
-            mediaPlayer = null;
-            rutaActual  = null;
+        liberarActual();
+        descartarPrecarga();
+    }
+
+    /**
+     * Detiene y libera solo el motor actual.
+     */
+    private void liberarActual() {
+        terminarFundido();
+        if (motor != null) {
+            cerrarEscucha();
+            motor.liberar();
+            motor      = null;
+            rutaActual = null;
             reiniciarTiempos();
+            reloj.detener();
+        }
+    }
+
+    // ======== HISTORIAL DE ESCUCHA ========
+
+    /**
+     * Establece quién recibe las escuchas terminadas.
+     * @param oyente Receptor (null para ninguno)
+     */
+    public void setOyenteEscucha(OyenteEscucha oyente) {
+        this.oyenteEscucha = oyente;
+    }
+
+    private void iniciarEscucha() {
+        inicioEscucha = System.currentTimeMillis();
+        escuchadoMs = 0;
+        ultimaPosicionEscucha = motor.getPosicionMs();
+    }
+
+    /**
+     * Suma lo que avanzó la posición desde la última medición; los saltos
+     * hacia delante o atrás no cuentan como escucha.
+     */
+    private void acumularEscucha() {
+        if (inicioEscucha == 0) return;
+        long posicion = motor.getPosicionMs();
+        long avance = posicion - ultimaPosicionEscucha;
+        if (avance > 0 && avance <= MAX_AVANCE_ESCUCHA_MS) {
+            escuchadoMs += avance;
+        }
+        ultimaPosicionEscucha = posicion;
+    }
+
+    /**
+     * Termina la escucha de la pista actual y la notifica.
+     */
+    private void cerrarEscucha() {
+        if (inicioEscucha == 0 || motor == null) return;
+        acumularEscucha();
+        long inicio = inicioEscucha;
+        inicioEscucha = 0;
+        if (oyenteEscucha != null && rutaActual != null) {
+            oyenteEscucha.escuchaFinalizada(rutaActual, inicio, escuchadoMs, motor.getDuracionMs());
+        }
+    }
+
+    // ======== REPRODUCCIÓN SIN PAUSAS ========
+
+    /**
+     * Activa o desactiva la precarga de la siguiente pista.
+     * @param activo true para reproducir sin pausas entre pistas
+     */
+    public void setModoSinPausas(boolean activo) {
+        this.modoSinPausas = activo;
+        if (!activo) {
+            descartarPrecarga();
+        }
+    }
+
+    public boolean isModoSinPausas() {
+        return modoSinPausas;
+    }
+
+    /**
+     * Establece quién decide cuál es la siguiente pista (cursor de la lista,
+     * orden aleatorio, etc.). Debe devolver null si no hay siguiente.
+     * @param proveedor Proveedor de la ruta de la siguiente pista
+     */
+    public void setProveedorSiguiente(Supplier<String> proveedor) {
+        this.proveedorSiguiente = proveedor;
+    }
+
+    /**
+     * Indica si la ruta dada es la que está precargada.
+     * @param ruta Ruta a comprobar
+     * @return true si reproducirla será inmediato
+     */
+    public boolean estaPrecargada(String ruta) {
+        return motorPrecargado != null && ruta != null && ruta.equals(rutaPrecargada);
+    }
+
+    /**
+     * Milisegundos que faltan para terminar la pista actual (-1 si no se sabe).
+     */
+    private long restanteMs() {
+        long total = motor.getDuracionMs();
+        return (total < 0) ? -1 : total - motor.getPosicionMs();
+    }
+
+    /**
+     * Prepara el motor de la siguiente pista cuando falta poco para
+     * terminar la actual. Si la siguiente pista cambió, descarta la precarga anterior.
+     */
+    private void precargarSiguienteSiCorresponde() {
+        if ((!modoSinPausas && !isFundidoActivo()) || repetirUna || proveedorSiguiente == null
+                || !motor.isReproduciendo()) {
+            return;
+        }
+        long restante = restanteMs();
+        if (restante < 0 || restante > ANTICIPACION_PRECARGA.add(duracionFundido).toMillis()) {
+            return;
+        }
+
+        String siguiente = proveedorSiguiente.get();
+        if (siguiente == null || siguiente.equals(rutaPrecargada) || siguiente.equals(rutaActual)) {
+            return;
+        }
+        descartarPrecarga();
+        try {
+            motorPrecargado = abrirMotor(siguiente);
+            motorPrecargado.setVolumen(volumenProperty.get());
+            rutaPrecargada = siguiente;
+            precargarGanancia(siguiente);
+        } catch (Exception e) {
+            System.err.println("Error al precargar: " + e.getMessage());
+            motorPrecargado = null;
+            rutaPrecargada = null;
+        }
+    }
+
+    /**
+     * Entrega el motor precargado si corresponde a la ruta pedida;
+     * en otro caso lo descarta (el usuario saltó a otra pista).
+     */
+    private MotorAudio tomarPrecarga(String ruta) {
+        if (estaPrecargada(ruta)) {
+            MotorAudio precargado = motorPrecargado;
+            motorPrecargado = null;
+            rutaPrecargada = null;
+            return precargado;
+        }
+        descartarPrecarga();
+        return null;
+    }
+
+    /**
+     * Libera el motor precargado, si existe.
+     */
+    private void descartarPrecarga() {
+        if (motorPrecargado != null) {
+            motorPrecargado.liberar();
+            motorPrecargado = null;
+        }
+        rutaPrecargada = null;
+    }
+
+    // ======== FUNDIDO CRUZADO ========
+
+    /**
+     * Establece la duración del fundido entre pistas.
+     * @param duracion Duración del solapamiento (cero o null para desactivarlo)
+     */
+    public void setDuracionFundido(Duration duracion) {
+        this.duracionFundido = (duracion != null) ? duracion : Duration.ZERO;
+    }
+
+    public Duration getDuracionFundido() {
+        return duracionFundido;
+    }
+
+    public boolean isFundidoActivo() {
+        return duracionFundido.greaterThan(Duration.ZERO);
+    }
+
+    /**
+     * Crea el planificador único del fundido; solo corre mientras hay uno en curso.
+     */
+    private void inicializarMotorFundido() {
+        motorFundido = fabricaTemporizadores.crear(PASO_FUNDIDO, this::pasoFundido);
+    }
+
+    /**
+     * Cuando la pista actual entra en la ventana de fundido y la siguiente ya
+     * está lista, pide el avance al controlador como si la pista hubiera
+     * terminado; reproducir() detecta la solicitud y solapa ambas pistas.
+     */
+    private void iniciarFundidoSiCorresponde() {
+        if (!isFundidoActivo() || repetirUna || motorSaliente != null
+                || onEndOfMediaHandler == null || motorPrecargado == null
+                || !motorPrecargado.isListo() || !motor.isReproduciendo()) {
+            return;
+        }
+        long restante = restanteMs();
+        if (restante < 0 || restante > duracionFundido.toMillis()) {
+            return;
+        }
+
+        fundidoSolicitado = true;
+        try {
+            onEndOfMediaHandler.run();
+        } finally {
+            fundidoSolicitado = false;
+        }
+    }
+
+    /**
+     * Convierte la pista actual en la saliente del fundido.
+     */
+    private void entregarAlFundido() {
+        terminarFundido();
+        cerrarEscucha();
+        reloj.detener();
+        motorSaliente = motor;
+        gananciaSaliente = gananciaActual;
+        motor = null;
+        rutaActual = null;
+        if (motorSaliente != null) {
+            motorSaliente.setAlTerminar(this::terminarFundido);
+        }
+    }
+
+    /**
+     * Paso del planificador: curvas de igual potencia (coseno para la saliente,
+     * seno para la entrante) sobre el volumen actual del usuario. El avance se
+     * mide con la posición de la pista entrante.
+     */
+    private void pasoFundido() {
+        if (motorSaliente == null || motor == null) {
+            terminarFundido();
+            return;
+        }
+        double duracionMs = duracionFundido.toMillis();
+        double t = (duracionMs <= 0) ? 1.0
+                : Math.min(1.0, Math.max(0, motor.getPosicionMs() - inicioFundidoMs) / duracionMs);
+        double volumen = volumenProperty.get();
+        motorSaliente.setVolumen(Math.min(1.0, volumen * gananciaSaliente) * Math.cos(t * Math.PI / 2));
+        motor.setVolumen(volumenEfectivo() * Math.sin(t * Math.PI / 2));
+        if (t >= 1.0) {
+            terminarFundido();
+        }
+    }
+
+    /**
+     * Termina el fundido en curso: libera la pista saliente y deja la entrante
+     * con el volumen del usuario.
+     */
+    private void terminarFundido() {
+        motorFundido.detener();
+        if (motorSaliente != null) {
+            motorSaliente.liberar();
+            motorSaliente = null;
+            if (motor != null) {
+                motor.setVolumen(volumenEfectivo());
+            }
         }
     }
 
@@ -217,9 +594,10 @@ public class Reproductor {
      * Reinicia la reproducción desde el inicio.
      */
     public void reiniciarReproduccion() {
-        if (mediaPlayer != null) {
-            mediaPlayer.seek(Duration.ZERO);
+        if (motor != null) {
+            motor.buscar(0);
             reiniciarTiempos();
+            reloj.publicar();
         }
     }
 
@@ -227,8 +605,8 @@ public class Reproductor {
 
     public void setModoRepeticion(boolean repetir) {
         this.repetirUna = repetir;
-        if (mediaPlayer != null) {
-            mediaPlayer.setCycleCount(repetir ? MediaPlayer.INDEFINITE : 1);
+        if (repetir) {
+            descartarPrecarga();
         }
     }
 
@@ -253,9 +631,123 @@ public class Reproductor {
     public void setVolumen(double volumen) {
         this.ultimoVolumen = volumen;
         volumenProperty.set(volumen);
-        if (mediaPlayer != null) {
-            mediaPlayer.setVolume(volumen);
+        aplicarVolumen();
+    }
+
+    /**
+     * Volumen que recibe el motor: el del usuario por la ganancia de normalización.
+     */
+    private double volumenEfectivo() {
+        return Math.min(1.0, volumenProperty.get() * gananciaActual);
+    }
+
+    /**
+     * Aplica el volumen efectivo (durante un fundido lo aplica el motor de fundido).
+     */
+    private void aplicarVolumen() {
+        if (motor != null && motorSaliente == null) {
+            motor.setVolumen(volumenEfectivo());
+        }
+    }
+
+    // ======== NORMALIZACIÓN ========
+
+    /**
+     * Elige cómo se normaliza la sonoridad y la aplica a la pista actual.
+     * @param modo DESACTIVADA, PISTA o ALBUM
+     */
+    public void setModoNormalizacion(ModoNormalizacion modo) {
+        this.modoNormalizacion = (modo != null) ? modo : ModoNormalizacion.DESACTIVADA;
+        rutaGananciaPrecargada = null;
+        resolverGanancia(rutaActual);
+        aplicarVolumen();
+    }
+
+    /**
+     * Indica en qué carriles se leen las ganancias guardadas: la caché mira
+     * el archivo en disco y no debe hacerlo el hilo de JavaFX. Sin planificador
+     * (pruebas sin interfaz) se leen en el hilo que llama.
+     * @param planificador Planificador de la aplicación, o null
+     */
+    public void setPlanificador(PlanificadorTareas planificador) {
+        this.planificador = planificador;
+    }
+
+    public ModoNormalizacion getModoNormalizacion() {
+        return modoNormalizacion;
+    }
+
+    public double getGananciaActual() {
+        return gananciaActual;
+    }
+
+    /**
+     * Fija la ganancia de la pista que empieza. La de la pista precargada ya se
+     * leyó; cualquier otra se lee en el carril interactivo y se aplica al
+     * llegar (mientras tanto se conserva la anterior).
+     */
+    private void resolverGanancia(String ruta) {
+        tokenGanancia.cancelar();
+        if (ruta == null || modoNormalizacion == ModoNormalizacion.DESACTIVADA) {
+            gananciaActual = 1.0;
+            return;
+        }
+        if (ruta.equals(rutaGananciaPrecargada)) {
+            gananciaActual = gananciaPrecargada;
+            rutaGananciaPrecargada = null;
+            return;
+        }
+        if (planificador == null) {
+            gananciaActual = gananciaPara(ruta, modoNormalizacion);
+            return;
+        }
+        ModoNormalizacion modo = modoNormalizacion;
+        PlanificadorTareas.Token mio = new PlanificadorTareas.Token();
+        tokenGanancia = mio;
+        planificador.calcular(PlanificadorTareas.Carril.INTERACTIVO, mio, () -> gananciaPara(ruta, modo), ganancia -> {
+            if (ruta.equals(rutaActual) && modo == modoNormalizacion) {
+                gananciaActual = ganancia;
+                aplicarVolumen();
+            }
+        });
+    }
+
+    /**
+     * Lee la ganancia de la pista precargada antes de que empiece.
+     */
+    private void precargarGanancia(String ruta) {
+        rutaGananciaPrecargada = null;
+        if (modoNormalizacion == ModoNormalizacion.DESACTIVADA) return;
+        ModoNormalizacion modo = modoNormalizacion;
+        if (planificador == null) {
+            gananciaPrecargada = gananciaPara(ruta, modo);
+            rutaGananciaPrecargada = ruta;
+            return;
+        }
+        planificador.calcular(PlanificadorTareas.Carril.INTERACTIVO, new PlanificadorTareas.Token(),
+                () -> gananciaPara(ruta, modo), ganancia -> {
+                    if (ruta.equals(rutaPrecargada) && modo == modoNormalizacion) {
+                        gananciaPrecargada = ganancia;
+                        rutaGananciaPrecargada = ruta;
+                    }
+                });
+    }
+
+    /**
+     * Ganancia guardada para una pista; no analiza nada al reproducir. Sin datos
+     * del álbum se usa la de la pista, y sin análisis no se modifica el volumen.
+     * Consulta la caché (y el disco): no se llama desde el hilo de JavaFX.
+     */
+    private static double gananciaPara(String ruta, ModoNormalizacion modo) {
+        CacheMetadatos cache = CacheMetadatos.getInstancia();
+        Sonoridad sonoridad = null;
+        if (modo == ModoNormalizacion.ALBUM) {
+            sonoridad = cache.getSonoridad(AnalizadorSonoridad.carpeta(ruta));
+        }
+        if (sonoridad == null) {
+            sonoridad = cache.getSonoridad(ruta);
         }
+        return (sonoridad != null) ? sonoridad.ganancia(SONORIDAD_OBJETIVO) : 1.0;
     }
 
     /**
@@ -263,29 +755,72 @@ public class Reproductor {
      * @param duracion Nueva posición
      */
     public void setPosicion(Duration duracion) {
-        if (mediaPlayer != null && duracion != null) {
-            mediaPlayer.seek(duracion);
+        if (motor != null && duracion != null) {
+            acumularEscucha();
+            motor.buscar((long) duracion.toMillis());
+            ultimaPosicionEscucha = motor.getPosicionMs();
+            reloj.publicar();
         }
     }
 
     // ======== MÉTODOS DE CONSULTA ========
 
-    public MediaPlayer getMediaPlayer() {
-        return mediaPlayer;
+    /**
+     * Reloj de reproducción al que se suscribe la interfaz.
+     */
+    public RelojReproduccion getReloj() {
+        return reloj;
+    }
+
+    /**
+     * Motor de la pista actual (null si no hay pista).
+     */
+    public MotorAudio getMotor() {
+        return motor;
+    }
+
+    /**
+     * Indica si hay una pista cargada, sea cual sea el motor.
+     */
+    public boolean hayPista() {
+        return motor != null;
+    }
+
+    public boolean isReproduciendo() {
+        return motor != null && motor.isReproduciendo();
+    }
+
+    public boolean isPausado() {
+        return motor != null && motor.isPausado();
+    }
+
+    public String getRutaActual() {
+        return rutaActual;
     }
 
     public Duration getDuracion() {
-        return (mediaPlayer != null) ? mediaPlayer.getTotalDuration() : null;
+        if (motor == null) return null;
+        long total = motor.getDuracionMs();
+        return (total < 0) ? Duration.UNKNOWN : Duration.millis(total);
     }
 
     public Duration getTiempoActual() {
-        return (mediaPlayer != null) ? mediaPlayer.getCurrentTime() : null;
+        return (motor != null) ? Duration.millis(motor.getPosicionMs()) : null;
+    }
+
+    /**
+     * Posición actual sin crear un Duration (para consultas periódicas).
+     *
+     * @return Posición en milisegundos, o 0 sin pista
+     */
+    public long getPosicionMs() {
+        return (motor != null) ? motor.getPosicionMs() : 0;
     }
 
     public double getProgreso() {
-        if (mediaPlayer != null && !mediaPlayer.getTotalDuration().isUnknown()) {
-            return mediaPlayer.getCurrentTime().toMillis() / 
-                   mediaPlayer.getTotalDuration().toMillis();
+        Duration total = getDuracion();
+        if (total != null && !total.isUnknown() && total.toMillis() > 0) {
+            return getTiempoActual().toMillis() / total.toMillis();
         }
         return 0;
     }
@@ -0,0 +1,240 @@
+package modelo;
+
+/*
+ * Sonoridad.java - Sonoridad integrada y pico de una pista (o de un álbum).
+ * El cálculo sigue de forma simplificada la recomendación ITU-R BS.1770:
+ * filtro de ponderación K, bloques de 400 ms con 75 % de solapamiento y
+ * compuertas absoluta (-70 LUFS) y relativa (-10 LU).
+ */
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Serializable;
+import java.util.Arrays;
+import javazoom.jl.decoder.Bitstream;
+import javazoom.jl.decoder.Decoder;
+import javazoom.jl.decoder.Header;
+import javazoom.jl.decoder.SampleBuffer;
+
+/**
+ * Resultado del análisis de sonoridad.
+ *
+ * Además de la sonoridad integrada guarda la energía total de los bloques
+ * que pasaron las compuertas, lo que permite combinar varias pistas en una
+ * sonoridad de álbum sin volver a decodificarlas.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class Sonoridad implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final double COMPUERTA_ABSOLUTA = -70.0;   // LUFS
+    private static final double COMPUERTA_RELATIVA = -10.0;   // LU bajo la media
+
+    private final double lufs;              // Sonoridad integrada
+    private final double pico;              // Pico de muestra (lineal, 0..1)
+    private final double energiaBloques;    // Suma de energías de los bloques válidos
+    private final int bloques;              // Cantidad de bloques válidos
+
+    public Sonoridad(double lufs, double pico, double energiaBloques, int bloques) {
+        this.lufs = lufs;
+        this.pico = pico;
+        this.energiaBloques = energiaBloques;
+        this.bloques = bloques;
+    }
+
+    /* ***********************
+     * ANÁLISIS
+     * ***********************/
+
+    /**
+     * Decodifica el MP3 completo y mide su sonoridad integrada y su pico.
+     *
+     * @param ruta Ruta del archivo MP3
+     * @return Sonoridad de la pista, o null si no contiene audio decodificable
+     */
+    public static Sonoridad analizar(String ruta) throws Exception {
+        double[] subbloques = new double[1024];   // Energía media de cada tramo de 100 ms
+        int cantidad = 0;
+        double pico = 0;
+
+        try (InputStream in = new BufferedInputStream(new FileInputStream(ruta), 1 << 16)) {
+            Bitstream bitstream = new Bitstream(in);
+            Decoder decoder = new Decoder();
+            FiltroK[] filtros = null;
+            int canales = 0;
+            int muestrasSubbloque = 0;
+            int acumuladas = 0;
+            double suma = 0;
+
+            Header cabecera;
+            while ((cabecera = bitstream.readFrame()) != null) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Análisis cancelado");
+                }
+                SampleBuffer salida = (SampleBuffer) decoder.decodeFrame(cabecera, bitstream);
+                if (filtros == null) {
+                    canales = salida.getChannelCount();
+                    int frecuencia = salida.getSampleFrequency();
+                    muestrasSubbloque = frecuencia / 10;
+                    filtros = new FiltroK[canales];
+                    for (int c = 0; c < canales; c++) {
+                        filtros[c] = new FiltroK(frecuencia);
+                    }
+                }
+
+                short[] pcm = salida.getBuffer();
+                int total = salida.getBufferLength();
+                for (int i = 0; i + canales <= total; i += canales) {
+                    for (int c = 0; c < canales; c++) {
+                        double x = pcm[i + c] / 32768.0;
+                        double absoluto = Math.abs(x);
+                        if (absoluto > pico) pico = absoluto;
+                        double y = filtros[c].procesar(x);
+                        suma += y * y;
+                    }
+                    if (++acumuladas == muestrasSubbloque) {
+                        if (cantidad == subbloques.length) {
+                            subbloques = Arrays.copyOf(subbloques, cantidad * 2);
+                        }
+                        subbloques[cantidad++] = suma / muestrasSubbloque;
+                        suma = 0;
+                        acumuladas = 0;
+                    }
+                }
+                bitstream.closeFrame();
+            }
+            bitstream.close();
+        }
+        if (cantidad < 4) return null;
+
+        // Bloques de 400 ms (4 tramos) avanzando de a 100 ms
+        int totalBloques = cantidad - 3;
+        double[] energias = new double[totalBloques];
+        for (int b = 0; b < totalBloques; b++) {
+            energias[b] = (subbloques[b] + subbloques[b + 1] + subbloques[b + 2] + subbloques[b + 3]) / 4;
+        }
+
+        // Compuerta absoluta y luego relativa
+        double sumaAbsoluta = 0;
+        int validosAbsoluta = 0;
+        for (double e : energias) {
+            if (aLufs(e) > COMPUERTA_ABSOLUTA) {
+                sumaAbsoluta += e;
+                validosAbsoluta++;
+            }
+        }
+        if (validosAbsoluta == 0) return new Sonoridad(COMPUERTA_ABSOLUTA, pico, 0, 0);
+
+        double umbralRelativo = aLufs(sumaAbsoluta / validosAbsoluta) + COMPUERTA_RELATIVA;
+        double sumaValida = 0;
+        int validos = 0;
+        for (double e : energias) {
+            double l = aLufs(e);
+            if (l > COMPUERTA_ABSOLUTA && l > umbralRelativo) {
+                sumaValida += e;
+                validos++;
+            }
+        }
+        return new Sonoridad(aLufs(sumaValida / validos), pico, sumaValida, validos);
+    }
+
+    /**
+     * Combina varias pistas en la sonoridad de un álbum (media de energía de
+     * todos sus bloques válidos y el mayor de los picos).
+     *
+     * @param pistas Sonoridad de cada pista del álbum
+     * @return Sonoridad del conjunto, o null si no hay datos
+     */
+    public static Sonoridad combinar(Iterable<Sonoridad> pistas) {
+        double energia = 0;
+        int bloques = 0;
+        double pico = 0;
+        for (Sonoridad s : pistas) {
+            energia += s.energiaBloques;
+            bloques += s.bloques;
+            pico = Math.max(pico, s.pico);
+        }
+        if (bloques == 0) return null;
+        return new Sonoridad(aLufs(energia / bloques), pico, energia, bloques);
+    }
+
+    private static double aLufs(double energia) {
+        return -0.691 + 10 * Math.log10(Math.max(energia, 1e-12));
+    }
+
+    /**
+     * Filtro de ponderación K: estante de altas seguido de un paso alto,
+     * con coeficientes calculados para la frecuencia de muestreo.
+     */
+    private static final class FiltroK {
+
+        private final double b0, b1, b2, a1, a2;       // Estante
+        private final double c1, c2;                   // Paso alto (b = 1, -2, 1)
+        private double x1, x2, y1, y2;                 // Estado del estante
+        private double u1, u2, z1, z2;                 // Estado del paso alto
+
+        FiltroK(int frecuencia) {
+            double f0 = 1681.974450955533;
+            double g = 3.999843853973347;
+            double q = 0.7071752369554196;
+            double k = Math.tan(Math.PI * f0 / frecuencia);
+            double vh = Math.pow(10.0, g / 20.0);
+            double vb = Math.pow(vh, 0.4996667741545416);
+            double a0 = 1.0 + k / q + k * k;
+            b0 = (vh + vb * k / q + k * k) / a0;
+            b1 = 2.0 * (k * k - vh) / a0;
+            b2 = (vh - vb * k / q + k * k) / a0;
+            a1 = 2.0 * (k * k - 1.0) / a0;
+            a2 = (1.0 - k / q + k * k) / a0;
+
+            f0 = 38.13547087602444;
+            q = 0.5003270373238773;
+            k = Math.tan(Math.PI * f0 / frecuencia);
+            double d0 = 1.0 + k / q + k * k;
+            c1 = 2.0 * (k * k - 1.0) / d0;
+            c2 = (1.0 - k / q + k * k) / d0;
+        }
+
+        double procesar(double x) {
+            double y = b0 * x + b1 * x1 + b2 * x2 - a1 * y1 - a2 * y2;
+            x2 = x1; x1 = x;
+            y2 = y1; y1 = y;
+            double z = y - 2.0 * u1 + u2 - c1 * z1 - c2 * z2;
+            u2 = u1; u1 = y;
+            z2 = z1; z1 = z;
+            return z;
+        }
+    }
+
+    /* ***********************
+     * CONSULTAS
+     * ***********************/
+
+    public double getLufs() {
+        return lufs;
+    }
+
+    public double getPico() {
+        return pico;
+    }
+
+    /**
+     * Ganancia lineal para llevar la pista a la sonoridad objetivo, limitada
+     * para que el pico no recorte.
+     *
+     * @param objetivoLufs Sonoridad deseada
+     * @return Factor de ganancia (mayor que cero)
+     */
+    public double ganancia(double objetivoLufs) {
+        double ganancia = Math.pow(10.0, (objetivoLufs - lufs) / 20.0);
+        if (pico > 0) {
+            ganancia = Math.min(ganancia, 1.0 / pico);
+        }
+        return ganancia;
+    }
+}
@@ -0,0 +1,33 @@
+package modelo;
+
+/*
+ * Temporizador.java - Tarea periódica usada por el reproductor.
+ * Permite sustituir los Timeline de JavaFX por un reloj virtual.
+ */
+
+import javafx.util.Duration;
+
+/**
+ * Tarea que se repite con un periodo fijo mientras está activa.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public interface Temporizador {
+
+    void iniciar();
+
+    void pausar();
+
+    void detener();
+
+    boolean isActivo();
+
+    /**
+     * Crea temporizadores con un periodo y una acción.
+     */
+    @FunctionalInterface
+    interface Fabrica {
+        Temporizador crear(Duration periodo, Runnable accion);
+    }
+}
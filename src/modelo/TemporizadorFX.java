@@ -0,0 +1,46 @@
+package modelo;
+
+/*
+ * TemporizadorFX.java - Temporizador basado en un Timeline de JavaFX.
+ */
+
+import javafx.animation.Animation;
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
+import javafx.util.Duration;
+
+/**
+ * Temporizador que se ejecuta en el hilo de JavaFX.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class TemporizadorFX implements Temporizador {
+
+    private final Timeline timeline;
+
+    public TemporizadorFX(Duration periodo, Runnable accion) {
+        timeline = new Timeline(new KeyFrame(periodo, e -> accion.run()));
+        timeline.setCycleCount(Animation.INDEFINITE);
+    }
+
+    @Override
+    public void iniciar() {
+        timeline.play();
+    }
+
+    @Override
+    public void pausar() {
+        timeline.pause();
+    }
+
+    @Override
+    public void detener() {
+        timeline.stop();
+    }
+
+    @Override
+    public boolean isActivo() {
+        return timeline.getStatus() == Animation.Status.RUNNING;
+    }
+}
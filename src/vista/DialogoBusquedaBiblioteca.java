@@ -0,0 +1,98 @@
+package vista;
+
+import java.util.List;
+import java.util.function.Function;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.control.TextField;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.VBox;
+import javafx.stage.Stage;
+import modelo.IndiceBiblioteca;
+
+/**
+ * Clase DialogoBusquedaBiblioteca - Búsqueda en todas las listas a la vez.
+ *
+ * Muestra los resultados clasificados mientras se escribe, cada uno con las
+ * listas que lo contienen. Devuelve el resultado elegido (doble clic o
+ * "Reproducir") o null si se cancela.
+ */
+public class DialogoBusquedaBiblioteca extends Dialog<IndiceBiblioteca.Resultado> {
+
+    public static final int MAX_RESULTADOS = 200;
+
+    private final TextField campoConsulta = new TextField();
+    private final ListView<IndiceBiblioteca.Resultado> listaResultados = new ListView<>();
+    private final Label etiquetaEstado = new Label();
+
+    /**
+     * @param propietario Ventana principal
+     * @param buscador    Consulta -> resultados clasificados
+     */
+    public DialogoBusquedaBiblioteca(Stage propietario,
+                                     Function<String, List<IndiceBiblioteca.Resultado>> buscador) {
+        initOwner(propietario);
+        setTitle("Buscar en la biblioteca");
+        setHeaderText(null);
+
+        campoConsulta.setPromptText("Nombre de la canción");
+        campoConsulta.textProperty().addListener((obs, oldVal, newVal) -> {
+            mostrarResultados(newVal.trim().isEmpty() ? null : buscador.apply(newVal));
+        });
+
+        listaResultados.setCellFactory(lista -> new ListCell<IndiceBiblioteca.Resultado>() {
+            @Override
+            protected void updateItem(IndiceBiblioteca.Resultado item, boolean empty) {
+                super.updateItem(item, empty);
+                if (empty || item == null) {
+                    setText(null);
+                } else {
+                    String aproximada = (item.getCoincidencia() == IndiceBiblioteca.Coincidencia.APROXIMADA)
+                            ? "  (aproximada)" : "";
+                    setText(item.getNombre() + aproximada + "\n    En: " + String.join(", ", item.getListas()));
+                }
+            }
+        });
+        listaResultados.setOnMouseClicked(e -> {
+            IndiceBiblioteca.Resultado elegido = listaResultados.getSelectionModel().getSelectedItem();
+            if (e.getClickCount() == 2 && elegido != null) {
+                setResult(elegido);
+                close();
+            }
+        });
+
+        VBox contenido = new VBox(8, campoConsulta, listaResultados, etiquetaEstado);
+        VBox.setVgrow(listaResultados, Priority.ALWAYS);
+        getDialogPane().setContent(contenido);
+        getDialogPane().setPrefSize(520, 480);
+
+        ButtonType reproducir = new ButtonType("Reproducir", ButtonBar.ButtonData.OK_DONE);
+        getDialogPane().getButtonTypes().addAll(reproducir, ButtonType.CANCEL);
+        setResultConverter(boton -> (boton == reproducir)
+                ? listaResultados.getSelectionModel().getSelectedItem() : null);
+    }
+
+    /**
+     * Reemplaza los resultados mostrados.
+     *
+     * @param resultados Resultados clasificados, o null para limpiar
+     */
+    public void mostrarResultados(List<IndiceBiblioteca.Resultado> resultados) {
+        if (resultados == null) {
+            listaResultados.getItems().clear();
+            etiquetaEstado.setText("");
+            return;
+        }
+        listaResultados.getItems().setAll(resultados);
+        if (!resultados.isEmpty()) {
+            listaResultados.getSelectionModel().select(0);
+        }
+        etiquetaEstado.setText(resultados.size() >= MAX_RESULTADOS
+                ? "Se muestran los primeros " + MAX_RESULTADOS + " resultados"
+                : resultados.size() + " resultado(s)");
+    }
+}
@@ -1,21 +1,27 @@
 package vista;
 
 import Controlador.NOTASOFTController;
+import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
 import javafx.scene.control.*;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.input.*;
 import javafx.scene.layout.VBox;
+import javafx.scene.paint.Color;
 import javafx.stage.Stage;
 import modelo.Cancion;
+import modelo.PicosOnda;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 import javafx.collections.ObservableList;
 
 /**
@@ -31,10 +37,14 @@ public class NOTASOFTView {
     @FXML private VBox root;
     @FXML private ComboBox<String> selectorDeListas;
     @FXML private ComboBox<String> comboBoxOrdenar;
+    @FXML private ComboBox<String> comboFundido;
+    @FXML private ComboBox<String> comboNormalizacion;
     @FXML private TableView<Cancion> tablaCanciones;
     @FXML private TableColumn<Cancion, String> columnaNombre;
     @FXML private TableColumn<Cancion, String> columnaDuracion;
+    @FXML private TableColumn<Cancion, String> columnaFavorita;
     @FXML private ProgressBar barraProgreso;
+    @FXML private Canvas canvasOnda;
     @FXML private Slider sliderVolumen;
     @FXML private Label tiempoTranscurridoLabel;
     @FXML private Label tiempoTotalLabel;
@@ -61,6 +71,17 @@ public class NOTASOFTView {
     @FXML private TextField campoBusqueda;
     @FXML private ImageView imagenPortada;
 
+    // Menú contextual de la tabla (cola de reproducción)
+    private final MenuItem menuReproducirDespues = new MenuItem("Reproducir a continuación");
+    private final MenuItem menuAgregarACola = new MenuItem("Añadir a la cola");
+    private final MenuItem menuBuscarEnBiblioteca = new MenuItem("Buscar en toda la biblioteca...");
+
+    // Forma de onda sobre la barra de progreso
+    private static final Color COLOR_ONDA_REPRODUCIDA = Color.web("#94b3c8");
+    private static final Color COLOR_ONDA = Color.web("#b0b0b0");
+    private PicosOnda picosOnda;                // Picos de la pista actual (null si no hay)
+    private int columnaProgreso = -1;           // Última columna dibujada como reproducida
+
     // Imágenes para el botón favorito
     private final Image imgFavoritoTrue = new Image(getClass().getResource("/resources/imagenes/Favorite_True.png").toExternalForm());
     private final Image imgFavoritoFalse = new Image(getClass().getResource("/resources/imagenes/Favorite_False.png").toExternalForm());
@@ -101,6 +122,10 @@ public class NOTASOFTView {
         // Configurar Drag and Drop para la tabla
         configurarDragAndDrop();
 
+        // Menú contextual para encolar la canción seleccionada y buscar en todas las listas
+        tablaCanciones.setContextMenu(new ContextMenu(menuReproducirDespues, menuAgregarACola,
+                new SeparatorMenuItem(), menuBuscarEnBiblioteca));
+
         // Inicializar estado del botón favorito y su escucha
         initializeFavoritoButton();
     }
@@ -251,6 +276,86 @@ public class NOTASOFTView {
         tablaCanciones.setOnMouseClicked(e -> tablaCanciones.requestFocus());
     }
 
+    /**
+     * Atajo Ctrl+F (Cmd+F en macOS) para la búsqueda en toda la biblioteca.
+     *
+     * @param accion Acción que abre la búsqueda.
+     */
+    public void configurarAtajoBusquedaBiblioteca(Runnable accion) {
+        getPrimaryStage().getScene().addEventFilter(KeyEvent.KEY_PRESSED, event -> {
+            if (event.isShortcutDown() && event.getCode() == KeyCode.F) {
+                accion.run();
+                event.consume();
+            }
+        });
+    }
+
+    /**
+     * Columna de favoritas: la marca de cada fila dibujada se consulta al
+     * dibujarla (sin recorrer la lista de favoritos).
+     *
+     * @param esFavorita Indica si una canción es favorita (debe ser O(1)).
+     */
+    public void configurarColumnaFavorita(Predicate<Cancion> esFavorita) {
+        columnaFavorita.setCellValueFactory(cellData ->
+                new ReadOnlyStringWrapper(esFavorita.test(cellData.getValue()) ? "★" : ""));
+    }
+
+    /**
+     * Vuelve a dibujar las filas visibles (p. ej. tras marcar una favorita).
+     */
+    public void refrescarTabla() {
+        tablaCanciones.refresh();
+    }
+
+    /**
+     * Muestra la forma de onda de la pista actual (null para limpiarla).
+     *
+     * @param picos Picos precalculados de la pista
+     */
+    public void setPicosOnda(PicosOnda picos) {
+        this.picosOnda = picos;
+        this.columnaProgreso = -1;
+        dibujarOnda(0);
+    }
+
+    /**
+     * Colorea la parte ya reproducida de la onda; solo redibuja si cambió de columna.
+     *
+     * @param progreso Progreso entre 0.0 y 1.0
+     */
+    public void setProgresoOnda(double progreso) {
+        int columna = (int) (Math.max(0, Math.min(1, progreso)) * canvasOnda.getWidth());
+        if (columna != columnaProgreso) {
+            dibujarOnda(columna);
+        }
+    }
+
+    private void dibujarOnda(int columnaReproducida) {
+        GraphicsContext g = canvasOnda.getGraphicsContext2D();
+        double ancho = canvasOnda.getWidth();
+        double alto = canvasOnda.getHeight();
+        double centro = alto / 2;
+        g.clearRect(0, 0, ancho, alto);
+        columnaProgreso = columnaReproducida;
+        if (picosOnda == null) return;
+
+        int cubetas = picosOnda.getCubetas();
+        g.setLineWidth(1);
+        for (int x = 0; x < ancho; x++) {
+            int desde = (int) (x * cubetas / ancho);
+            int hasta = Math.max(desde + 1, (int) ((x + 1) * cubetas / ancho));
+            double min = 0;
+            double max = 0;
+            for (int c = desde; c < hasta && c < cubetas; c++) {
+                min = Math.min(min, picosOnda.getMinimo(c));
+                max = Math.max(max, picosOnda.getMaximo(c));
+            }
+            g.setStroke(x < columnaReproducida ? COLOR_ONDA_REPRODUCIDA : COLOR_ONDA);
+            g.strokeLine(x + 0.5, centro - max * centro, x + 0.5, centro - min * centro);
+        }
+    }
+
     /**
      * Verifica si la barra de progreso está siendo presionada.
      * 
@@ -265,7 +370,12 @@ public class NOTASOFTView {
      */
     public ComboBox<String> getSelectorDeListas() { return selectorDeListas; }
     public ComboBox<String> getComboBoxOrdenar() { return comboBoxOrdenar; }
+    public ComboBox<String> getComboFundido() { return comboFundido; }
+    public ComboBox<String> getComboNormalizacion() { return comboNormalizacion; }
     public TableView<Cancion> getTablaCanciones() { return tablaCanciones; }
+    public MenuItem getMenuReproducirDespues() { return menuReproducirDespues; }
+    public MenuItem getMenuAgregarACola() { return menuAgregarACola; }
+    public MenuItem getMenuBuscarEnBiblioteca() { return menuBuscarEnBiblioteca; }
     public ProgressBar getBarraProgreso() { return barraProgreso; }
     public Slider getSliderVolumen() { return sliderVolumen; }
     public Button getBtnNuevaLista() { return btnNuevaLista; }
@@ -0,0 +1,147 @@
+package modelo;
+
+/*
+ * AvanceReproduccionTest.java - Avance automático sobre el reloj virtual.
+ */
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Cola, orden aleatorio y lista decididos por {@link AvanceReproduccion}
+ * mientras {@link RelojVirtual} hace terminar las pistas.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class AvanceReproduccionTest {
+
+    private static final long DURACION_MS = 2_000;
+
+    private RelojVirtual reloj;
+    private Reproductor reproductor;
+    private ColaReproduccion cola;
+    private AvanceReproduccion avance;
+    private final List<String> sonadas = new ArrayList<>();
+
+    @Before
+    public void preparar() {
+        reloj = new RelojVirtual(ruta -> DURACION_MS);
+        reproductor = new Reproductor(reloj::crearMotor, reloj::crearTemporizador);
+        reproductor.setModoSinPausas(true);
+        cola = new ColaReproduccion();
+        avance = new AvanceReproduccion(reproductor, cola);
+        avance.setOyente((cancion, visible) -> sonadas.add(cancion.getRuta()));
+    }
+
+    private static ListaReproduccion crearLista(int canciones) {
+        ListaReproduccion lista = new ListaReproduccion();
+        for (int i = 0; i < canciones; i++) {
+            lista.agregarCancion("Pista " + i, ruta(i));
+        }
+        return lista;
+    }
+
+    private static String ruta(int i) {
+        return "/musica/avance/pista" + i + ".mp3";
+    }
+
+    private void empezarPor(ListaReproduccion lista, int i) {
+        Nodo nodo = lista.getNodoPorId(DiccionarioRutas.huella(ruta(i)));
+        avance.setLista(lista);
+        avance.setActual(nodo.getIdPista());
+        reproductor.reproducir(nodo.getRutaCancion());
+    }
+
+    @Test
+    public void laColaVaAntesQueLaListaYLaListaDaLaVuelta() {
+        ListaReproduccion lista = crearLista(4);
+        empezarPor(lista, 0);
+        cola.encolar(new Cancion(lista.getNodoPorId(DiccionarioRutas.huella(ruta(2))), ""));
+
+        reloj.avanzar(4 * DURACION_MS + 10);
+
+        List<String> esperadas = new ArrayList<>();
+        esperadas.add(ruta(2));     // encolada
+        esperadas.add(ruta(3));     // la lista sigue desde la encolada
+        esperadas.add(ruta(0));     // vuelta al principio
+        esperadas.add(ruta(1));
+        assertEquals(esperadas, sonadas);
+        assertTrue(cola.estaVacia());
+    }
+
+    @Test
+    public void elOrdenAleatorioRecorreTodaLaLista() {
+        ListaReproduccion lista = crearLista(12);
+        empezarPor(lista, 0);
+        List<Long> ids = new ArrayList<>();
+        for (Nodo nodo = lista.getCabeza(); nodo != null; nodo = nodo.getSiguiente()) {
+            ids.add(nodo.getIdPista());
+        }
+        MezcladorAleatorio mezclador = new MezcladorAleatorio(ids, 42);
+        mezclador.empezarPor(ids.get(0));
+        avance.activarAleatorio(mezclador);
+
+        reloj.avanzar(11 * DURACION_MS + 10);
+
+        Set<String> distintas = new HashSet<>(sonadas);
+        distintas.add(ruta(0));
+        assertEquals(11, sonadas.size());
+        assertEquals(12, distintas.size());
+    }
+
+    @Test
+    public void unaPistaFueraDeLaVistaDetieneElAvance() {
+        ListaReproduccion lista = crearLista(3);
+        long oculta = DiccionarioRutas.huella(ruta(1));
+        avance.setFiltro(new AvanceReproduccion.Filtro() {
+            @Override
+            public boolean visible(long idPista) {
+                return idPista != oculta;
+            }
+
+            @Override
+            public Cancion primera() {
+                return new Cancion(lista.getCabeza(), "");
+            }
+        });
+        empezarPor(lista, 0);
+
+        assertNull(avance.rutaSiguiente());
+        reloj.avanzar(3 * DURACION_MS);
+        assertTrue(sonadas.isEmpty());
+    }
+
+    /**
+     * Miles de avances seguidos sin interfaz: cada fin de pista pone a sonar
+     * la siguiente (precargada) sin acumular motores ni perder el volumen.
+     */
+    @Test
+    public void milesDeAvancesSinPerderMotoresNiVolumen() {
+        int canciones = 500;
+        int avances = 5_000;
+        ListaReproduccion lista = crearLista(canciones);
+        reproductor.setVolumen(0.5);
+        empezarPor(lista, 0);
+
+        long inicio = System.nanoTime();
+        for (int i = 0; i < avances; i++) {
+            reloj.avanzar(DURACION_MS);
+            assertTrue("Motores vivos: " + reloj.getMotoresVivos(), reloj.getMotoresVivos() <= 2);
+            assertEquals(0.5, reloj.getVolumenSonando(), 1e-9);
+        }
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+        assertEquals(avances, sonadas.size());
+        for (int i = 0; i < avances; i++) {
+            assertEquals(ruta((i + 1) % canciones), sonadas.get(i));
+        }
+        System.out.println("AvanceReproduccion: " + avances + " avances en " + ms + " ms ("
+                + reloj.getEventos() + " eventos del reloj)");
+    }
+}
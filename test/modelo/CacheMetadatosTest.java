@@ -0,0 +1,72 @@
+package modelo;
+
+/*
+ * CacheMetadatosTest.java - Pruebas de la persistencia de la caché de metadatos.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Guardado por reemplazo atómico, recarga e invalidación de la caché.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class CacheMetadatosTest {
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    @Test
+    public void guardaYRecargaSinDejarTemporales() throws IOException {
+        File pista = carpeta.newFile("pista.mp3");
+        Files.write(pista.toPath(), new byte[] {1, 2, 3});
+        File archivo = new File(carpeta.getRoot(), "metadatos.dat");
+        CacheMetadatos cache = CacheMetadatos.getInstancia();
+
+        cache.setEtiquetas(pista.getPath(), new ListaReproduccion.Metadatos("Queen", "Jazz", "Rock", 210));
+        assertTrue(cache.isModificada());
+        cache.guardar(archivo.getPath());
+        assertFalse(cache.isModificada());
+        assertTrue(archivo.exists());
+        assertFalse(new File(archivo.getPath() + ".tmp").exists());
+
+        cache.setEtiquetas(pista.getPath(), null);
+        cache.cargar(archivo.getPath());
+        ListaReproduccion.Metadatos leidas = cache.getEtiquetas(pista.getPath());
+        assertNotNull(leidas);
+        assertEquals("Queen", leidas.getArtista());
+        assertEquals(210, leidas.getSegundos());
+    }
+
+    @Test
+    public void unArchivoCorruptoNoImpideGuardar() throws IOException {
+        File archivo = new File(carpeta.getRoot(), "metadatos.dat");
+        Files.write(archivo.toPath(), new byte[] {0, 1, 2});       // Escritura interrumpida de otra versión
+        File pista = carpeta.newFile("otra.mp3");
+        CacheMetadatos cache = CacheMetadatos.getInstancia();
+        cache.cargar(archivo.getPath());
+        cache.setEtiquetas(pista.getPath(), new ListaReproduccion.Metadatos(null, null, null, -1));
+        cache.guardar(archivo.getPath());
+        cache.cargar(archivo.getPath());
+        assertNotNull(cache.getEtiquetas(pista.getPath()));
+    }
+
+    @Test
+    public void unArchivoModificadoInvalidaSuEntrada() throws IOException {
+        File pista = carpeta.newFile("cambiada.mp3");
+        Files.write(pista.toPath(), new byte[] {1, 2, 3});
+        CacheMetadatos cache = CacheMetadatos.getInstancia();
+        cache.setEtiquetas(pista.getPath(), new ListaReproduccion.Metadatos("A", "B", "C", 60));
+        assertNotNull(cache.getEtiquetas(pista.getPath()));
+
+        Files.write(pista.toPath(), new byte[] {1, 2, 3, 4});
+        assertNull(cache.getEtiquetas(pista.getPath()));
+    }
+}
@@ -0,0 +1,66 @@
+package modelo;
+
+/*
+ * EstadisticasReproduccionTest.java - Pruebas del archivo de estadísticas.
+ */
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+
+/**
+ * Volcado y recarga de las estadísticas, incluido un archivo con una
+ * entrada cortada por un cierre inesperado.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class EstadisticasReproduccionTest {
+
+    private static final long MINUTOS_3 = 180_000;
+
+    @Rule
+    public TemporaryFolder carpeta = new TemporaryFolder();
+
+    @Test
+    public void recargaLoVolcado() throws IOException {
+        String archivo = new File(carpeta.getRoot(), "estadisticas.dat").getPath();
+        EstadisticasReproduccion estadisticas = new EstadisticasReproduccion(archivo);
+        estadisticas.registrar(1, 1000, MINUTOS_3, MINUTOS_3);
+        estadisticas.registrar(2, 2000, MINUTOS_3, MINUTOS_3);
+        estadisticas.registrar(1, 3000, MINUTOS_3, MINUTOS_3);
+        estadisticas.volcar();
+
+        EstadisticasReproduccion leidas = new EstadisticasReproduccion(archivo);
+        leidas.cargar();
+        assertEquals(Long.valueOf(1), leidas.masReproducidas(1).get(0));
+        assertEquals(2, leidas.masReproducidas(10).size());
+    }
+
+    @Test
+    public void unaEntradaCortadaNoDesalineaLasSiguientes() throws IOException {
+        File f = new File(carpeta.getRoot(), "estadisticas.dat");
+        EstadisticasReproduccion estadisticas = new EstadisticasReproduccion(f.getPath());
+        estadisticas.registrar(1, 1000, MINUTOS_3, MINUTOS_3);
+        estadisticas.volcar();
+        try (FileOutputStream out = new FileOutputStream(f, true)) {
+            out.write(new byte[] {1, 2, 3, 4, 5, 6, 7});     // Escritura interrumpida
+        }
+
+        EstadisticasReproduccion tras = new EstadisticasReproduccion(f.getPath());
+        tras.cargar();
+        assertEquals(HistorialReproduccion.TAMANO_ENTRADA, f.length());
+        tras.registrar(2, 2000, MINUTOS_3, MINUTOS_3);
+        tras.volcar();
+
+        EstadisticasReproduccion leidas = new EstadisticasReproduccion(f.getPath());
+        leidas.cargar();
+        assertEquals(2 * HistorialReproduccion.TAMANO_ENTRADA, f.length());
+        assertTrue(leidas.masReproducidas(10).contains(1L));
+        assertTrue(leidas.masReproducidas(10).contains(2L));
+    }
+}
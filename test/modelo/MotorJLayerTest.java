@@ -0,0 +1,88 @@
+package modelo;
+
+/*
+ * MotorJLayerTest.java - Pruebas del motor JLayer en modo sin salida de audio.
+ * No abren ningún dispositivo ni necesitan JavaFX: el fin de pista se avisa
+ * en el hilo de salida del motor.
+ */
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Reproducción, pausa, saltos y fin de pista del motor sin interfaz gráfica.
+ *
+ * @author Notasoft
+ * @version 1.0
+ */
+public class MotorJLayerTest {
+
+    private static final String PISTA = "src/resources/sonidos/BurbujaPop.mp3";   // ~0.9 s
+
+    private MotorJLayer motor;
+
+    @Before
+    public void setUp() throws Exception {
+        motor = new MotorJLayer(4096, 1024, true);
+        motor.preparar(PISTA);
+    }
+
+    @After
+    public void tearDown() {
+        motor.liberar();
+    }
+
+    @Test
+    public void avisaElFinDePistaSinJavaFX() throws Exception {
+        CountDownLatch fin = new CountDownLatch(1);
+        motor.setAlTerminar(fin::countDown);
+        motor.reproducir();
+        assertTrue("La pista no terminó", fin.await(5, TimeUnit.SECONDS));
+        assertFalse(motor.isReproduciendo());
+    }
+
+    @Test
+    public void saltarNoTerminaLaPistaDosVeces() throws Exception {
+        AtomicInteger avisos = new AtomicInteger();
+        CountDownLatch fin = new CountDownLatch(1);
+        motor.setAlTerminar(() -> {
+            avisos.incrementAndGet();
+            fin.countDown();
+        });
+        motor.reproducir();
+        Thread.sleep(100);
+        motor.buscar(300);
+        motor.buscar(500);
+        assertTrue("La pista no terminó", fin.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);
+        assertEquals("Una ejecución anterior avisó del fin", 1, avisos.get());
+    }
+
+    @Test
+    public void pausarDetieneLaPosicion() throws Exception {
+        motor.reproducir();
+        Thread.sleep(150);
+        motor.pausar();
+        Thread.sleep(50);                       // El bloque que se estaba entregando termina
+        long pausada = motor.getPosicionMs();
+        Thread.sleep(200);
+        assertEquals(pausada, motor.getPosicionMs());
+        assertTrue(motor.isPausado());
+    }
+
+    @Test
+    public void losSubdesbordamientosCuentanVaciados() throws Exception {
+        CountDownLatch fin = new CountDownLatch(1);
+        motor.setAlTerminar(fin::countDown);
+        motor.reproducir();
+        assertTrue(fin.await(5, TimeUnit.SECONDS));
+        // Cada espera de 1 ms con el buffer vacío no suma: solo el paso de tener datos a no tenerlos
+        assertTrue("Subdesbordamientos: " + motor.getSubdesbordamientos(),
+                motor.getSubdesbordamientos() < motor.getTramasDecodificadas());
+    }
+}